@@ -0,0 +1,665 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * Hash map from {@code int} keys to values of type {@code V}, represented as
+ * an open-addressing hash table with parallel {@code int} key and value
+ * arrays.
+ *
+ * <p>
+ * Keys are never boxed: there are no {@code Integer} objects, no
+ * {@code hashCode}/{@code equals} calls and no {@code Pair} objects, so
+ * {@code add} (between resizes), {@code remove}, {@code removeAny},
+ * {@code value} and {@code hasKey} allocate nothing. Use {@link #asMap()} or
+ * {@link IntMap4.AsMap} where a {@code Map<Integer, V>} is needed.
+ * </p>
+ *
+ * @param <V>
+ *            type of values
+ * @convention <pre>
+ * |$this.keys| = |$this.values|  and
+ * [|$this.keys| is a power of 2]  and
+ * $this.size = [number of non-null entries in $this.values]  and
+ * $this.size <= |$this.keys| * $this.loadFactor  and
+ * $this.size < |$this.keys|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|  and  $this.values[i] /= null)
+ *   ([every slot from HOME($this.keys[i]) up to i, wrapping around the end
+ *     of the arrays, has a non-null value])  and
+ * [the keys of slots with non-null values are distinct]
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (integer, V)
+ *          where (there exists i: integer
+ *                   (0 <= i  and  i < |$this.keys|  and
+ *                    k = $this.keys[i]  and  v = $this.values[i]  and
+ *                    v /= null))}
+ * </pre>
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class IntMap4<V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of slots in the table.
+     */
+    private static final int DEFAULT_CAPACITY = 128;
+
+    /**
+     * Default maximum ratio of entries to slots before the table grows.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.5;
+
+    /**
+     * Largest power of 2 that can be used as an array length.
+     */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Keys of the entries; only meaningful where {@code values} is not null.
+     */
+    private int[] keys;
+
+    /**
+     * Values of the entries, or {@code null} for empty slots.
+     */
+    private Object[] values;
+
+    /**
+     * Number of entries in {@code this}.
+     */
+    private int size;
+
+    /**
+     * Slot at which {@code removeAny} starts looking for an entry.
+     */
+    private int removeAnyIndex;
+
+    /**
+     * Maximum ratio of entries to slots before the table grows.
+     */
+    private final double loadFactor;
+
+    /**
+     * Number of slots the table is (re)created with.
+     */
+    private final int initialCapacity;
+
+    /**
+     * Returns the smallest power of 2 that is at least {@code n}, up to
+     * {@code MAX_CAPACITY}.
+     *
+     * @param n
+     *            the minimum capacity
+     * @return the capacity to use
+     * @requires n > 0
+     */
+    private static int tableSizeFor(int n) {
+        int capacity = 1;
+        while (capacity < n && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns the slot at which a probe for {@code key} starts: {@code key}
+     * mixed by the Murmur3 finalizer, so that sequential keys are scattered,
+     * masked to the table size.
+     *
+     * @param key
+     *            the key
+     * @param capacity
+     *            the number of slots in the table
+     * @return the home slot of {@code key}
+     * @requires [capacity is a power of 2]
+     * @ensures 0 <= home < capacity
+     */
+    private static int home(int key, int capacity) {
+        final int c1 = 0x85ebca6b;
+        final int c2 = 0xc2b2ae35;
+        final int shift1 = 16;
+        final int shift2 = 13;
+
+        int h = key;
+        h ^= h >>> shift1;
+        h *= c1;
+        h ^= h >>> shift2;
+        h *= c2;
+        h ^= h >>> shift1;
+        return h & (capacity - 1);
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param capacity
+     *            the number of slots in the table
+     * @requires [capacity is a power of 2]
+     */
+    private void createNewRep(int capacity) {
+
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        this.size = 0;
+        this.removeAnyIndex = 0;
+
+    }
+
+    /**
+     * Returns the slot holding {@code key}, or -1 if {@code key} is not in
+     * {@code this}.
+     *
+     * @param key
+     *            the key to look for
+     * @return the slot of {@code key}, or -1
+     */
+    private int indexOf(int key) {
+        int mask = this.keys.length - 1;
+        int index = home(key, this.keys.length);
+
+        // the probe run for key ends at the first empty slot
+        while (this.values[index] != null) {
+            if (this.keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Empties slot {@code index} and shifts back later entries of the same
+     * probe run so that none of them becomes unreachable.
+     *
+     * @param index
+     *            the slot to empty
+     * @updates $this.keys, $this.values
+     * @requires 0 <= index < |$this.keys|  and  $this.values[index] /= null
+     */
+    private void deleteSlot(int index) {
+        int mask = this.keys.length - 1;
+        int gap = index;
+        int next = (gap + 1) & mask;
+
+        while (this.values[next] != null) {
+            int nextHome = home(this.keys[next], this.keys.length);
+            /*
+             * The entry at next may fill the gap unless its home lies
+             * cyclically after the gap, up to and including next itself
+             */
+            if (((next - nextHome) & mask) >= ((next - gap) & mask)) {
+                this.keys[gap] = this.keys[next];
+                this.values[gap] = this.values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        this.values[gap] = null;
+        this.size--;
+    }
+
+    /**
+     * Moves every entry into a new table of {@code newCapacity} slots.
+     *
+     * @param newCapacity
+     *            the new number of slots
+     * @updates $this.keys, $this.values
+     * @requires [newCapacity is a power of 2]  and  newCapacity > $this.size
+     */
+    private void rehash(int newCapacity) {
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new int[newCapacity];
+        this.values = new Object[newCapacity];
+        this.removeAnyIndex = 0;
+
+        int mask = newCapacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int index = home(oldKeys[i], newCapacity);
+                while (this.values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public IntMap4() {
+
+        this(DEFAULT_CAPACITY);
+
+    }
+
+    /**
+     * Constructor resulting in a table with room for at least
+     * {@code initialCapacity} slots before it first grows.
+     *
+     * @param initialCapacity
+     *            initial number of slots
+     * @requires initialCapacity > 0
+     * @ensures this = {}
+     */
+    public IntMap4(int initialCapacity) {
+
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+
+    }
+
+    /**
+     * Constructor resulting in a table with room for at least
+     * {@code initialCapacity} slots that grows whenever the ratio of entries
+     * to slots would exceed {@code loadFactor}.
+     *
+     * @param initialCapacity
+     *            initial number of slots
+     * @param loadFactor
+     *            maximum ratio of entries to slots
+     * @requires initialCapacity > 0  and  0 < loadFactor < 1
+     * @ensures this = {}
+     */
+    public IntMap4(int initialCapacity, double loadFactor) {
+        assert initialCapacity > 0 : "Violation of: initialCapacity > 0";
+        assert loadFactor > 0 && loadFactor < 1 : ""
+                + "Violation of: 0 < loadFactor < 1";
+
+        this.loadFactor = loadFactor;
+        this.initialCapacity = tableSizeFor(initialCapacity);
+        this.createNewRep(this.initialCapacity);
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    /**
+     * Resets {@code this} to an empty map.
+     *
+     * @clears this
+     */
+    public final void clear() {
+        this.createNewRep(this.initialCapacity);
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an empty map.
+     *
+     * @param source
+     *            the map whose value is taken
+     * @replaces this
+     * @clears source
+     * @requires source is not this
+     */
+    public final void transferFrom(IntMap4<V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+
+        this.keys = source.keys;
+        this.values = source.values;
+        this.size = source.size;
+        this.removeAnyIndex = source.removeAnyIndex;
+        source.createNewRep(source.initialCapacity);
+    }
+
+    /**
+     * Returns a {@code Map<Integer, V>} view of {@code this}; changes through
+     * either one are seen by the other.
+     *
+     * @return the view
+     */
+    public final Map<Integer, V> asMap() {
+        return new AsMap<V>(this);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * Adds the pair ({@code key}, {@code value}) to {@code this}.
+     *
+     * @param key
+     *            the key to be added
+     * @param value
+     *            the associated value to be added
+     * @aliases reference {@code value}
+     * @updates this
+     * @requires value is not null  and  key is not in DOMAIN(this)
+     * @ensures this = #this union {(key, value)}
+     */
+    public final void add(int key, V value) {
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        // grow first so there is always an empty slot to end the probe
+        if (this.size + 1 > this.keys.length * this.loadFactor
+                && this.keys.length < MAX_CAPACITY) {
+            this.rehash(this.keys.length * 2);
+        }
+        assert this.size + 1 < this.keys.length : "Violation of: "
+                + "|this| < " + (MAX_CAPACITY - 1);
+
+        int mask = this.keys.length - 1;
+        int index = home(key, this.keys.length);
+        while (this.values[index] != null) {
+            index = (index + 1) & mask;
+        }
+        this.keys[index] = key;
+        this.values[index] = value;
+        this.size++;
+
+    }
+
+    /**
+     * Removes the pair whose key is {@code key} from {@code this} and returns
+     * its value.
+     *
+     * @param key
+     *            the key to be removed
+     * @return the value that was associated with {@code key}
+     * @updates this
+     * @requires key is in DOMAIN(this)
+     * @ensures <pre>
+     * (key, remove) is in #this  and
+     * this = #this \ {(key, remove)}
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    public final V remove(int key) {
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int index = this.indexOf(key);
+        V removed = (V) this.values[index];
+        this.deleteSlot(index);
+        return removed;
+    }
+
+    /**
+     * Removes an arbitrary pair from {@code this} and returns its key. Call
+     * {@code value(anyKey())} first if the value is needed as well.
+     *
+     * @return the key of the removed pair
+     * @updates this
+     * @requires |this| > 0
+     * @ensures <pre>
+     * removeAny is in DOMAIN(#this)  and
+     * this = #this \ {(removeAny, [value associated with removeAny])}
+     * </pre>
+     */
+    public final int removeAny() {
+        int index = this.anyIndex();
+        int removed = this.keys[index];
+        this.deleteSlot(index);
+        return removed;
+    }
+
+    /**
+     * Returns an arbitrary key of {@code this}, the one the next
+     * {@code removeAny} would remove.
+     *
+     * @return a key in {@code this}
+     * @requires |this| > 0
+     * @ensures anyKey is in DOMAIN(this)
+     */
+    public final int anyKey() {
+        return this.keys[this.anyIndex()];
+    }
+
+    /**
+     * Returns the slot of the entry {@code removeAny} would remove.
+     *
+     * @return the slot of an entry
+     * @requires |this| > 0
+     */
+    private int anyIndex() {
+        assert this.size > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * Scanning resumes where the last removeAny stopped, so draining the
+         * map visits each slot about once
+         */
+        int mask = this.keys.length - 1;
+        int index = this.removeAnyIndex;
+        while (this.values[index] == null) {
+            index = (index + 1) & mask;
+        }
+        this.removeAnyIndex = index;
+        return index;
+    }
+
+    /**
+     * Reports the value associated with {@code key} in {@code this}.
+     *
+     * @param key
+     *            the key whose associated value is to be reported
+     * @return the value associated with {@code key}
+     * @aliases reference returned by {@code value}
+     * @requires key is in DOMAIN(this)
+     * @ensures (key, value) is in this
+     */
+    @SuppressWarnings("unchecked")
+    public final V value(int key) {
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return (V) this.values[this.indexOf(key)];
+    }
+
+    /**
+     * Reports whether there is a pair in {@code this} whose key is
+     * {@code key}.
+     *
+     * @param key
+     *            the key to be checked
+     * @return true iff there is a pair in this whose key is {@code key}
+     * @ensures hasKey = (key is in DOMAIN(this))
+     */
+    public final boolean hasKey(int key) {
+        return this.indexOf(key) >= 0;
+    }
+
+    /**
+     * Reports the size of {@code this}.
+     *
+     * @return the number of pairs in {@code this}
+     * @ensures size = |this|
+     */
+    public final int size() {
+        return this.size;
+    }
+
+    /**
+     * {@code Map<Integer, V>} backed by an {@code IntMap4<V>}. Keys are boxed
+     * only where the {@code Map} interface requires objects.
+     *
+     * @param <V>
+     *            type of values
+     */
+    public static final class AsMap<V> extends MapSecondary<Integer, V> {
+
+        /**
+         * The map holding the entries.
+         */
+        private IntMap4<V> map;
+
+        /**
+         * No-argument constructor, resulting in a new, empty
+         * {@code IntMap4}.
+         */
+        public AsMap() {
+            this.map = new IntMap4<V>();
+        }
+
+        /**
+         * Constructor resulting in a view of {@code map}.
+         *
+         * @param map
+         *            the map to be viewed
+         */
+        public AsMap(IntMap4<V> map) {
+            assert map != null : "Violation of: map is not null";
+
+            this.map = map;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Map<Integer, V> newInstance() {
+            try {
+                return this.getClass().getConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new AssertionError(
+                        "Cannot construct object of type " + this.getClass());
+            }
+        }
+
+        @Override
+        public void clear() {
+            this.map.clear();
+        }
+
+        @Override
+        public void transferFrom(Map<Integer, V> source) {
+            assert source != null : "Violation of: source is not null";
+            assert source != this : "Violation of: source is not this";
+            assert source instanceof AsMap<?> : ""
+                    + "Violation of: source is of dynamic type AsMap<?>";
+            /*
+             * This cast cannot fail since the assert above would have stopped
+             * execution in that case: source must be of dynamic type
+             * AsMap<?>, and the ? must be V or the call would not have
+             * compiled.
+             */
+            AsMap<V> localSource = (AsMap<V>) source;
+            this.map.transferFrom(localSource.map);
+        }
+
+        @Override
+        public void add(Integer key, V value) {
+            assert key != null : "Violation of: key is not null";
+
+            this.map.add(key, value);
+        }
+
+        @Override
+        public Pair<Integer, V> remove(Integer key) {
+            assert key != null : "Violation of: key is not null";
+
+            return new MapPair<Integer, V>(key, this.map.remove(key));
+        }
+
+        @Override
+        public Pair<Integer, V> removeAny() {
+            int key = this.map.anyKey();
+            return new MapPair<Integer, V>(key, this.map.remove(key));
+        }
+
+        @Override
+        public V value(Integer key) {
+            assert key != null : "Violation of: key is not null";
+
+            return this.map.value(key);
+        }
+
+        @Override
+        public boolean hasKey(Integer key) {
+            assert key != null : "Violation of: key is not null";
+
+            return this.map.hasKey(key);
+        }
+
+        @Override
+        public int size() {
+            return this.map.size();
+        }
+
+        @Override
+        public Iterator<Pair<Integer, V>> iterator() {
+            return new AsMapIterator();
+        }
+
+        /**
+         * Implementation of {@code Iterator} interface for {@code AsMap}.
+         */
+        private final class AsMapIterator
+                implements Iterator<Pair<Integer, V>> {
+
+            /**
+             * Number of elements seen already (i.e., |~this.seen|).
+             */
+            private int numberSeen;
+
+            /**
+             * Slot to be examined next.
+             */
+            private int currentSlot;
+
+            /**
+             * No-argument constructor.
+             */
+            AsMapIterator() {
+                this.numberSeen = 0;
+                this.currentSlot = 0;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.numberSeen < AsMap.this.map.size;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public Pair<Integer, V> next() {
+                assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+                if (!this.hasNext()) {
+                    /*
+                     * Exception is supposed to be thrown in this case, but
+                     * with assertion-checking enabled it cannot happen because
+                     * of assert above.
+                     */
+                    throw new NoSuchElementException();
+                }
+                this.numberSeen++;
+                Object[] values = AsMap.this.map.values;
+                while (values[this.currentSlot] == null) {
+                    this.currentSlot++;
+                }
+                Pair<Integer, V> next = new MapPair<Integer, V>(
+                        AsMap.this.map.keys[this.currentSlot],
+                        (V) values[this.currentSlot]);
+                this.currentSlot++;
+                return next;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException(
+                        "remove operation not supported");
+            }
+
+        }
+
+    }
+
+}
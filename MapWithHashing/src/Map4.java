@@ -1,13 +1,44 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import components.map.Map;
-import components.map.Map2;
 import components.map.MapSecondary;
 
 /**
- * {@code Map} represented as a hash table using {@code Map}s for the buckets,
- * with implementations of primary methods.
+ * {@code Map} represented as a hash table using chains of nodes for the
+ * buckets, with implementations of primary methods.
+ *
+ * <p>
+ * Buckets are created only when the first entry is added to them, so the
+ * cost of a table is proportional to the number of entries in it rather than
+ * to the number of buckets; a large, mostly empty table is cheap to create
+ * and to clear.
+ * </p>
+ *
+ * <p>
+ * Each node is itself the {@code Pair} handed out for its entry, so walking
+ * the map with {@code forEach} or a {@code Cursor} allocates nothing per
+ * entry, and an iterator allocates nothing beyond itself.
+ * </p>
+ *
+ * <p>
+ * A bucket whose chain grows past a few nodes, because many keys share a
+ * hash code, is also kept as a balanced tree if its keys are
+ * {@code Comparable} and of one class, so {@code hasKey} and {@code value}
+ * stay O(log n) even when every key has the same hash code.
+ * </p>
  *
  * @param <K>
  *            type of {@code Map} domain (key) entries
@@ -15,24 +46,53 @@ import components.map.MapSecondary;
  *            type of {@code Map} range (associated value) entries
  * @convention <pre>
  * |$this.hashTable| > 0  and
+ * [if $this.oldTable /= null then, while a resize is in progress, the keys
+ *  hashing to old bucket i are in $this.oldTable[i, i+1) if
+ *  i >= $this.rehashIndex, and otherwise only in $this.hashTable]  and
  * for all i: integer, pf: PARTIAL_FUNCTION, x: K
  *     where (0 <= i  and  i < |$this.hashTable|  and
  *            <pf> = $this.hashTable[i, i+1)  and
  *            x is in DOMAIN(pf))
- *   ([computed result of x.hashCode()] mod |$this.hashTable| = i))  and
- * for all i: integer
- *     where (0 <= i  and  i < |$this.hashTable|)
- *   ([entry at position i in $this.hashTable is not null])  and
- * $this.size = sum i: integer, pf: PARTIAL_FUNCTION
- *     where (0 <= i  and  i < |$this.hashTable|  and
- *            <pf> = $this.hashTable[i, i+1))
- *   (|pf|)
+ *   (BUCKET_INDEX(x, |$this.hashTable|, $this.hashing,
+ *                 [seed of $this.hashTable]) = i))  and
+ * [if $this.hashing /= MODULUS then |$this.hashTable| and
+ *  |$this.oldTable| are powers of 2]  and
+ * [$this.oldTable, if not null, has the same seed as $this.hashTable]  and
+ * [a bucket of $this.hashTable or $this.oldTable is null exactly when it
+ *  is empty, and a null bucket stands for the empty map {}]  and
+ * [the hash of each node is HASH(its key, $this.hashing, seed of its
+ *  table)]  and
+ * $this.size = [total number of entries in the buckets of $this.hashTable
+ *               and $this.oldTable]  and
+ * $this.loadFactor > 0  and
+ * $this.minimumTableSize > 0
+ * </pre>
+ * @mathdefinitions <pre>
+ * HASH(
+ *   x: K,
+ *   hashing: Hashing,
+ *   seed: integer
+ *  ): integer satisfies
+ *  if hashing = SEEDED
+ *   then HASH = [if x is a String, a hash of its characters keyed by seed,
+ *                and otherwise computed result of x.hashCode(), mixed
+ *                with seed]
+ *   else HASH = [computed result of x.hashCode()]
+ *
+ * BUCKET_INDEX(
+ *   x: K,
+ *   n: integer,
+ *   hashing: Hashing,
+ *   seed: integer
+ *  ): integer satisfies
+ *  if hashing = SPREAD
+ *   then BUCKET_INDEX = [HASH(x, hashing, seed), with its bits mixed by a
+ *                        Murmur3-style finalizer] mod n
+ *   else BUCKET_INDEX = HASH(x, hashing, seed) mod n
  * </pre>
  * @correspondence <pre>
- * this = union i: integer, pf: PARTIAL_FUNCTION
- *            where (0 <= i  and  i < |$this.hashTable|  and
- *                   <pf> = $this.hashTable[i, i+1))
- *          (pf)
+ * this = [union of the buckets of $this.hashTable and, if it is not null,
+ *         $this.oldTable]
  * </pre>
  *
  * @author Malik Clarke
@@ -42,6 +102,59 @@ import components.map.MapSecondary;
  */
 public class Map4<K, V> extends MapSecondary<K, V> {
 
+    /**
+     * How the hash table reacts as entries are added and removed.
+     */
+    public enum ResizePolicy {
+        /**
+         * The hash table keeps the size it was constructed with.
+         */
+        FIXED,
+
+        /**
+         * The hash table grows whenever the load factor is exceeded.
+         */
+        GROW,
+
+        /**
+         * The hash table grows whenever the load factor is exceeded and
+         * shrinks (never below its initial size) once it is mostly empty.
+         */
+        GROW_AND_SHRINK
+    }
+
+    /**
+     * How a key's hash code is turned into the index of its bucket.
+     */
+    public enum Hashing {
+        /**
+         * The hash code mod the table size; works best with a prime table
+         * size, which is why the default size is 101 and the table grows to
+         * 2n + 1 buckets.
+         */
+        MODULUS,
+
+        /**
+         * The hash code with its bits mixed, masked to a power-of-two table
+         * size. Mixing spreads keys with poorly distributed hash codes (for
+         * example ones differing only in their high bits) over the whole
+         * table, and masking avoids the division in {@code mod}.
+         */
+        SPREAD,
+
+        /**
+         * Like {@code SPREAD}, but the hash code is mixed with a random seed
+         * chosen for each new (or cleared) map, and {@code String} keys are
+         * hashed from their characters with the seed instead of by
+         * {@code hashCode}. Keys that collide cannot be worked out in advance
+         * without knowing the seed, so a supplier of keys cannot make them
+         * all land in one bucket ("hash flooding"). Other keys with equal
+         * hash codes still collide, but their buckets become trees if the
+         * keys are {@code Comparable}.
+         */
+        SEEDED
+    }
+
     /*
      * Private members --------------------------------------------------------
      */
@@ -51,16 +164,82 @@ public class Map4<K, V> extends MapSecondary<K, V> {
      */
     private static final int DEFAULT_HASH_TABLE_SIZE = 101;
 
+    /**
+     * Default maximum ratio of entries to buckets before the table grows.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    /**
+     * Largest hash table; since buckets live in separately allocated pages,
+     * this is not limited by the largest array the JVM can allocate.
+     */
+    private static final int MAX_HASH_TABLE_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * Largest power-of-two hash table, used with {@code Hashing.SPREAD} and
+     * {@code Hashing.SEEDED}.
+     */
+    private static final int MAX_POWER_OF_TWO_SIZE = 1 << 30;
+
+    /**
+     * The table shrinks when fewer than 1 / {@code SHRINK_DIVISOR} of the
+     * entries allowed by the load factor are present; keeping this well above
+     * 2 stops a table from resizing back and forth at the boundary.
+     */
+    private static final int SHRINK_DIVISOR = 4;
+
+    /**
+     * Maximum number of entries an incremental resize moves per operation.
+     */
+    private static final int REHASH_ENTRIES_PER_STEP = 8;
+
     /**
      * Buckets for hashing.
      */
-    private Map<K, V>[] hashTable;
+    private BucketTable<K, V> hashTable;
+
+    /**
+     * Buckets still being emptied into {@code hashTable} by an incremental
+     * resize, or {@code null} when no resize is in progress.
+     */
+    private BucketTable<K, V> oldTable;
+
+    /**
+     * Index of the next bucket of {@code oldTable} to be emptied.
+     */
+    private int rehashIndex;
 
     /**
      * Total size of abstract {@code this}.
      */
     private int size;
 
+    /**
+     * Maximum ratio of entries to buckets before the table grows.
+     */
+    private final double loadFactor;
+
+    /**
+     * Whether the table grows and shrinks with the number of entries.
+     */
+    private final ResizePolicy resizePolicy;
+
+    /**
+     * Size below which the table never shrinks.
+     */
+    private final int minimumTableSize;
+
+    /**
+     * Whether resizes are spread over subsequent updates instead of being done
+     * all at once.
+     */
+    private final boolean incrementalResize;
+
+    /**
+     * How keys are mapped to buckets.
+     */
+    private final Hashing hashing;
+
     /**
      * Computes {@code a} mod {@code b} as % should have been defined to work.
      *
@@ -109,15 +288,133 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 
             /*
              * subtracts the remainder from b, for clock arithmetic of moving
-             * counter clockwise on a clock with b hours
+             * counter clockwise on a clock with b hours; a multiple of b lands
+             * back on zero
              */
-            mod = b - remainder;
+            if (remainder > 0) {
+                mod = b - remainder;
+            }
 
         }
 
         return mod;
     }
 
+    /**
+     * Mixes the bits of {@code h} so that every bit of the result depends on
+     * every bit of {@code h} (the finalizer of the Murmur3 hash function).
+     *
+     * @param h
+     *            the hash code to mix
+     * @return the mixed hash code
+     */
+    private static int spread(int h) {
+        final int c1 = 0x85ebca6b;
+        final int c2 = 0xc2b2ae35;
+        final int shift1 = 16;
+        final int shift2 = 13;
+
+        int mixed = h;
+        mixed ^= mixed >>> shift1;
+        mixed *= c1;
+        mixed ^= mixed >>> shift2;
+        mixed *= c2;
+        mixed ^= mixed >>> shift1;
+        return mixed;
+    }
+
+    /**
+     * Mixes the bits of {@code z} so that every bit of the result depends on
+     * every bit of {@code z} (the 64-bit finalizer of the Murmur3 hash
+     * function).
+     *
+     * @param z
+     *            the value to mix
+     * @return the mixed value
+     */
+    private static long mix(long z) {
+        final long c1 = 0xff51afd7ed558ccdL;
+        final long c2 = 0xc4ceb9fe1a85ec53L;
+        final int shift = 33;
+
+        long mixed = z;
+        mixed ^= mixed >>> shift;
+        mixed *= c1;
+        mixed ^= mixed >>> shift;
+        mixed *= c2;
+        mixed ^= mixed >>> shift;
+        return mixed;
+    }
+
+    /**
+     * Returns a hash of the characters of {@code s} keyed by {@code seed}.
+     * Four characters at a time are folded into a 64-bit state with the
+     * Murmur3 finalizer, starting from the seed, so strings that collide
+     * for one seed are not expected to collide for another.
+     *
+     * @param s
+     *            the string
+     * @param seed
+     *            the seed
+     * @return the seeded hash of {@code s}
+     */
+    private static int seededHash(String s, long seed) {
+        final int charBits = 16;
+        final int charsPerBlock = 4;
+
+        long state = seed ^ mix(s.length());
+        int i = 0;
+        while (i < s.length()) {
+            // pack up to four characters into one 64-bit block
+            long block = 0;
+            int end = Math.min(i + charsPerBlock, s.length());
+            for (int j = i; j < end; j++) {
+                block = (block << charBits) | s.charAt(j);
+            }
+            state = mix(state ^ block) + seed;
+            i = end;
+        }
+        state = mix(state);
+        return (int) (state ^ (state >>> Integer.SIZE));
+    }
+
+    /**
+     * Returns a new random seed for {@code Hashing.SEEDED}.
+     *
+     * @return a random seed
+     */
+    private static long newSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Reports whether tables for {@code hashing} have power-of-two sizes.
+     *
+     * @param hashing
+     *            how keys are mapped to buckets
+     * @return true iff table sizes are powers of 2
+     */
+    private static boolean powerOfTwoSizes(Hashing hashing) {
+        return hashing != Hashing.MODULUS;
+    }
+
+    /**
+     * Returns the smallest power of 2 that is at least {@code n}, up to
+     * {@code MAX_POWER_OF_TWO_SIZE}.
+     *
+     * @param n
+     *            the minimum size
+     * @return the power-of-two size
+     * @requires n > 0
+     */
+    private static int powerOfTwoAtLeast(int n) {
+        int size = 1;
+        while (size < n && size < MAX_POWER_OF_TWO_SIZE) {
+            size <<= 1;
+        }
+        return size;
+    }
+
     /**
      * Creator of initial representation.
      *
@@ -132,23 +429,148 @@ public class Map4<K, V> extends MapSecondary<K, V> {
      * $this.size = 0
      * </pre>
      */
-    @SuppressWarnings("unchecked")
     private void createNewRep(int hashTableSize) {
+
         /*
-         * With "new Map<K, V>[...]" in place of "new Map[...]" it does not
-         * compile; as shown, it results in a warning about an unchecked
-         * conversion, though it cannot fail.
+         * No buckets are created here; each one is created by the first add
+         * into it, so creating (and clearing) a large table is cheap
          */
-        this.hashTable = new Map[hashTableSize];
+        this.hashTable = new BucketTable<>(hashTableSize, this.hashing,
+                newSeed());
+        this.oldTable = null;
+        this.rehashIndex = 0;
+        this.size = 0;
+
+    }
+
+    /**
+     * Returns the table that holds {@code key} if it is in {@code this}, or
+     * otherwise the table a new entry for {@code key} would be added to.
+     *
+     * @param key
+     *            the key whose table is wanted
+     * @return the table for {@code key}
+     * @ensures <pre>
+     * if key is in DOMAIN(this)
+     *  then [key is in a bucket of tableFor]
+     *  else tableFor = $this.hashTable
+     * </pre>
+     */
+    private BucketTable<K, V> tableFor(K key) {
+        if (this.oldTable != null) {
+            // keys in buckets not yet emptied may still be in the old table
+            int oldIndex = this.oldTable.index(key);
+            if (oldIndex >= this.rehashIndex && this.oldTable.hasKey(key)) {
+                return this.oldTable;
+            }
+        }
+        return this.hashTable;
+    }
+
+    /**
+     * Moves up to {@code maxEntries} entries from {@code $this.oldTable} into
+     * {@code $this.hashTable}.
+     *
+     * @param maxEntries
+     *            the maximum number of entries to move
+     * @updates $this.hashTable, $this.oldTable, $this.rehashIndex
+     * @requires maxEntries > 0
+     * @ensures [the abstract value of this is unchanged, and if every entry
+     *          of #$this.oldTable has been moved then $this.oldTable = null]
+     */
+    private void moveEntries(int maxEntries) {
+        int entriesLeft = maxEntries;
+        while (this.oldTable != null && entriesLeft > 0) {
+            // runs of empty buckets are skipped a bitmap word at a time
+            int next = this.oldTable.nextOccupied(this.rehashIndex);
+            if (next < 0) {
+                this.oldTable = null;
+                this.rehashIndex = 0;
+            } else {
+                // move one node, by its cached hash, to its new bucket
+                this.rehashIndex = next;
+                this.hashTable.insert(this.oldTable.removeAny(next));
+                entriesLeft--;
+            }
+        }
+    }
+
+    /**
+     * Moves every entry of {@code this} into a new hash table of size
+     * {@code newTableSize}, either all at once or, with incremental resizing,
+     * a few entries at a time over the following updates.
+     *
+     * @param newTableSize
+     *            the size of the new hash table
+     * @updates $this.hashTable, $this.oldTable, $this.rehashIndex
+     * @requires newTableSize > 0
+     * @ensures <pre>
+     * |$this.hashTable| = newTableSize  and
+     * [the abstract value of this is unchanged]
+     * </pre>
+     */
+    private void rehash(int newTableSize) {
+        assert newTableSize > 0 : "Violation of: newTableSize > 0";
 
         /*
-         * Creates the this.hashTable is a map filled with maps. This is to
-         * represent a large bucket with many smaller buckets for hashing.
+         * A resize still in progress is finished first so entries are never
+         * spread over more than two tables; with the default step size this
+         * only happens when the load factor is very small
          */
-        for (int index = 0; index < hashTableSize; index++) {
-            this.hashTable[index] = new Map2<>();
+        this.moveEntries(Integer.MAX_VALUE);
+
+        this.oldTable = this.hashTable;
+        this.rehashIndex = 0;
+        // the seed stays the same, since nodes keep the hashes it gave
+        this.hashTable = new BucketTable<>(newTableSize, this.hashing,
+                this.oldTable.seed());
+
+        if (!this.incrementalResize) {
+            this.moveEntries(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Grows or shrinks the hash table, as allowed by the resize policy, so
+     * that the ratio of entries to buckets stays near the load factor.
+     *
+     * @updates $this.hashTable, $this.oldTable, $this.rehashIndex
+     * @ensures [the abstract value of this is unchanged, though its entries
+     *          may be in a hash table of a different size]
+     */
+    private void resizeIfNeeded() {
+        // each update does a bounded share of any resize in progress
+        this.moveEntries(REHASH_ENTRIES_PER_STEP);
+
+        if (this.resizePolicy == ResizePolicy.FIXED) {
+            return;
         }
 
+        int length = this.hashTable.length();
+        double capacity = length * this.loadFactor;
+        int maxLength = MAX_HASH_TABLE_SIZE;
+        if (powerOfTwoSizes(this.hashing)) {
+            maxLength = MAX_POWER_OF_TWO_SIZE;
+        }
+        if (this.size > capacity && length < maxLength) {
+            /*
+             * Doubling (plus one, to keep the size odd, unless sizes must be
+             * powers of 2) makes the total rehashing work over any sequence
+             * of adds linear in its length
+             */
+            int newLength = maxLength;
+            if (length < (maxLength - 1) / 2) {
+                newLength = 2 * length;
+                if (this.hashing == Hashing.MODULUS) {
+                    newLength++;
+                }
+            }
+            this.rehash(newLength);
+        } else if (this.resizePolicy == ResizePolicy.GROW_AND_SHRINK
+                && this.size < capacity / SHRINK_DIVISOR
+                && length > this.minimumTableSize) {
+            this.rehash(Math.max(length / 2, this.minimumTableSize));
+        }
     }
 
     /*
@@ -160,12 +582,13 @@ public class Map4<K, V> extends MapSecondary<K, V> {
      */
     public Map4() {
 
-        this.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+        this(DEFAULT_HASH_TABLE_SIZE);
 
     }
 
     /**
-     * Constructor resulting in a hash table of size {@code hashTableSize}.
+     * Constructor resulting in a hash table of size {@code hashTableSize},
+     * which grows as entries are added.
      *
      * @param hashTableSize
      *            size of hash table
@@ -174,8 +597,208 @@ public class Map4<K, V> extends MapSecondary<K, V> {
      */
     public Map4(int hashTableSize) {
 
-        this.createNewRep(hashTableSize);
+        this(hashTableSize, DEFAULT_LOAD_FACTOR, ResizePolicy.GROW);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of initial size
+     * {@code hashTableSize} that is resized according to {@code resizePolicy}
+     * to keep the ratio of entries to buckets at most {@code loadFactor}.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @param loadFactor
+     *            maximum ratio of entries to buckets
+     * @param resizePolicy
+     *            whether the hash table is fixed, grows, or grows and shrinks
+     * @requires hashTableSize > 0  and  loadFactor > 0
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double loadFactor,
+            ResizePolicy resizePolicy) {
+
+        this(hashTableSize, loadFactor, resizePolicy, false);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of initial size
+     * {@code hashTableSize} that is resized according to {@code resizePolicy}
+     * to keep the ratio of entries to buckets at most {@code loadFactor}. If
+     * {@code incrementalResize} is true, each resize keeps the old buckets
+     * alongside the new ones and moves only a bounded number of entries on
+     * each later {@code add}, {@code remove} or {@code removeAny}, so no
+     * single call pays for moving the whole table.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @param loadFactor
+     *            maximum ratio of entries to buckets
+     * @param resizePolicy
+     *            whether the hash table is fixed, grows, or grows and shrinks
+     * @param incrementalResize
+     *            whether resizes are spread over later updates
+     * @requires hashTableSize > 0  and  loadFactor > 0
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double loadFactor,
+            ResizePolicy resizePolicy, boolean incrementalResize) {
+
+        this(hashTableSize, loadFactor, resizePolicy, incrementalResize,
+                Hashing.MODULUS);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of initial size
+     * {@code hashTableSize} that is resized according to {@code resizePolicy}
+     * to keep the ratio of entries to buckets at most {@code loadFactor}, and
+     * that maps keys to buckets as chosen by {@code hashing}. With
+     * {@code Hashing.SPREAD} or {@code Hashing.SEEDED}, {@code hashTableSize}
+     * is rounded up to a power of 2.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @param loadFactor
+     *            maximum ratio of entries to buckets
+     * @param resizePolicy
+     *            whether the hash table is fixed, grows, or grows and shrinks
+     * @param incrementalResize
+     *            whether resizes are spread over later updates
+     * @param hashing
+     *            how keys are mapped to buckets
+     * @requires hashTableSize > 0  and  loadFactor > 0
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double loadFactor,
+            ResizePolicy resizePolicy, boolean incrementalResize,
+            Hashing hashing) {
+        assert hashTableSize > 0 : "Violation of: hashTableSize > 0";
+        assert loadFactor > 0 : "Violation of: loadFactor > 0";
+        assert resizePolicy != null : "Violation of: resizePolicy is not null";
+        assert hashing != null : "Violation of: hashing is not null";
+
+        this.loadFactor = loadFactor;
+        this.resizePolicy = resizePolicy;
+        this.incrementalResize = incrementalResize;
+        this.hashing = hashing;
+        if (powerOfTwoSizes(hashing)) {
+            this.minimumTableSize = powerOfTwoAtLeast(hashTableSize);
+        } else {
+            this.minimumTableSize = hashTableSize;
+        }
+        this.createNewRep(this.minimumTableSize);
+
+    }
+
+    /**
+     * Returns a new {@code Map4} holding the pairs in {@code pairs}, as
+     * {@code new Map4<K, V>(hashTableSize)} would after adding them one by
+     * one, but built in parallel. The table is sized once for all the pairs;
+     * each pair's bucket is computed and the pairs are sorted by bucket in
+     * parallel, and then groups of pages of buckets are filled in parallel on
+     * the common fork-join pool. Duplicate keys are found while the buckets
+     * are filled, without a {@code hasKey} of the whole map per pair.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     * @param pairs
+     *            the pairs to put in the map
+     * @param hashTableSize
+     *            minimum size of hash table
+     * @return the new map
+     * @throws IllegalArgumentException
+     *             if two pairs have equal keys; the message lists every
+     *             repeated key
+     * @requires hashTableSize > 0  and  [no pair in pairs is null]
+     * @ensures fromPairs = [the pairs in pairs]
+     */
+    public static <K, V> Map4<K, V> fromPairs(
+            Collection<? extends Pair<K, V>> pairs, int hashTableSize) {
+        assert pairs != null : "Violation of: pairs is not null";
+        assert hashTableSize > 0 : "Violation of: hashTableSize > 0";
+
+        final Pair<?, ?>[] array = pairs.toArray(new Pair<?, ?>[0]);
+        final int n = array.length;
+        Map4<K, V> map = new Map4<K, V>(hashTableSize);
+        long needed = Math.max(hashTableSize,
+                (long) Math.ceil(n / DEFAULT_LOAD_FACTOR));
+        final BucketTable<K, V> table = new BucketTable<K, V>(
+                (int) Math.min(needed, MAX_HASH_TABLE_SIZE), map.hashing,
+                map.hashTable.seed());
+
+        /*
+         * Sort bucket index (high half) and position in array (low half), so
+         * that the pairs of each bucket, and of each page, are contiguous
+         */
+        final long[] order = new long[n];
+        Arrays.parallelSetAll(order, i -> ((long) table
+                .index(BucketTable.<K, V>key(array[i])) << Integer.SIZE) | i);
+        Arrays.parallelSort(order);
+
+        /*
+         * Each task fills the pages sharing one word of the page bitmap, so
+         * no two tasks write the same array element
+         */
+        int groups = table.pageGroups();
+        final List<List<K>> duplicates = new ArrayList<List<K>>();
+        for (int g = 0; g < groups; g++) {
+            duplicates.add(new ArrayList<K>());
+        }
+        IntStream.range(0, groups).parallel().forEach(g -> {
+            int from = firstAtLeast(order, table.firstIndexOfGroup(g));
+            int to = firstAtLeast(order, table.firstIndexOfGroup(g + 1));
+            table.fill(array, order, from, to, duplicates.get(g));
+        });
+
+        List<K> repeated = new ArrayList<K>();
+        for (List<K> group : duplicates) {
+            repeated.addAll(group);
+        }
+        if (!repeated.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "Duplicate keys in pairs: " + repeated);
+        }
+        if (n > 0) {
+            table.setFirstOccupied((int) (order[0] >>> Integer.SIZE));
+        }
+        map.hashTable = table;
+        map.size = n;
+        return map;
+    }
 
+    /**
+     * Returns the position of the first entry of {@code order} whose bucket
+     * index is at least {@code index}, or {@code |order|} if there is none.
+     *
+     * @param order
+     *            sorted (bucket index, position) pairs packed into
+     *            {@code long}s
+     * @param index
+     *            the bucket index
+     * @return the position of the first entry at or after {@code index}
+     * @requires [order is sorted]  and  index >= 0
+     */
+    private static int firstAtLeast(long[] order, long index) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            /*
+             * Bucket indexes are compared directly; shifting index into the
+             * high half instead would overflow for the group just past the
+             * last bucket of the largest table
+             */
+            if (order[middle] >>> Integer.SIZE < index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
     }
 
     /*
@@ -195,7 +818,7 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 
     @Override
     public final void clear() {
-        this.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+        this.createNewRep(this.minimumTableSize);
     }
 
     @Override
@@ -210,9 +833,21 @@ public class Map4<K, V> extends MapSecondary<K, V> {
          * the ?,? must be K,V or the call would not have compiled.
          */
         Map4<K, V> localSource = (Map4<K, V>) source;
+        if (localSource.hashing != this.hashing) {
+            /*
+             * Nodes keep hashes made the way their map makes them, so tables
+             * only move between maps that hash alike
+             */
+            this.createNewRep(this.minimumTableSize);
+            localSource.forEach((key, value) -> this.add(key, value));
+            localSource.clear();
+            return;
+        }
         this.hashTable = localSource.hashTable;
+        this.oldTable = localSource.oldTable;
+        this.rehashIndex = localSource.rehashIndex;
         this.size = localSource.size;
-        localSource.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+        localSource.createNewRep(localSource.minimumTableSize);
     }
 
     /*
@@ -225,13 +860,10 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         assert value != null : "Violation of: value is not null";
         assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
 
-        //Find index value for bucket in array to add pair to;
-        int index = 0;
-        if (this.hashTable.length > 1) {
-            index = mod(key.hashCode(), this.hashTable.length);
-        }
         //add pair to bucket in array
-        this.hashTable[index].add(key, value);
+        this.hashTable.add(key, value);
+        this.size++;
+        this.resizeIfNeeded();
 
     }
 
@@ -240,13 +872,10 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         assert key != null : "Violation of: key is not null";
         assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
 
-        //Find index value for bucket containing key in array
-        int index = 0;
-        if (this.hashTable.length > 1) {
-            index = mod(key.hashCode(), this.hashTable.length);
-        }
         //Remove the pair containing key from the array
-        Pair<K, V> removed = this.hashTable[index].remove(key);
+        Pair<K, V> removed = this.tableFor(key).remove(key);
+        this.size--;
+        this.resizeIfNeeded();
         return removed;
     }
 
@@ -254,18 +883,26 @@ public class Map4<K, V> extends MapSecondary<K, V> {
     public final Pair<K, V> removeAny() {
         assert this.size() > 0 : "Violation of: this /= empty_set";
 
-        boolean empty = true;
-        int index = 0;
-        //Find a bucket in the hashTable that is not empty
-        while (empty && index < this.hashTable.length) {
-            if (this.hashTable[index].size() > 0) {
-                empty = false;
-            } else {
-                index++;
-            }
+        /*
+         * Entries left in the old table are taken first, starting from the
+         * next bucket to be emptied since every bucket before it is empty
+         */
+        BucketTable<K, V> table = this.hashTable;
+        int index = -1;
+        if (this.oldTable != null) {
+            table = this.oldTable;
+            index = this.oldTable.nextOccupied(this.rehashIndex);
+        }
+        //Find a bucket in the table that is not empty
+        if (index < 0) {
+            table = this.hashTable;
+            index = this.hashTable.nextOccupied(0);
         }
         //Remove and return any value from first non-empty bucket in array
-        return this.hashTable[index].removeAny();
+        Pair<K, V> removed = table.removeAny(index);
+        this.size--;
+        this.resizeIfNeeded();
+        return removed;
     }
 
     @Override
@@ -274,11 +911,7 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
 
         //Calculate index of bucket containing key and return value of pair
-        int index = 0;
-        if (this.hashTable.length > 1) {
-            index = mod(key.hashCode(), this.hashTable.length);
-        }
-        V value = this.hashTable[index].value(key);
+        V value = this.tableFor(key).value(key);
 
         return value;
     }
@@ -289,13 +922,8 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 
         //Boolean for whether a bucket in the array has the key
         boolean hasKey = false;
-        //Find index value for bucket containing key in array
-        int index = 0;
-        if (this.hashTable.length > 1) {
-            index = mod(key.hashCode(), this.hashTable.length);
-        }
-        //Search for key in indexed bucket
-        if (this.hashTable[index].hasKey(key)) {
+        //Search for key in bucket it hashes to
+        if (this.tableFor(key).hasKey(key)) {
             hasKey = true;
         }
 
@@ -306,13 +934,8 @@ public class Map4<K, V> extends MapSecondary<K, V> {
     @Override
     public final int size() {
 
-        int size = 0;
-        //Loop through array of buckets and sum the size of each
-        for (int index = 0; index < this.hashTable.length; index++) {
-            size += this.hashTable[index].size();
-        }
-
-        return size;
+        //Every update keeps the running count of entries current
+        return this.size;
     }
 
     @Override
@@ -320,38 +943,1954 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         return new Map4Iterator();
     }
 
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
     /**
-     * Implementation of {@code Iterator} interface for {@code Map4}.
+     * Returns a {@code Spliterator} over the pairs of {@code this} that splits
+     * on ranges of buckets, so a parallel stream over {@code this} gives each
+     * thread its own buckets. It knows the exact number of pairs in every
+     * part it splits off, and reports {@code SIZED}, {@code SUBSIZED},
+     * {@code DISTINCT} and {@code NONNULL}.
+     *
+     * @return a spliterator over the pairs of {@code this}
+     * @requires [this is not changed while the spliterator, or any part split
+     *           from it, is in use]
+     * @ensures [the spliterator covers every pair of this exactly once]
      */
-    private final class Map4Iterator implements Iterator<Pair<K, V>> {
+    @Override
+    public final Spliterator<Pair<K, V>> spliterator() {
+        Map4Spliterator rest = new Map4Spliterator(this.hashTable, 0,
+                this.hashTable.length(), this.size);
+        if (this.oldTable != null) {
+            // the entries not yet moved out of the old table come first
+            BucketTable<K, V> old = this.oldTable;
+            rest.head = new Map4Spliterator(old, 0, old.length(),
+                    old.count(0, old.length()));
+            rest.size -= rest.head.size;
+        }
+        return rest;
+    }
 
-        /**
-         * Number of elements seen already (i.e., |~this.seen|).
-         */
-        private int numberSeen;
+    /**
+     * Returns a sequential {@code Stream} of the pairs of {@code this}.
+     *
+     * @return a stream of the pairs of {@code this}
+     * @requires [this is not changed while the stream is in use]
+     * @ensures [stream has every pair of this exactly once]
+     */
+    public final Stream<Pair<K, V>> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
 
-        /**
-         * Bucket from which current bucket iterator comes.
-         */
-        private int currentBucket;
+    /**
+     * Returns a parallel {@code Stream} of the pairs of {@code this}, split
+     * on ranges of buckets.
+     *
+     * @return a parallel stream of the pairs of {@code this}
+     * @requires [this is not changed while the stream is in use]
+     * @ensures [stream has every pair of this exactly once]
+     */
+    public final Stream<Pair<K, V>> parallelStream() {
+        return StreamSupport.stream(this.spliterator(), true);
+    }
 
-        /**
-         * Bucket iterator from which next element will come.
-         */
-        private Iterator<Pair<K, V>> bucketIterator;
+    /**
+     * Performs {@code action} on each pair of {@code this}, walking the
+     * buckets' chains directly rather than through an iterator.
+     *
+     * @param action
+     *            the action performed on each pair
+     * @requires [action does not change this]
+     * @ensures [action has been performed once on each pair of this]
+     */
+    @Override
+    public final void forEach(Consumer<? super Pair<K, V>> action) {
+        assert action != null : "Violation of: action is not null";
 
-        /**
-         * No-argument constructor.
-         */
-        Map4Iterator() {
-            this.numberSeen = 0;
-            this.currentBucket = 0;
-            this.bucketIterator = Map4.this.hashTable[0].iterator();
+        if (this.oldTable != null) {
+            this.oldTable.forEach(action);
         }
+        this.hashTable.forEach(action);
+    }
 
-        @Override
-        public boolean hasNext() {
-            return this.numberSeen < Map4.this.size;
+    /**
+     * Performs {@code action} on the key and value of each pair of
+     * {@code this}. Nothing is allocated per pair.
+     *
+     * @param action
+     *            the action performed on each key and value
+     * @requires [action does not change this]
+     * @ensures [action has been performed once on the key and value of each
+     *          pair of this]
+     */
+    public final void forEach(BiConsumer<? super K, ? super V> action) {
+        assert action != null : "Violation of: action is not null";
+
+        Consumer<Node<K, V>> nodeAction = node -> action.accept(node.key,
+                node.value);
+        if (this.oldTable != null) {
+            this.oldTable.forEach(nodeAction);
+        }
+        this.hashTable.forEach(nodeAction);
+    }
+
+    /**
+     * Returns a new {@code Cursor} over the pairs of {@code this}, positioned
+     * before the first pair.
+     *
+     * @return a cursor over {@code this}
+     * @ensures [cursor is before the first pair of this]
+     */
+    public final Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Stores {@code value} as the value of the key just looked up by
+     * {@code probe} in {@code table}, or removes the key if {@code value} is
+     * {@code null}, keeping the size and table size current.
+     *
+     * @param table
+     *            the table {@code probe} was last called on
+     * @param key
+     *            the key looked up
+     * @param found
+     *            the pair {@code probe} returned
+     * @param value
+     *            the new value, or {@code null} to remove the key
+     * @updates this
+     * @requires [no other change to this since table.probe(key) returned
+     *           found]
+     */
+    private void store(BucketTable<K, V> table, K key, Pair<K, V> found,
+            V value) {
+        if (value != null) {
+            table.set(key, value);
+            if (found == null) {
+                this.size++;
+                this.resizeIfNeeded();
+            }
+        } else if (found != null) {
+            table.delete();
+            this.size--;
+            this.resizeIfNeeded();
+        }
+    }
+
+    /**
+     * Returns the value associated with {@code key}, or {@code defaultValue}
+     * if {@code key} is not in {@code DOMAIN(this)}.
+     *
+     * @param key
+     *            the key
+     * @param defaultValue
+     *            the value returned if {@code key} is not in the map
+     * @return the value associated with {@code key}, or {@code defaultValue}
+     * @ensures <pre>
+     * if key is in DOMAIN(this)
+     *  then (key, getOrDefault) is in this
+     *  else getOrDefault = defaultValue
+     * </pre>
+     */
+    public final V getOrDefault(K key, V defaultValue) {
+        assert key != null : "Violation of: key is not null";
+
+        Pair<K, V> pair = this.tableFor(key).find(key);
+        V value = defaultValue;
+        if (pair != null) {
+            value = pair.value();
+        }
+        return value;
+    }
+
+    /**
+     * Adds the pair ({@code key}, {@code value}) if {@code key} is not in
+     * {@code DOMAIN(this)}, hashing {@code key} and searching its bucket
+     * once.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value added if {@code key} is not in the map
+     * @return the value already associated with {@code key}, or {@code null}
+     * @updates this
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     *  then this = #this  and  (key, putIfAbsent) is in #this
+     *  else this = #this union {(key, value)}  and  putIfAbsent = null
+     * </pre>
+     */
+    public final V putIfAbsent(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        BucketTable<K, V> table = this.tableFor(key);
+        Pair<K, V> found = table.probe(key);
+        V old = null;
+        if (found == null) {
+            this.store(table, key, found, value);
+        } else {
+            old = found.value();
+        }
+        return old;
+    }
+
+    @Override
+    public final V replaceValue(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        //One search finds the pair, and its node is replaced in place
+        BucketTable<K, V> table = this.tableFor(key);
+        Pair<K, V> found = table.probe(key);
+        this.store(table, key, found, value);
+        return found.value();
+    }
+
+    /**
+     * Replaces the value associated with {@code key} by
+     * {@code remapping.apply(key, old)}, where {@code old} is the current
+     * value or {@code null} if there is none; a {@code null} result removes
+     * {@code key}. The key is hashed and its bucket searched once.
+     *
+     * @param key
+     *            the key
+     * @param remapping
+     *            the function computing the new value
+     * @return the new value, or {@code null} if there is none
+     * @updates this
+     * @requires [remapping does not change this]
+     * @ensures <pre>
+     * this = [#this with key associated with compute, or without key if
+     *         compute = null]  and
+     * compute = [remapping applied to key and the value of key in #this, or
+     *            null if key is not in DOMAIN(#this)]
+     * </pre>
+     */
+    public final V compute(K key,
+            BiFunction<? super K, ? super V, ? extends V> remapping) {
+        assert key != null : "Violation of: key is not null";
+        assert remapping != null : "Violation of: remapping is not null";
+
+        BucketTable<K, V> table = this.tableFor(key);
+        Pair<K, V> found = table.probe(key);
+        V old = null;
+        if (found != null) {
+            old = found.value();
+        }
+        V value = remapping.apply(key, old);
+        this.store(table, key, found, value);
+        return value;
+    }
+
+    /**
+     * Associates {@code value} with {@code key} if {@code key} is not in
+     * {@code DOMAIN(this)}, and otherwise replaces its value {@code old} by
+     * {@code remapping.apply(old, value)}; a {@code null} result removes
+     * {@code key}. The key is hashed and its bucket searched once, so
+     * counting occurrences is {@code merge(key, 1, Integer::sum)}.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value associated with {@code key} if it is not in the
+     *            map, and otherwise combined with its value
+     * @param remapping
+     *            the function combining the old value with {@code value}
+     * @return the new value, or {@code null} if there is none
+     * @updates this
+     * @requires [remapping does not change this]
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     *  then merge = [remapping applied to the value of key in #this and
+     *                value]
+     *  else merge = value
+     * this = [#this with key associated with merge, or without key if
+     *         merge = null]
+     * </pre>
+     */
+    public final V merge(K key, V value,
+            BiFunction<? super V, ? super V, ? extends V> remapping) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert remapping != null : "Violation of: remapping is not null";
+
+        BucketTable<K, V> table = this.tableFor(key);
+        Pair<K, V> found = table.probe(key);
+        V merged = value;
+        if (found != null) {
+            merged = remapping.apply(found.value(), value);
+        }
+        this.store(table, key, found, merged);
+        return merged;
+    }
+
+    /**
+     * Reports the number of buckets in the hash table of {@code this}; during
+     * an incremental resize, this is the size of the new table. Package-private
+     * so that tests can check the resize policy.
+     *
+     * @return the size of the hash table
+     * @ensures hashTableSize = |$this.hashTable|
+     */
+    final int hashTableSize() {
+        return this.hashTable.length();
+    }
+
+    /**
+     * Reports whether an incremental resize of {@code this} has entries still
+     * to move out of the old table. Package-private so that tests can check
+     * methods while a resize is half done.
+     *
+     * @return true iff a resize is in progress
+     * @ensures resizeInProgress = ($this.oldTable /= null)
+     */
+    final boolean resizeInProgress() {
+        return this.oldTable != null;
+    }
+
+    /**
+     * Entry of a bucket's chain, which is also the {@code Pair} handed out for
+     * the entry. Its fields are package-private, rather than private, so that
+     * they can be reached through {@code TreeNode} references.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static class Node<K, V> implements Pair<K, V> {
+
+        /**
+         * The hash of the key (its hash code, or with {@code Hashing.SEEDED}
+         * its seeded hash), kept so that searches compare it before calling
+         * {@code equals}, and resizes move the node without hashing again.
+         */
+        final int hash;
+
+        /**
+         * The key.
+         */
+        final K key;
+
+        /**
+         * The value.
+         */
+        final V value;
+
+        /**
+         * Next node of the chain, or {@code null}.
+         */
+        Node<K, V> next;
+
+        /**
+         * Constructor from hash, key, value and next node.
+         *
+         * @param hash
+         *            the hash code of the key
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         * @param next
+         *            the next node, or {@code null}
+         */
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        /**
+         * Reports whether the key of {@code this} is {@code key}, whose hash
+         * code is {@code hash}.
+         *
+         * @param hash
+         *            the hash code of {@code key}
+         * @param key
+         *            the key
+         * @return true iff the key of {@code this} equals {@code key}
+         */
+        boolean hasKey(int hash, Object key) {
+            return this.hash == hash
+                    && (this.key == key || this.key.equals(key));
+        }
+
+        @Override
+        public K key() {
+            return this.key;
+        }
+
+        @Override
+        public V value() {
+            return this.value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Pair<?, ?>)) {
+                return false;
+            }
+            Pair<?, ?> pair = (Pair<?, ?>) obj;
+            return this.key.equals(pair.key())
+                    && this.value.equals(pair.value());
+        }
+
+        @Override
+        public int hashCode() {
+            final int a = 37;
+            final int b = 17;
+            return a * this.key.hashCode() + b * this.value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "(" + this.key + "," + this.value + ")";
+        }
+
+    }
+
+    /**
+     * Node of a bucket whose chain has grown long enough to be kept as a
+     * balanced (AVL) tree as well, ordered by hash and then by
+     * {@code compareTo}. The chain still links every node of the bucket, with
+     * the root of the tree first, so code that walks chains is unaffected.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class TreeNode<K, V> extends Node<K, V> {
+
+        /**
+         * Left subtree, or {@code null}.
+         */
+        private TreeNode<K, V> left;
+
+        /**
+         * Right subtree, or {@code null}.
+         */
+        private TreeNode<K, V> right;
+
+        /**
+         * Previous node of the chain, or {@code null} for the root.
+         */
+        private TreeNode<K, V> previous;
+
+        /**
+         * Height of the subtree rooted at {@code this}.
+         */
+        private int height;
+
+        /**
+         * Constructor for a leaf with the entry of {@code node}.
+         *
+         * @param node
+         *            the node whose entry is copied
+         */
+        TreeNode(Node<K, V> node) {
+            super(node.hash, node.key, node.value, null);
+            this.left = null;
+            this.right = null;
+            this.previous = null;
+            this.height = 1;
+        }
+
+    }
+
+    /**
+     * Array of buckets, indexed by {@code BUCKET_INDEX}, split into pages
+     * of at most {@code PAGE_SIZE} buckets. A page is allocated by the first
+     * add into one of its buckets; each bucket is a chain of nodes, which is
+     * also a tree once it is long (see {@code TreeNode}), and an empty
+     * bucket is {@code null}.
+     *
+     * <p>
+     * Each page has a bitmap with one bit per non-empty bucket, and a summary
+     * bitmap has one bit per page with any non-empty bucket, so
+     * {@code nextOccupied} skips 64 empty buckets (or 64 empty pages) per
+     * {@code long} it reads instead of visiting each bucket.
+     * </p>
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     */
+    private static final class BucketTable<K, V> {
+
+        /**
+         * Base 2 logarithm of the number of buckets in a full page.
+         */
+        private static final int PAGE_SHIFT = 12;
+
+        /**
+         * Number of buckets in a full page.
+         */
+        private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+        /**
+         * Mask giving the position of a bucket within its page.
+         */
+        private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+        /**
+         * Base 2 logarithm of the number of bits in a bitmap word.
+         */
+        private static final int WORD_SHIFT = 6;
+
+        /**
+         * Length above which a chain of {@code Comparable} keys becomes a
+         * tree.
+         */
+        private static final int TREEIFY_THRESHOLD = 8;
+
+        /**
+         * Size at or below which a tree becomes a chain again; lower than
+         * {@code TREEIFY_THRESHOLD} so a bucket does not switch back and
+         * forth.
+         */
+        private static final int UNTREEIFY_THRESHOLD = 6;
+
+        /**
+         * Pages of the first nodes of the buckets' chains, or {@code null} for
+         * pages with no buckets yet.
+         */
+        private final Node<K, V>[][] pages;
+
+        /**
+         * For each allocated page, a bitmap whose bit i is set iff bucket i
+         * of the page is not empty.
+         */
+        private final long[][] occupiedBuckets;
+
+        /**
+         * Bitmap whose bit p is set iff page p has a non-empty bucket.
+         */
+        private final long[] occupiedPages;
+
+        /**
+         * Number of entries in each page, so the entries of a range of whole
+         * pages are counted without visiting their buckets.
+         */
+        private final int[] pageSizes;
+
+        /**
+         * For each page with a bucket that could not be made a tree, the
+         * number of adds to each of its buckets left before trying again, or
+         * {@code null} for pages with no such bucket.
+         */
+        private final int[][] treeifyDelays;
+
+        /**
+         * Index below which every bucket is known to be empty.
+         */
+        private int firstOccupied;
+
+        /**
+         * Hash code of the key last looked up by {@code probe}.
+         */
+        private int probeHash;
+
+        /**
+         * Bucket of the key last looked up by {@code probe}.
+         */
+        private int probeIndex;
+
+        /**
+         * Node before {@code probeNode} in its chain, or {@code null} if
+         * {@code probeNode} is first or {@code null}.
+         */
+        private Node<K, V> probePrevious;
+
+        /**
+         * Node of the key last looked up by {@code probe}, or {@code null} if
+         * that key was not found.
+         */
+        private Node<K, V> probeNode;
+
+        /**
+         * Number of buckets.
+         */
+        private final int length;
+
+        /**
+         * How keys are mapped to buckets.
+         */
+        private final Hashing hashing;
+
+        /**
+         * Seed mixed into hashes with {@code Hashing.SEEDED}.
+         */
+        private final long seed;
+
+        /**
+         * Constructor resulting in {@code length} empty buckets.
+         *
+         * @param length
+         *            the number of buckets
+         * @param hashing
+         *            how keys are mapped to buckets
+         * @param seed
+         *            the seed mixed into hashes with {@code Hashing.SEEDED}
+         * @requires length > 0  and
+         *           [if hashing /= MODULUS then length is a power of 2]
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        BucketTable(int length, Hashing hashing, long seed) {
+            assert length > 0 : "Violation of: length > 0";
+            assert !powerOfTwoSizes(hashing)
+                    || Integer.bitCount(length) == 1 : ""
+                            + "Violation of: length is a power of 2";
+
+            this.length = length;
+            this.hashing = hashing;
+            this.seed = seed;
+            /*
+             * With "new Node<K, V>[...][]" in place of "new Node[...][]" it
+             * does not compile; as shown, it results in a warning about an
+             * unchecked conversion, though it cannot fail.
+             */
+            int pageCount = (length - 1) / PAGE_SIZE + 1;
+            this.pages = new Node[pageCount][];
+            this.occupiedBuckets = new long[pageCount][];
+            this.occupiedPages = new long[wordsFor(pageCount)];
+            this.pageSizes = new int[pageCount];
+            this.treeifyDelays = new int[pageCount][];
+            this.firstOccupied = length;
+        }
+
+        /**
+         * Returns the number of {@code long}s needed for a bitmap of
+         * {@code bits} bits.
+         *
+         * @param bits
+         *            the number of bits
+         * @return the number of words
+         * @requires bits > 0
+         */
+        private static int wordsFor(int bits) {
+            return (bits - 1) / Long.SIZE + 1;
+        }
+
+        /**
+         * Returns the index of the first set bit of {@code bitmap} at or after
+         * bit {@code from}, or -1 if there is none.
+         *
+         * @param bitmap
+         *            the bitmap
+         * @param from
+         *            the first bit to consider
+         * @return the index of the next set bit, or -1
+         * @requires from >= 0
+         */
+        private static int nextSetBit(long[] bitmap, int from) {
+            int wordIndex = from >>> WORD_SHIFT;
+            if (wordIndex >= bitmap.length) {
+                return -1;
+            }
+            // ignore the bits before from in the first word
+            long word = bitmap[wordIndex] & (-1L << from);
+            while (word == 0) {
+                wordIndex++;
+                if (wordIndex == bitmap.length) {
+                    return -1;
+                }
+                word = bitmap[wordIndex];
+            }
+            return (wordIndex << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+        }
+
+        /**
+         * Records that the bucket at {@code index} is no longer empty.
+         *
+         * @param index
+         *            the index of the bucket
+         * @requires [page of index is allocated]
+         */
+        private void markOccupied(int index) {
+            int pageIndex = index >>> PAGE_SHIFT;
+            int offset = index & PAGE_MASK;
+            long[] bitmap = this.occupiedBuckets[pageIndex];
+            bitmap[offset >>> WORD_SHIFT] |= 1L << offset;
+            this.occupiedPages[pageIndex >>> WORD_SHIFT] |= 1L << pageIndex;
+            if (index < this.firstOccupied) {
+                this.firstOccupied = index;
+            }
+        }
+
+        /**
+         * Drops the (now empty) bucket at {@code index} and records that it is
+         * empty.
+         *
+         * @param index
+         *            the index of the bucket
+         * @requires [bucket at index is allocated and empty]
+         */
+        private void dropBucket(int index) {
+            int pageIndex = index >>> PAGE_SHIFT;
+            int offset = index & PAGE_MASK;
+            this.pages[pageIndex][offset] = null;
+            if (this.treeifyDelays[pageIndex] != null) {
+                this.treeifyDelays[pageIndex][offset] = 0;
+            }
+            long[] bitmap = this.occupiedBuckets[pageIndex];
+            bitmap[offset >>> WORD_SHIFT] &= ~(1L << offset);
+            if (bitmap[offset >>> WORD_SHIFT] == 0
+                    && nextSetBit(bitmap, 0) < 0) {
+                // the page has no non-empty buckets left
+                this.occupiedPages[pageIndex >>> WORD_SHIFT] &=
+                        ~(1L << pageIndex);
+            }
+        }
+
+        /**
+         * Returns the number of buckets.
+         *
+         * @return the number of buckets
+         */
+        int length() {
+            return this.length;
+        }
+
+        /**
+         * Returns the seed mixed into hashes with {@code Hashing.SEEDED}.
+         *
+         * @return the seed of this
+         */
+        long seed() {
+            return this.seed;
+        }
+
+        /**
+         * Returns the hash of {@code key}, as kept in its node.
+         *
+         * @param key
+         *            the key whose hash is wanted
+         * @return the hash of {@code key}
+         * @ensures hash = HASH(key, [hashing of this], [seed of this])
+         */
+        int hash(Object key) {
+            int hash = key.hashCode();
+            if (this.hashing == Hashing.SEEDED) {
+                if (key instanceof String) {
+                    hash = seededHash((String) key, this.seed);
+                } else {
+                    long mixed = mix(hash ^ this.seed);
+                    hash = (int) (mixed ^ (mixed >>> Integer.SIZE));
+                }
+            }
+            return hash;
+        }
+
+        /**
+         * Returns the index of the bucket in which {@code key} belongs.
+         *
+         * @param key
+         *            the key whose bucket is wanted
+         * @return the index of the bucket for {@code key}
+         * @ensures index = BUCKET_INDEX(key, |this|, [hashing of this],
+         *                               [seed of this])
+         */
+        int index(K key) {
+            return this.indexOf(this.hash(key));
+        }
+
+        /**
+         * Returns the index of the bucket in which keys with hash
+         * {@code hash} belong.
+         *
+         * @param hash
+         *            the hash, as returned by {@code hash}
+         * @return the index of the bucket for {@code hash}
+         */
+        private int indexOf(int hash) {
+            int index;
+            if (this.hashing == Hashing.SPREAD) {
+                index = spread(hash) & (this.length - 1);
+            } else if (this.hashing == Hashing.SEEDED) {
+                // the seeded hash is already mixed
+                index = hash & (this.length - 1);
+            } else {
+                index = mod(hash, this.length);
+            }
+            return index;
+        }
+
+        /**
+         * Returns the first node of the bucket at {@code index}, or
+         * {@code null} if it is empty.
+         *
+         * @param index
+         *            the index of the bucket
+         * @return the first node of the bucket, or {@code null}
+         * @requires 0 <= index < |this|
+         */
+        Node<K, V> bucket(int index) {
+            Node<K, V>[] page = this.pages[index >>> PAGE_SHIFT];
+            Node<K, V> bucket = null;
+            if (page != null) {
+                bucket = page[index & PAGE_MASK];
+            }
+            return bucket;
+        }
+
+        /**
+         * Returns the node of {@code key}, or {@code null} if {@code key} is
+         * not in the bucket it hashes to.
+         *
+         * @param key
+         *            the key
+         * @return the node of {@code key}, or {@code null}
+         */
+        Node<K, V> find(K key) {
+            int hash = this.hash(key);
+            return findIn(this.bucket(this.indexOf(hash)), hash, key);
+        }
+
+        /**
+         * Returns the smallest index at least {@code from} of a non-empty
+         * bucket, or -1 if there is none.
+         *
+         * @param from
+         *            the first index to consider
+         * @return the index of the next non-empty bucket, or -1
+         * @requires from >= 0
+         */
+        int nextOccupied(int from) {
+            int next = this.findOccupied(Math.max(from, this.firstOccupied));
+            /*
+             * A search from at or before firstOccupied has found the first
+             * non-empty bucket, so the next search can start there
+             */
+            if (from <= this.firstOccupied) {
+                this.firstOccupied = this.length;
+                if (next >= 0) {
+                    this.firstOccupied = next;
+                }
+            }
+            return next;
+        }
+
+        /**
+         * Returns the smallest index at least {@code start} of a non-empty
+         * bucket, or -1 if there is none. Unlike {@code nextOccupied} it does
+         * not change {@code this}, so several threads may call it at once.
+         *
+         * @param start
+         *            the first index to consider
+         * @return the index of the next non-empty bucket, or -1
+         * @requires start >= 0
+         */
+        int findOccupied(int start) {
+            int next = -1;
+            if (start < this.length) {
+                int pageIndex = start >>> PAGE_SHIFT;
+                // look in the rest of the page start is in first
+                if (this.occupiedBuckets[pageIndex] != null) {
+                    int offset = nextSetBit(this.occupiedBuckets[pageIndex],
+                            start & PAGE_MASK);
+                    if (offset >= 0) {
+                        next = (pageIndex << PAGE_SHIFT) + offset;
+                    }
+                }
+                // otherwise take the first bucket of the next non-empty page
+                if (next < 0) {
+                    pageIndex = nextSetBit(this.occupiedPages, pageIndex + 1);
+                    if (pageIndex >= 0) {
+                        next = (pageIndex << PAGE_SHIFT) + nextSetBit(
+                                this.occupiedBuckets[pageIndex], 0);
+                    }
+                }
+            }
+            return next;
+        }
+
+        /**
+         * Returns the number of entries in the buckets from {@code from} up
+         * to, but not including, {@code to}.
+         *
+         * @param from
+         *            the first bucket counted
+         * @param to
+         *            the bucket after the last one counted
+         * @return the number of entries in buckets [from, to)
+         * @requires 0 <= from <= to <= |this|
+         */
+        long count(int from, int to) {
+            long count = 0;
+            long index = from;
+            while (index < to) {
+                int pageIndex = (int) (index >>> PAGE_SHIFT);
+                long pageStart = (long) pageIndex << PAGE_SHIFT;
+                Node<K, V>[] page = this.pages[pageIndex];
+                long pageEnd = pageStart + PAGE_SIZE;
+                if (page != null) {
+                    pageEnd = pageStart + page.length;
+                    if (index == pageStart && pageEnd <= to) {
+                        count += this.pageSizes[pageIndex];
+                    } else {
+                        // only part of the page is counted, bucket by bucket
+                        long[] bitmap = this.occupiedBuckets[pageIndex];
+                        int offset = nextSetBit(bitmap,
+                                (int) (index - pageStart));
+                        while (offset >= 0 && pageStart + offset < to) {
+                            for (Node<K, V> node = page[offset]; node != null;
+                                    node = node.next) {
+                                count++;
+                            }
+                            offset = nextSetBit(bitmap, offset + 1);
+                        }
+                    }
+                }
+                index = pageEnd;
+            }
+            return count;
+        }
+
+        /**
+         * Reports whether {@code key} is in the bucket it hashes to.
+         *
+         * @param key
+         *            the key
+         * @return true iff {@code key} is in its bucket
+         */
+        boolean hasKey(K key) {
+            return this.find(key) != null;
+        }
+
+        /**
+         * Returns the value associated with {@code key}.
+         *
+         * @param key
+         *            the key
+         * @return the value for {@code key}
+         * @requires [key is in the bucket it hashes to]
+         */
+        V value(K key) {
+            return this.find(key).value;
+        }
+
+        /**
+         * Adds the pair ({@code key}, {@code value}) to the front of the
+         * bucket {@code key} hashes to, creating its page if needed.
+         *
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         * @requires [key is not in the bucket it hashes to]
+         */
+        void add(K key, V value) {
+            int hash = this.hash(key);
+            this.insert(new Node<K, V>(hash, key, value, null),
+                    this.indexOf(hash));
+        }
+
+        /**
+         * Returns page {@code pageIndex}, allocating it if needed.
+         *
+         * @param pageIndex
+         *            the index of the page
+         * @return the page
+         * @requires 0 <= pageIndex < |this.pages|
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private Node<K, V>[] page(int pageIndex) {
+            Node<K, V>[] page = this.pages[pageIndex];
+            if (page == null) {
+                // the last page only covers the buckets left over
+                int pageLength = Math.min(PAGE_SIZE,
+                        this.length - (pageIndex << PAGE_SHIFT));
+                page = new Node[pageLength];
+                this.pages[pageIndex] = page;
+                this.occupiedBuckets[pageIndex] = new long[wordsFor(
+                        pageLength)];
+            }
+            return page;
+        }
+
+        /**
+         * Links {@code node}, which is in no chain, in at the front of the
+         * bucket its key hashes to.
+         *
+         * @param node
+         *            the node
+         * @requires [key of node is not in the bucket it hashes to]
+         */
+        void insert(Node<K, V> node) {
+            this.insert(node, this.indexOf(node.hash));
+        }
+
+        /**
+         * Links {@code node}, which is in no chain, in at the front of the
+         * bucket at {@code index}.
+         *
+         * @param node
+         *            the node
+         * @param index
+         *            the index of the bucket the key of {@code node} hashes
+         *            to
+         * @requires [key of node is not in the bucket at index]
+         */
+        private void insert(Node<K, V> node, int index) {
+            Node<K, V> plain = node;
+            if (node instanceof TreeNode<?, ?>) {
+                plain = new Node<K, V>(node.hash, node.key, node.value, null);
+            }
+            int pageIndex = index >>> PAGE_SHIFT;
+            Node<K, V>[] page = this.page(pageIndex);
+            boolean wasEmpty = page[index & PAGE_MASK] == null;
+            this.push(pageIndex, index & PAGE_MASK, plain);
+            if (wasEmpty) {
+                this.markOccupied(index);
+            }
+            this.pageSizes[pageIndex]++;
+        }
+
+        /**
+         * Looks {@code key} up and returns its pair, or {@code null} if it is
+         * not in the bucket it hashes to, remembering where it is so that a
+         * following {@code set} or {@code delete} need not search again.
+         * Since it changes {@code this}, it is only for updates.
+         *
+         * @param key
+         *            the key
+         * @return the pair of {@code key}, or {@code null}
+         * @updates this
+         * @ensures [this remembers where key is, or where it would be added]
+         */
+        Pair<K, V> probe(K key) {
+            this.probeHash = this.hash(key);
+            this.probeIndex = this.indexOf(this.probeHash);
+            this.probePrevious = null;
+            Node<K, V> node = this.bucket(this.probeIndex);
+            if (node instanceof TreeNode<?, ?>) {
+                // nodes of a tree know their previous node themselves
+                node = findIn(node, this.probeHash, key);
+            } else {
+                while (node != null && !node.hasKey(this.probeHash, key)) {
+                    this.probePrevious = node;
+                    node = node.next;
+                }
+            }
+            this.probeNode = node;
+            return node;
+        }
+
+        /**
+         * Associates {@code value} with the key last looked up by
+         * {@code probe}, adding the key if it was not found.
+         *
+         * @param key
+         *            the key last looked up by {@code probe}
+         * @param value
+         *            the new value
+         * @updates this
+         * @requires [no other change to this since the last call of probe,
+         *           which was for key]
+         */
+        void set(K key, V value) {
+            Node<K, V> node = this.probeNode;
+            if (node == null) {
+                this.insert(new Node<K, V>(this.probeHash, key, value, null),
+                        this.probeIndex);
+            } else if (node.value != value) {
+                // nodes are handed out as pairs, so they are replaced
+                Node<K, V> replacement = new Node<K, V>(node.hash, key, value,
+                        null);
+                if (node instanceof TreeNode<?, ?>) {
+                    int pageIndex = this.probeIndex >>> PAGE_SHIFT;
+                    int offset = this.probeIndex & PAGE_MASK;
+                    unlink(this.pages[pageIndex], offset, node, null);
+                    this.push(pageIndex, offset, replacement);
+                } else {
+                    replacement.next = node.next;
+                    this.link(replacement);
+                    node.next = null;
+                }
+            }
+            this.probeNode = null;
+        }
+
+        /**
+         * Removes the key last looked up by {@code probe}, dropping its
+         * bucket if it becomes empty.
+         *
+         * @updates this
+         * @requires [no other change to this since the last call of probe,
+         *           which found its key]
+         */
+        void delete() {
+            Node<K, V>[] page = this.pages[this.probeIndex >>> PAGE_SHIFT];
+            unlink(page, this.probeIndex & PAGE_MASK, this.probeNode,
+                    this.probePrevious);
+            this.pageSizes[this.probeIndex >>> PAGE_SHIFT]--;
+            if (page[this.probeIndex & PAGE_MASK] == null) {
+                this.dropBucket(this.probeIndex);
+            }
+            this.probeNode = null;
+        }
+
+        /**
+         * Puts {@code node} in place of {@code probeNode} in its chain.
+         *
+         * @param node
+         *            the node that takes the place of {@code probeNode}
+         * @updates this
+         * @requires this.probeNode /= null
+         */
+        private void link(Node<K, V> node) {
+            if (this.probePrevious == null) {
+                this.pages[this.probeIndex >>> PAGE_SHIFT][this.probeIndex
+                        & PAGE_MASK] = node;
+            } else {
+                this.probePrevious.next = node;
+            }
+        }
+
+        /**
+         * Returns the number of groups of pages whose bits share a word of
+         * {@code occupiedPages}.
+         *
+         * @return the number of page groups
+         */
+        int pageGroups() {
+            return this.occupiedPages.length;
+        }
+
+        /**
+         * Returns the index of the first bucket of page group {@code group},
+         * or a number at least {@code |this|} if there is no such group.
+         *
+         * @param group
+         *            the page group
+         * @return the index of the group's first bucket
+         * @requires group >= 0
+         */
+        long firstIndexOfGroup(int group) {
+            return (long) group << (PAGE_SHIFT + WORD_SHIFT);
+        }
+
+        /**
+         * Lowers the index below which every bucket is known to be empty to
+         * {@code index}.
+         *
+         * @param index
+         *            the index of a non-empty bucket
+         * @requires 0 <= index < |this|
+         */
+        void setFirstOccupied(int index) {
+            this.firstOccupied = Math.min(this.firstOccupied, index);
+        }
+
+        /**
+         * Returns the key of {@code pair}.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param pair
+         *            a pair whose key is of type {@code K}
+         * @return the key
+         */
+        @SuppressWarnings("unchecked")
+        static <K, V> K key(Pair<?, ?> pair) {
+            return ((Pair<K, V>) pair).key();
+        }
+
+        /**
+         * Adds to empty buckets of {@code this} the pairs
+         * {@code pairs[(int) order[i]]} for {@code from <= i < to}, all of
+         * whose buckets lie in the same page group, and adds the key of every
+         * pair whose key was already added to {@code duplicates} instead.
+         *
+         * @param pairs
+         *            the pairs
+         * @param order
+         *            (bucket index, position in pairs) packed into
+         *            {@code long}s, sorted
+         * @param from
+         *            the first entry of order to add
+         * @param to
+         *            the entry of order after the last one to add
+         * @param duplicates
+         *            the keys found more than once
+         * @updates this, duplicates
+         * @requires <pre>
+         * [the buckets of order[from, to) are empty and in one page group]
+         *   and
+         * [no other thread changes the same page group at the same time]
+         * </pre>
+         */
+        @SuppressWarnings("unchecked")
+        void fill(Pair<?, ?>[] pairs, long[] order, int from, int to,
+                List<K> duplicates) {
+            Node<K, V>[] page = null;
+            int bucketIndex = -1;
+            for (int i = from; i < to; i++) {
+                int index = (int) (order[i] >>> Integer.SIZE);
+                Pair<K, V> pair = (Pair<K, V>) pairs[(int) order[i]];
+                int pageIndex = index >>> PAGE_SHIFT;
+                int offset = index & PAGE_MASK;
+                if (index != bucketIndex) {
+                    bucketIndex = index;
+                    page = this.page(pageIndex);
+                    this.occupiedBuckets[pageIndex][offset
+                            >>> WORD_SHIFT] |= 1L << offset;
+                    this.occupiedPages[pageIndex >>> WORD_SHIFT] |=
+                            1L << pageIndex;
+                }
+                // only the pairs of the same bucket can have the same key
+                int hash = this.hash(pair.key());
+                if (findIn(page[offset], hash, pair.key()) != null) {
+                    duplicates.add(pair.key());
+                } else {
+                    this.push(pageIndex, offset, new Node<K, V>(hash,
+                            pair.key(), pair.value(), null));
+                    this.pageSizes[pageIndex]++;
+                }
+            }
+        }
+
+        /**
+         * Performs {@code action} on each node of {@code this}, in order of
+         * bucket.
+         *
+         * @param action
+         *            the action performed on each node
+         * @requires [action does not change this]
+         */
+        void forEach(Consumer<? super Node<K, V>> action) {
+            for (int index = this.findOccupied(0); index >= 0; index = this
+                    .findOccupied(index + 1)) {
+                for (Node<K, V> node = this.bucket(index); node != null;
+                        node = node.next) {
+                    action.accept(node);
+                }
+            }
+        }
+
+        /**
+         * Removes and returns the pair whose key is {@code key}, dropping
+         * the bucket if it becomes empty.
+         *
+         * @param key
+         *            the key
+         * @return the removed pair
+         * @requires [key is in the bucket it hashes to]
+         */
+        Pair<K, V> remove(K key) {
+            Pair<K, V> removed = this.probe(key);
+            this.delete();
+            return removed;
+        }
+
+        /**
+         * Removes and returns any pair from the bucket at {@code index},
+         * dropping the bucket if it becomes empty.
+         *
+         * @param index
+         *            the index of the bucket
+         * @return the removed node
+         * @requires 0 <= index < |this|  and  [bucket at index is not empty]
+         */
+        Node<K, V> removeAny(int index) {
+            Node<K, V>[] page = this.pages[index >>> PAGE_SHIFT];
+            Node<K, V> removed = page[index & PAGE_MASK];
+            unlink(page, index & PAGE_MASK, removed, null);
+            this.pageSizes[index >>> PAGE_SHIFT]--;
+            if (page[index & PAGE_MASK] == null) {
+                this.dropBucket(index);
+            }
+            return removed;
+        }
+
+        /*
+         * Buckets as chains and trees ---------------------------------------
+         */
+
+        /**
+         * Returns the node of the bucket starting with {@code head} whose key
+         * is {@code key}, or {@code null} if there is none.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param head
+         *            the first node of the bucket, or {@code null}
+         * @param hash
+         *            the hash code of {@code key}
+         * @param key
+         *            the key
+         * @return the node of {@code key}, or {@code null}
+         */
+        private static <K, V> Node<K, V> findIn(Node<K, V> head, int hash,
+                Object key) {
+            Node<K, V> node = head;
+            if (head instanceof TreeNode<?, ?> && fitsTree(key, head)) {
+                node = treeFind((TreeNode<K, V>) head, hash, key);
+                if (node == null || node.hasKey(hash, key)) {
+                    return node;
+                }
+                // compareTo is 0 but equals is not, so fall back on the chain
+                node = head;
+            }
+            while (node != null && !node.hasKey(hash, key)) {
+                node = node.next;
+            }
+            return node;
+        }
+
+        /**
+         * Adds {@code node}, which is in no chain, to bucket {@code offset}
+         * of page {@code pageIndex}, turning the bucket into a tree or back
+         * into a chain as needed. A chain that cannot be made a tree is tried
+         * again only once as many nodes have been added to it as it had, so
+         * failed tries cost no more than O(log n) per add. Only the bucket
+         * and its delay are changed.
+         *
+         * @param pageIndex
+         *            the index of the page, which is allocated
+         * @param offset
+         *            the position of the bucket in the page
+         * @param node
+         *            the node, which is not a {@code TreeNode}
+         * @updates this
+         * @requires [key of node is not in the bucket]
+         */
+        private void push(int pageIndex, int offset, Node<K, V> node) {
+            Node<K, V>[] page = this.pages[pageIndex];
+            Node<K, V> head = page[offset];
+            if (head instanceof TreeNode<?, ?>) {
+                TreeNode<K, V> root = (TreeNode<K, V>) head;
+                if (fitsTree(node.key, root)
+                        && treeFind(root, node.hash, node.key) == null) {
+                    // the new node goes into the chain just after the root
+                    TreeNode<K, V> added = new TreeNode<K, V>(node);
+                    added.next = root.next;
+                    added.previous = root;
+                    if (root.next != null) {
+                        ((TreeNode<K, V>) root.next).previous = added;
+                    }
+                    root.next = added;
+                    moveToFront(page, offset, treeAdd(root, added));
+                    return;
+                }
+                untreeify(page, offset);
+                head = page[offset];
+            }
+            node.next = head;
+            page[offset] = node;
+            if (longerThan(node, TREEIFY_THRESHOLD)) {
+                int[] delays = this.treeifyDelays[pageIndex];
+                if (delays != null && delays[offset] > 0) {
+                    delays[offset]--;
+                } else if (!treeify(page, offset)) {
+                    if (delays == null) {
+                        delays = new int[page.length];
+                        this.treeifyDelays[pageIndex] = delays;
+                    }
+                    delays[offset] = chainLength(node);
+                }
+            }
+        }
+
+        /**
+         * Removes {@code node} from bucket {@code offset} of {@code page},
+         * turning a tree that has become small back into a chain. Only the
+         * bucket itself is changed.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param page
+         *            the page
+         * @param offset
+         *            the position of the bucket in the page
+         * @param node
+         *            the node
+         * @param previous
+         *            the node before {@code node} in the chain, or
+         *            {@code null}; ignored if the bucket is a tree
+         * @updates page[offset]
+         * @requires [node is in the bucket]
+         */
+        private static <K, V> void unlink(Node<K, V>[] page, int offset,
+                Node<K, V> node, Node<K, V> previous) {
+            if (node instanceof TreeNode<?, ?>) {
+                TreeNode<K, V> removed = (TreeNode<K, V>) node;
+                TreeNode<K, V> root = treeRemove((TreeNode<K, V>) page[offset],
+                        removed);
+                if (removed.previous == null) {
+                    page[offset] = removed.next;
+                } else {
+                    removed.previous.next = removed.next;
+                }
+                if (removed.next != null) {
+                    ((TreeNode<K, V>) removed.next).previous = removed.previous;
+                }
+                removed.left = null;
+                removed.right = null;
+                removed.previous = null;
+                removed.next = null;
+                if (root != null) {
+                    moveToFront(page, offset, root);
+                    if (!longerThan(root, UNTREEIFY_THRESHOLD)) {
+                        untreeify(page, offset);
+                    }
+                }
+            } else {
+                if (previous == null) {
+                    page[offset] = node.next;
+                } else {
+                    previous.next = node.next;
+                }
+                node.next = null;
+            }
+        }
+
+        /**
+         * Reports whether the chain starting with {@code head} has more than
+         * {@code n} nodes, looking at no more than {@code n + 1} of them.
+         *
+         * @param head
+         *            the first node of the chain
+         * @param n
+         *            the length compared with
+         * @return true iff the chain has more than {@code n} nodes
+         */
+        private static boolean longerThan(Node<?, ?> head, int n) {
+            int length = 0;
+            Node<?, ?> node = head;
+            while (node != null && length <= n) {
+                length++;
+                node = node.next;
+            }
+            return length > n;
+        }
+
+        /**
+         * Returns the number of nodes of the chain starting with
+         * {@code head}.
+         *
+         * @param head
+         *            the first node of the chain, or {@code null}
+         * @return the length of the chain
+         */
+        private static int chainLength(Node<?, ?> head) {
+            int length = 0;
+            for (Node<?, ?> node = head; node != null; node = node.next) {
+                length++;
+            }
+            return length;
+        }
+
+        /**
+         * Reports whether {@code key} can be ordered with the keys of the
+         * tree whose root is {@code root}, which all have the class of the
+         * root's key.
+         *
+         * @param key
+         *            the key
+         * @param root
+         *            the root of the tree, or a node that would be its root
+         * @return true iff {@code key} is {@code Comparable} and of the same
+         *         class as the key of {@code root}
+         */
+        private static boolean fitsTree(Object key, Node<?, ?> root) {
+            return key instanceof Comparable<?>
+                    && key.getClass() == root.key.getClass();
+        }
+
+        /**
+         * Compares the key {@code key}, whose hash code is {@code hash}, with
+         * the key of {@code node}: first by hash code, then by
+         * {@code compareTo}.
+         *
+         * @param hash
+         *            the hash code of {@code key}
+         * @param key
+         *            the key
+         * @param node
+         *            the node
+         * @return negative, zero or positive as {@code key} comes before, at
+         *         or after the key of {@code node}
+         * @requires fitsTree(key, node)
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private static int compare(int hash, Object key, Node<?, ?> node) {
+            int comparison = Integer.compare(hash, node.hash);
+            if (comparison == 0) {
+                comparison = ((Comparable) key).compareTo(node.key);
+            }
+            return comparison;
+        }
+
+        /**
+         * Returns the node of the tree {@code root} that compares equal to
+         * {@code key}, or {@code null} if there is none.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param root
+         *            the root of the tree, or {@code null}
+         * @param hash
+         *            the hash code of {@code key}
+         * @param key
+         *            the key
+         * @return the node comparing equal to {@code key}, or {@code null}
+         * @requires root = null  or  fitsTree(key, root)
+         */
+        private static <K, V> TreeNode<K, V> treeFind(TreeNode<K, V> root,
+                int hash, Object key) {
+            TreeNode<K, V> node = root;
+            int comparison = 1;
+            while (node != null && comparison != 0) {
+                comparison = compare(hash, key, node);
+                if (comparison < 0) {
+                    node = node.left;
+                } else if (comparison > 0) {
+                    node = node.right;
+                }
+            }
+            return node;
+        }
+
+        /**
+         * Returns the height of {@code tree}.
+         *
+         * @param tree
+         *            the tree, or {@code null}
+         * @return the height of {@code tree}
+         */
+        private static int height(TreeNode<?, ?> tree) {
+            int height = 0;
+            if (tree != null) {
+                height = tree.height;
+            }
+            return height;
+        }
+
+        /**
+         * Rotates {@code tree} to the left and returns its new root.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param tree
+         *            the tree
+         * @return the new root
+         * @requires tree.right /= null
+         */
+        private static <K, V> TreeNode<K, V> rotateLeft(TreeNode<K, V> tree) {
+            TreeNode<K, V> root = tree.right;
+            tree.right = root.left;
+            root.left = tree;
+            tree.height = 1 + Math.max(height(tree.left), height(tree.right));
+            root.height = 1 + Math.max(height(root.left), height(root.right));
+            return root;
+        }
+
+        /**
+         * Rotates {@code tree} to the right and returns its new root.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param tree
+         *            the tree
+         * @return the new root
+         * @requires tree.left /= null
+         */
+        private static <K, V> TreeNode<K, V> rotateRight(TreeNode<K, V> tree) {
+            TreeNode<K, V> root = tree.left;
+            tree.left = root.right;
+            root.right = tree;
+            tree.height = 1 + Math.max(height(tree.left), height(tree.right));
+            root.height = 1 + Math.max(height(root.left), height(root.right));
+            return root;
+        }
+
+        /**
+         * Restores the height of {@code tree}, whose subtrees are balanced
+         * and differ in height by at most 2, rebalancing it if needed, and
+         * returns its new root.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param tree
+         *            the tree
+         * @return the new root
+         */
+        private static <K, V> TreeNode<K, V> balance(TreeNode<K, V> tree) {
+            TreeNode<K, V> root = tree;
+            int difference = height(tree.left) - height(tree.right);
+            if (difference > 1) {
+                if (height(tree.left.left) < height(tree.left.right)) {
+                    tree.left = rotateLeft(tree.left);
+                }
+                root = rotateRight(tree);
+            } else if (difference < -1) {
+                if (height(tree.right.right) < height(tree.right.left)) {
+                    tree.right = rotateRight(tree.right);
+                }
+                root = rotateLeft(tree);
+            } else {
+                tree.height = 1
+                        + Math.max(height(tree.left), height(tree.right));
+            }
+            return root;
+        }
+
+        /**
+         * Adds the leaf {@code node} to {@code tree} and returns the new
+         * root.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param tree
+         *            the tree, or {@code null}
+         * @param node
+         *            the node
+         * @return the new root
+         * @requires [no node of tree compares equal to node]
+         */
+        private static <K, V> TreeNode<K, V> treeAdd(TreeNode<K, V> tree,
+                TreeNode<K, V> node) {
+            TreeNode<K, V> root = node;
+            if (tree != null) {
+                if (compare(node.hash, node.key, tree) < 0) {
+                    tree.left = treeAdd(tree.left, node);
+                } else {
+                    tree.right = treeAdd(tree.right, node);
+                }
+                root = balance(tree);
+            }
+            return root;
+        }
+
+        /**
+         * Removes {@code node} from {@code tree} and returns the new root.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param tree
+         *            the tree
+         * @param node
+         *            the node
+         * @return the new root, or {@code null} if the tree is now empty
+         * @requires [node is in tree]
+         */
+        private static <K, V> TreeNode<K, V> treeRemove(TreeNode<K, V> tree,
+                TreeNode<K, V> node) {
+            TreeNode<K, V> root;
+            if (tree == node) {
+                if (tree.left == null) {
+                    root = tree.right;
+                } else if (tree.right == null) {
+                    root = tree.left;
+                } else {
+                    // the smallest node on the right takes the node's place
+                    root = tree.right;
+                    while (root.left != null) {
+                        root = root.left;
+                    }
+                    root.right = treeRemove(tree.right, root);
+                    root.left = tree.left;
+                    root = balance(root);
+                }
+            } else {
+                if (compare(node.hash, node.key, tree) < 0) {
+                    tree.left = treeRemove(tree.left, node);
+                } else {
+                    tree.right = treeRemove(tree.right, node);
+                }
+                root = balance(tree);
+            }
+            return root;
+        }
+
+        /**
+         * Makes {@code root}, a node of the tree in bucket {@code offset} of
+         * {@code page}, the first node of the bucket's chain.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param page
+         *            the page
+         * @param offset
+         *            the position of the bucket in the page
+         * @param root
+         *            the new root of the bucket's tree
+         * @updates page[offset]
+         */
+        private static <K, V> void moveToFront(Node<K, V>[] page, int offset,
+                TreeNode<K, V> root) {
+            TreeNode<K, V> head = (TreeNode<K, V>) page[offset];
+            if (root != head) {
+                root.previous.next = root.next;
+                if (root.next != null) {
+                    ((TreeNode<K, V>) root.next).previous = root.previous;
+                }
+                root.previous = null;
+                root.next = head;
+                head.previous = root;
+                page[offset] = root;
+            }
+        }
+
+        /**
+         * Turns the chain in bucket {@code offset} of {@code page} into a
+         * tree, unless its keys are not all {@code Comparable} and of one
+         * class, or two of them compare equal without being equal.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param page
+         *            the page
+         * @param offset
+         *            the position of the bucket in the page
+         * @return true iff the bucket is now a tree
+         * @updates page[offset]
+         */
+        private static <K, V> boolean treeify(Node<K, V>[] page, int offset) {
+            Node<K, V> head = page[offset];
+            for (Node<K, V> node = head; node != null; node = node.next) {
+                if (!fitsTree(node.key, head)) {
+                    return false;
+                }
+            }
+            TreeNode<K, V> root = null;
+            TreeNode<K, V> first = null;
+            TreeNode<K, V> last = null;
+            for (Node<K, V> node = head; node != null; node = node.next) {
+                if (treeFind(root, node.hash, node.key) != null) {
+                    return false;
+                }
+                TreeNode<K, V> added = new TreeNode<K, V>(node);
+                if (last == null) {
+                    first = added;
+                } else {
+                    last.next = added;
+                    added.previous = last;
+                }
+                last = added;
+                root = treeAdd(root, added);
+            }
+            page[offset] = first;
+            moveToFront(page, offset, root);
+            return true;
+        }
+
+        /**
+         * Turns the tree in bucket {@code offset} of {@code page} back into a
+         * chain of plain nodes.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param page
+         *            the page
+         * @param offset
+         *            the position of the bucket in the page
+         * @updates page[offset]
+         */
+        private static <K, V> void untreeify(Node<K, V>[] page, int offset) {
+            Node<K, V> first = null;
+            Node<K, V> last = null;
+            for (Node<K, V> node = page[offset]; node != null;
+                    node = node.next) {
+                Node<K, V> copy = new Node<K, V>(node.hash, node.key,
+                        node.value, null);
+                if (last == null) {
+                    first = copy;
+                } else {
+                    last.next = copy;
+                }
+                last = copy;
+            }
+            page[offset] = first;
+        }
+
+    }
+
+    /**
+     * Position among the pairs of a {@code Map4}, moved forward by
+     * {@code advance}. Unlike an iterator it hands out keys and values rather
+     * than pairs, and a cursor can be {@code reset} and used again, so a scan
+     * allocates nothing at all once the cursor exists.
+     *
+     * <p>
+     * The map must not be changed while a cursor over it is in use, other
+     * than between a {@code reset} and the next {@code advance}.
+     * </p>
+     */
+    public final class Cursor {
+
+        /**
+         * Table whose buckets are being visited, or {@code null} once every
+         * pair has been visited; the old table, if there is one, is visited
+         * before the current one.
+         */
+        private BucketTable<K, V> table;
+
+        /**
+         * Next bucket to visit.
+         */
+        private int index;
+
+        /**
+         * Node at the cursor, or {@code null} if the cursor is not at a pair.
+         */
+        private Node<K, V> node;
+
+        /**
+         * No-argument constructor.
+         */
+        Cursor() {
+            this.reset();
+        }
+
+        /**
+         * Moves the cursor back before the first pair of the map.
+         *
+         * @updates this
+         * @ensures [this is before the first pair of the map]
+         */
+        public void reset() {
+            this.table = Map4.this.hashTable;
+            if (Map4.this.oldTable != null) {
+                this.table = Map4.this.oldTable;
+            }
+            this.index = 0;
+            this.node = null;
+        }
+
+        /**
+         * Moves the cursor to the next pair of the map, reporting whether
+         * there was one.
+         *
+         * @return true iff the cursor is now at a pair
+         * @updates this
+         * @ensures [advance = there was a pair after #this, and if so this is
+         *          at that pair]
+         */
+        public boolean advance() {
+            if (this.node != null) {
+                this.node = this.node.next;
+            }
+            while (this.node == null && this.table != null) {
+                int next = this.table.findOccupied(this.index);
+                if (next >= 0) {
+                    this.node = this.table.bucket(next);
+                    this.index = next + 1;
+                } else if (this.table != Map4.this.hashTable) {
+                    // the old table is done; move on to the current one
+                    this.table = Map4.this.hashTable;
+                    this.index = 0;
+                } else {
+                    this.table = null;
+                }
+            }
+            return this.node != null;
+        }
+
+        /**
+         * Returns the key of the pair at the cursor.
+         *
+         * @return the key at the cursor
+         * @requires [the last call of advance returned true]
+         */
+        public K key() {
+            assert this.node != null : "Violation of: this is at a pair";
+
+            return this.node.key;
+        }
+
+        /**
+         * Returns the value of the pair at the cursor.
+         *
+         * @return the value at the cursor
+         * @requires [the last call of advance returned true]
+         */
+        public V value() {
+            assert this.node != null : "Violation of: this is at a pair";
+
+            return this.node.value;
+        }
+
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map4}.
+     */
+    private final class Map4Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Table whose buckets are being visited; the old table, if there is
+         * one, is visited before the current one.
+         */
+        private BucketTable<K, V> currentTable;
+
+        /**
+         * Bucket from which the next node comes.
+         */
+        private int currentBucket;
+
+        /**
+         * Node to be returned next, or {@code null} if it is in a later
+         * bucket.
+         */
+        private Node<K, V> node;
+
+        /**
+         * No-argument constructor.
+         */
+        Map4Iterator() {
+            this.numberSeen = 0;
+            this.currentTable = Map4.this.hashTable;
+            if (Map4.this.oldTable != null) {
+                this.currentTable = Map4.this.oldTable;
+            }
+            this.currentBucket = -1;
+            this.node = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < Map4.this.size;
         }
 
         @Override
@@ -366,12 +2905,19 @@ public class Map4<K, V> extends MapSecondary<K, V> {
                 throw new NoSuchElementException();
             }
             this.numberSeen++;
-            while (!this.bucketIterator.hasNext()) {
-                this.currentBucket++;
-                this.bucketIterator = Map4.this.hashTable[this.currentBucket]
-                        .iterator();
+            while (this.node == null) {
+                this.currentBucket = this.currentTable
+                        .nextOccupied(this.currentBucket + 1);
+                if (this.currentBucket < 0) {
+                    // the old table is done; move on to the current one
+                    this.currentTable = Map4.this.hashTable;
+                } else {
+                    this.node = this.currentTable.bucket(this.currentBucket);
+                }
             }
-            return this.bucketIterator.next();
+            Node<K, V> next = this.node;
+            this.node = next.next;
+            return next;
         }
 
         @Override
@@ -382,4 +2928,169 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 
     }
 
+    /**
+     * Implementation of {@code Spliterator} interface for {@code Map4}, over
+     * the buckets [{@code index}, {@code to}) of one table, after all the
+     * pairs of {@code head}, if there is one.
+     */
+    private final class Map4Spliterator implements Spliterator<Pair<K, V>> {
+
+        /**
+         * Table whose buckets are visited.
+         */
+        private final BucketTable<K, V> table;
+
+        /**
+         * Next bucket to visit.
+         */
+        private int index;
+
+        /**
+         * Bucket after the last one to visit.
+         */
+        private int to;
+
+        /**
+         * Number of pairs not yet visited, not counting those of
+         * {@code head}.
+         */
+        private long size;
+
+        /**
+         * Spliterator over the pairs to visit before those of {@code table},
+         * or {@code null}; it is the first part split off.
+         */
+        private Map4Spliterator head;
+
+        /**
+         * Next node of the bucket before {@code index}, or {@code null}.
+         */
+        private Node<K, V> node;
+
+        /**
+         * Constructor for the pairs of buckets [{@code from}, {@code to}) of
+         * {@code table}.
+         *
+         * @param table
+         *            the table
+         * @param from
+         *            the first bucket
+         * @param to
+         *            the bucket after the last one
+         * @param size
+         *            the number of pairs in buckets [from, to)
+         */
+        Map4Spliterator(BucketTable<K, V> table, int from, int to,
+                long size) {
+            this.table = table;
+            this.index = from;
+            this.to = to;
+            this.size = size;
+            this.head = null;
+            this.node = null;
+        }
+
+        /**
+         * Moves {@code node} to the first node of the next non-empty bucket if
+         * it is {@code null}, reporting whether there is a pair left.
+         *
+         * @return true iff there is a pair left in buckets [index, to)
+         */
+        private boolean nextBucket() {
+            while (this.node == null) {
+                int next = this.table.findOccupied(this.index);
+                if (next < 0 || next >= this.to) {
+                    this.index = this.to;
+                    return false;
+                }
+                this.node = this.table.bucket(next);
+                this.index = next + 1;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Pair<K, V>> action) {
+            assert action != null : "Violation of: action is not null";
+
+            if (this.head != null) {
+                if (this.head.tryAdvance(action)) {
+                    return true;
+                }
+                this.head = null;
+            }
+            boolean advanced = this.nextBucket();
+            if (advanced) {
+                Node<K, V> next = this.node;
+                this.node = next.next;
+                this.size--;
+                action.accept(next);
+            }
+            return advanced;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Pair<K, V>> action) {
+            assert action != null : "Violation of: action is not null";
+
+            if (this.head != null) {
+                this.head.forEachRemaining(action);
+                this.head = null;
+            }
+            // whole buckets at a time, without counting down size
+            while (this.nextBucket()) {
+                while (this.node != null) {
+                    action.accept(this.node);
+                    this.node = this.node.next;
+                }
+            }
+            this.size = 0;
+        }
+
+        @Override
+        public Spliterator<Pair<K, V>> trySplit() {
+            if (this.head != null) {
+                Map4Spliterator split = this.head;
+                this.head = null;
+                return split;
+            }
+            if (this.size < 2 || this.to - this.index < 2) {
+                return null;
+            }
+            /*
+             * Splits fall on page boundaries where possible, so the pairs of
+             * each part are counted from the page sizes
+             */
+            int firstPage = this.index >>> BucketTable.PAGE_SHIFT;
+            int lastPage = (this.to - 1) >>> BucketTable.PAGE_SHIFT;
+            int middle = (int) (((long) this.index + this.to) >>> 1);
+            if (firstPage < lastPage) {
+                middle = ((firstPage + lastPage + 1) >>> 1)
+                        << BucketTable.PAGE_SHIFT;
+            }
+            long splitSize = this.table.count(middle, this.to);
+            Map4Spliterator split = new Map4Spliterator(this.table, middle,
+                    this.to, splitSize);
+            this.to = middle;
+            this.size -= splitSize;
+            return split;
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = this.size;
+            if (this.head != null) {
+                size += this.head.estimateSize();
+            }
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED
+                    | Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+
+    }
+
 }
@@ -0,0 +1,704 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * Thread-safe {@code Map} represented as a hash table split into stripes,
+ * each a separately locked table of buckets, with implementations of primary
+ * methods.
+ *
+ * <p>
+ * The high bits of a key's (spread) hash choose its stripe and the low bits
+ * its bucket within the stripe, so threads working on different stripes never
+ * wait for each other, and each stripe grows on its own. Every stripe is
+ * guarded by a {@code StampedLock}: {@code add}, {@code remove} and
+ * {@code removeAny} take its write lock, while {@code hasKey} and
+ * {@code value} first search the stripe without locking and fall back to the
+ * read lock only if a writer changed the stripe during the search.
+ * </p>
+ *
+ * <p>
+ * Buckets are chains of nodes with final keys. A node only ever points to a
+ * node added before it, and growing a stripe copies its nodes instead of
+ * relinking them, so an unlocked search always ends even when it races a
+ * writer; the stamp tells whether its answer may be used.
+ * </p>
+ *
+ * <p>
+ * {@code size} is kept in a {@code LongAdder} and is exact whenever no
+ * {@code add} or {@code remove} is in progress. Iterators are weakly
+ * consistent: each stripe is copied under its read lock when the iterator
+ * reaches it, so an iterator never fails, sees every entry present for its
+ * whole lifetime once, and may or may not see entries added or removed
+ * meanwhile. {@code clear}, {@code transferFrom} and {@code newInstance} must
+ * not run concurrently with other methods on the same maps.
+ * </p>
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * |$this.stripes| = 2^$this.stripeBits  and
+ * for all s: Stripe in $this.stripes
+ *   ([|s.table| is a power of 2]  and
+ *    s.count = [number of nodes in the chains of s.table]  and
+ *    s.count <= |s.table| * $this.loadFactor  and
+ *    [every node n in chain s.table[i] has
+ *       n.hash = SPREAD(n.key.hashCode())  and
+ *       STRIPE(n.hash) = s  and  n.hash mod |s.table| = i])  and
+ * $this.size = [sum of s.count over all s in $this.stripes]  and
+ * [the keys of all nodes are distinct]
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *          where ([some node in some chain of some stripe has key k and
+ *                  value v])}
+ * </pre>
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4Concurrent<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of stripes.
+     */
+    private static final int DEFAULT_STRIPES = 64;
+
+    /**
+     * Default number of buckets per stripe.
+     */
+    private static final int DEFAULT_STRIPE_SIZE = 16;
+
+    /**
+     * Default maximum ratio of entries to buckets before a stripe grows.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    /**
+     * Largest number of stripes.
+     */
+    private static final int MAX_STRIPES = 1 << 16;
+
+    /**
+     * Largest number of buckets in a stripe.
+     */
+    private static final int MAX_STRIPE_SIZE = 1 << 30;
+
+    /**
+     * Number of high hash bits that choose the stripe.
+     */
+    private final int stripeBits;
+
+    /**
+     * Number of buckets each stripe is (re)created with.
+     */
+    private final int stripeSize;
+
+    /**
+     * Maximum ratio of entries to buckets before a stripe grows.
+     */
+    private final double loadFactor;
+
+    /**
+     * The stripes.
+     */
+    private volatile Stripe<K, V>[] stripes;
+
+    /**
+     * Number of entries in {@code this}.
+     */
+    private volatile LongAdder size;
+
+    /**
+     * Stripe at which {@code removeAny} starts looking for an entry.
+     */
+    private volatile int removeAnyStripe;
+
+    /**
+     * Entry of a bucket chain.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class Node<K, V> {
+
+        /**
+         * Spread hash of the key.
+         */
+        private final int hash;
+
+        /**
+         * The key.
+         */
+        private final K key;
+
+        /**
+         * The value.
+         */
+        private final V value;
+
+        /**
+         * Next node of the chain, added before this one; {@code null} at the
+         * end of the chain.
+         */
+        private Node<K, V> next;
+
+        /**
+         * Constructor.
+         *
+         * @param hash
+         *            the spread hash of the key
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         * @param next
+         *            the next node of the chain
+         */
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+    }
+
+    /**
+     * Separately locked table of buckets holding the keys of one stripe.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class Stripe<K, V> {
+
+        /**
+         * Guards {@code table}, its chains and {@code count}.
+         */
+        private final StampedLock lock = new StampedLock();
+
+        /**
+         * Bucket chains; {@code null} for an empty bucket.
+         */
+        private Node<K, V>[] table;
+
+        /**
+         * Number of nodes in the chains of {@code table}.
+         */
+        private int count;
+
+        /**
+         * Bucket of {@code table} at which {@code removeAny} starts looking
+         * for a node, so that draining the stripe scans each bucket once
+         * rather than from bucket 0 every time; guarded by {@code lock}.
+         */
+        private int removeAnyIndex;
+
+        /**
+         * Constructor.
+         *
+         * @param buckets
+         *            the number of buckets
+         * @requires [buckets is a power of 2]
+         */
+        Stripe(int buckets) {
+            this.table = newTable(buckets);
+            this.count = 0;
+            this.removeAnyIndex = 0;
+        }
+
+        /**
+         * Returns the node of {@code key} in {@code table}, or {@code null}
+         * if there is none. Safe to call without the lock, since chains are
+         * acyclic at every moment; the result is then only meaningful if the
+         * stamp still validates afterwards.
+         *
+         * @param table
+         *            the bucket chains
+         * @param hash
+         *            the spread hash of {@code key}
+         * @param key
+         *            the key to look for
+         * @return the node of {@code key}, or {@code null}
+         */
+        static <K, V> Node<K, V> find(Node<K, V>[] table, int hash,
+                Object key) {
+            Node<K, V> node = table[hash & (table.length - 1)];
+            while (node != null
+                    && (node.hash != hash || !node.key.equals(key))) {
+                node = node.next;
+            }
+            return node;
+        }
+
+        /**
+         * Returns the node of {@code key}, or {@code null} if there is none,
+         * first without locking and then, if a writer interfered, under the
+         * read lock.
+         *
+         * @param hash
+         *            the spread hash of {@code key}
+         * @param key
+         *            the key to look for
+         * @return the node of {@code key}, or {@code null}
+         */
+        Node<K, V> get(int hash, Object key) {
+            long stamp = this.lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Node<K, V> node = find(this.table, hash, key);
+                if (this.lock.validate(stamp)) {
+                    return node;
+                }
+            }
+            stamp = this.lock.readLock();
+            try {
+                return find(this.table, hash, key);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Copies every node into a new table twice as large. Old nodes are
+         * left untouched for unlocked readers still walking them.
+         *
+         * @requires [the write lock is held]
+         */
+        void grow() {
+            Node<K, V>[] newTable = newTable(2 * this.table.length);
+            int mask = newTable.length - 1;
+            for (Node<K, V> head : this.table) {
+                for (Node<K, V> n = head; n != null; n = n.next) {
+                    int index = n.hash & mask;
+                    newTable[index] = new Node<K, V>(n.hash, n.key, n.value,
+                            newTable[index]);
+                }
+            }
+            this.table = newTable;
+            this.removeAnyIndex = 0;
+        }
+
+        /**
+         * Unlinks and returns the node of {@code key}.
+         *
+         * @param hash
+         *            the spread hash of {@code key}
+         * @param key
+         *            the key to remove
+         * @return the removed node
+         * @requires [the write lock is held]  and  [key is in the stripe]
+         */
+        Node<K, V> unlink(int hash, Object key) {
+            int index = hash & (this.table.length - 1);
+            Node<K, V> previous = null;
+            Node<K, V> node = this.table[index];
+            while (node.hash != hash || !node.key.equals(key)) {
+                previous = node;
+                node = node.next;
+            }
+            if (previous == null) {
+                this.table[index] = node.next;
+            } else {
+                previous.next = node.next;
+            }
+            this.count--;
+            return node;
+        }
+
+        /**
+         * Returns copies of the entries of this stripe, taken under its read
+         * lock.
+         *
+         * @return the entries
+         */
+        List<Pair<K, V>> snapshot() {
+            List<Pair<K, V>> entries = new ArrayList<Pair<K, V>>();
+            long stamp = this.lock.readLock();
+            try {
+                for (Node<K, V> head : this.table) {
+                    for (Node<K, V> n = head; n != null; n = n.next) {
+                        entries.add(new MapPair<K, V>(n.key, n.value));
+                    }
+                }
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+            return entries;
+        }
+
+    }
+
+    /**
+     * Returns a new, empty table of {@code buckets} chains.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     * @param buckets
+     *            the number of buckets
+     * @return the new table
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] newTable(int buckets) {
+        return (Node<K, V>[]) new Node<?, ?>[buckets];
+    }
+
+    /**
+     * Returns the smallest power of 2 that is at least {@code n}, up to
+     * {@code max}.
+     *
+     * @param n
+     *            the minimum
+     * @param max
+     *            the largest power of 2 allowed
+     * @return the power of 2
+     * @requires n > 0  and  [max is a power of 2]
+     */
+    private static int powerOfTwoAtLeast(int n, int max) {
+        int power = 1;
+        while (power < n && power < max) {
+            power <<= 1;
+        }
+        return power;
+    }
+
+    /**
+     * Mixes the bits of {@code h} with the Murmur3 finalizer, so that both the
+     * high bits choosing the stripe and the low bits choosing the bucket
+     * depend on every bit of {@code h}.
+     *
+     * @param h
+     *            the hash code to spread
+     * @return the spread hash
+     */
+    private static int spread(int h) {
+        final int c1 = 0x85ebca6b;
+        final int c2 = 0xc2b2ae35;
+        final int shift1 = 16;
+        final int shift2 = 13;
+
+        int mixed = h;
+        mixed ^= mixed >>> shift1;
+        mixed *= c1;
+        mixed ^= mixed >>> shift2;
+        mixed *= c2;
+        mixed ^= mixed >>> shift1;
+        return mixed;
+    }
+
+    /**
+     * Returns the stripe of keys whose spread hash is {@code hash}.
+     *
+     * @param hash
+     *            the spread hash
+     * @return the stripe
+     */
+    private Stripe<K, V> stripeFor(int hash) {
+        Stripe<K, V>[] s = this.stripes;
+        // with a single stripe the shift would be 32, which Java takes as 0
+        return s[(int) ((hash & 0xFFFFFFFFL) >>> (Integer.SIZE
+                - this.stripeBits))];
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    @SuppressWarnings("unchecked")
+    private void createNewRep() {
+
+        Stripe<K, V>[] s = (Stripe<K, V>[]) new Stripe<?, ?>[1
+                << this.stripeBits];
+        for (int i = 0; i < s.length; i++) {
+            s[i] = new Stripe<K, V>(this.stripeSize);
+        }
+        this.stripes = s;
+        this.size = new LongAdder();
+        this.removeAnyStripe = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map4Concurrent() {
+
+        this(DEFAULT_STRIPES, DEFAULT_STRIPE_SIZE, DEFAULT_LOAD_FACTOR);
+
+    }
+
+    /**
+     * Constructor resulting in a map with at least {@code stripes} stripes,
+     * each starting with at least {@code stripeSize} buckets and growing
+     * whenever its ratio of entries to buckets would exceed
+     * {@code loadFactor}. More stripes let more writers work at once.
+     *
+     * @param stripes
+     *            the minimum number of stripes
+     * @param stripeSize
+     *            the minimum initial number of buckets per stripe
+     * @param loadFactor
+     *            maximum ratio of entries to buckets in a stripe
+     * @requires stripes > 0  and  stripeSize > 0  and  loadFactor > 0
+     * @ensures this = {}
+     */
+    public Map4Concurrent(int stripes, int stripeSize, double loadFactor) {
+        assert stripes > 0 : "Violation of: stripes > 0";
+        assert stripeSize > 0 : "Violation of: stripeSize > 0";
+        assert loadFactor > 0 : "Violation of: loadFactor > 0";
+
+        this.stripeBits = Integer.numberOfTrailingZeros(
+                powerOfTwoAtLeast(stripes, MAX_STRIPES));
+        this.stripeSize = powerOfTwoAtLeast(stripeSize, MAX_STRIPE_SIZE);
+        this.loadFactor = loadFactor;
+        this.createNewRep();
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public final Map<K, V> newInstance() {
+        return new Map4Concurrent<K, V>(1 << this.stripeBits, this.stripeSize,
+                this.loadFactor);
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map4Concurrent<?, ?> : ""
+                + "Violation of: source is of dynamic type "
+                + "Map4Concurrent<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * Map4Concurrent<?,?>, and the ?,? must be K,V or the call would not
+         * have compiled.
+         */
+        Map4Concurrent<K, V> localSource = (Map4Concurrent<K, V>) source;
+        assert localSource.stripeBits == this.stripeBits : ""
+                + "Violation of: source has as many stripes as this";
+        this.stripes = localSource.stripes;
+        this.size = localSource.size;
+        this.removeAnyStripe = localSource.removeAnyStripe;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        int hash = spread(key.hashCode());
+        Stripe<K, V> stripe = this.stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            assert Stripe.find(stripe.table, hash, key) == null : ""
+                    + "Violation of: key is not in DOMAIN(this)";
+
+            if (stripe.count + 1 > stripe.table.length * this.loadFactor
+                    && stripe.table.length < MAX_STRIPE_SIZE) {
+                stripe.grow();
+            }
+            int index = hash & (stripe.table.length - 1);
+            stripe.table[index] = new Node<K, V>(hash, key, value,
+                    stripe.table[index]);
+            stripe.count++;
+            this.size.increment();
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int hash = spread(key.hashCode());
+        Stripe<K, V> stripe = this.stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            assert Stripe.find(stripe.table, hash, key) != null : ""
+                    + "Violation of: key is in DOMAIN(this)";
+
+            Node<K, V> removed = stripe.unlink(hash, key);
+            this.size.decrement();
+            return new MapPair<K, V>(removed.key, removed.value);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * Stripes are tried in turn from where the last removeAny succeeded;
+         * if other threads empty this meanwhile, the precondition no longer
+         * holds and the loop reports it
+         */
+        Stripe<K, V>[] s = this.stripes;
+        int start = this.removeAnyStripe;
+        for (int i = 0; i < s.length; i++) {
+            int current = (start + i) & (s.length - 1);
+            Stripe<K, V> stripe = s[current];
+            long stamp = stripe.lock.writeLock();
+            try {
+                if (stripe.count > 0) {
+                    /*
+                     * Buckets are scanned from where the last removeAny in
+                     * this stripe found a node, wrapping around for nodes
+                     * added behind it since
+                     */
+                    int mask = stripe.table.length - 1;
+                    int bucket = stripe.removeAnyIndex & mask;
+                    Node<K, V> node = stripe.table[bucket];
+                    while (node == null) {
+                        bucket = (bucket + 1) & mask;
+                        node = stripe.table[bucket];
+                    }
+                    stripe.removeAnyIndex = bucket;
+                    stripe.unlink(node.hash, node.key);
+                    this.size.decrement();
+                    this.removeAnyStripe = current;
+                    return new MapPair<K, V>(node.key, node.value);
+                }
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+        throw new AssertionError("Violation of: this /= empty_set");
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int hash = spread(key.hashCode());
+        Node<K, V> node = this.stripeFor(hash).get(hash, key);
+        assert node != null : "Violation of: key is in DOMAIN(this)";
+
+        return node.value;
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int hash = spread(key.hashCode());
+        return this.stripeFor(hash).get(hash, key) != null;
+    }
+
+    @Override
+    public final int size() {
+        return (int) this.size.sum();
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map4ConcurrentIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code Map4Concurrent}.
+     */
+    private final class Map4ConcurrentIterator
+            implements Iterator<Pair<K, V>> {
+
+        /**
+         * The stripes being iterated over.
+         */
+        private final Stripe<K, V>[] iteratedStripes;
+
+        /**
+         * Index of the next stripe to copy.
+         */
+        private int nextStripe;
+
+        /**
+         * Iterator over the copy of the current stripe.
+         */
+        private Iterator<Pair<K, V>> stripeIterator;
+
+        /**
+         * No-argument constructor.
+         */
+        Map4ConcurrentIterator() {
+            this.iteratedStripes = Map4Concurrent.this.stripes;
+            this.nextStripe = 0;
+            this.stripeIterator = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.stripeIterator == null
+                    || !this.stripeIterator.hasNext()) {
+                if (this.nextStripe == this.iteratedStripes.length) {
+                    return false;
+                }
+                this.stripeIterator = this.iteratedStripes[this.nextStripe]
+                        .snapshot().iterator();
+                this.nextStripe++;
+            }
+            return true;
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            return this.stripeIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,797 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as a bucketized cuckoo hash table (parallel key and
+ * value arrays cut into buckets of {@code SLOTS} slots, two candidate buckets
+ * per key, and a small stash), with implementations of primary methods.
+ *
+ * <p>
+ * Every key lives in one of its two buckets or in the stash, so a lookup
+ * reads at most {@code 2 * SLOTS} adjacent pairs of slots (one short run of
+ * each array per bucket) plus the stash, which is almost always empty. That
+ * bound holds however keys collide, which makes the worst-case lookup close
+ * to the average one; in exchange {@code add} may have to move entries
+ * around ("kick" them to their other bucket), and now and then rebuild the
+ * table with new hash functions.
+ * </p>
+ *
+ * <p>
+ * Both buckets of a key come from one 64-bit mix of its hash code with a
+ * random seed: the low half picks the first bucket and the high half the
+ * second. A new seed is chosen whenever the table is rebuilt, so keys that
+ * could not all be placed are very unlikely to fail again. Only keys with
+ * equal hash codes always share their buckets; when more than
+ * {@code 2 * SLOTS + STASH_SIZE} of them are added, the stash grows past
+ * {@code STASH_SIZE} and lookups of those keys search it.
+ * </p>
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * |$this.keys| = |$this.values|  and
+ * |$this.keys| = $this.bucketCount * SLOTS  and
+ * [$this.bucketCount is a power of 2]  and
+ * |$this.stashKeys| = |$this.stashValues|  and
+ * STASH_SIZE <= $this.stashLimit  and
+ * 0 <= $this.stashSize <= $this.stashLimit  and
+ * $this.stashSize <= |$this.stashKeys|  and
+ * $this.size = [number of non-null entries in $this.keys] +
+ *              $this.stashSize  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|)
+ *   (($this.keys[i] = null) = ($this.values[i] = null))  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|  and  $this.keys[i] /= null)
+ *   (i / SLOTS = FIRST_BUCKET($this.keys[i], $this.bucketCount,
+ *                             $this.seed)  or
+ *    i / SLOTS = SECOND_BUCKET($this.keys[i], $this.bucketCount,
+ *                              $this.seed))  and
+ * [entries 0 to $this.stashSize - 1 of $this.stashKeys and
+ *  $this.stashValues are non-null, and the others are null]  and
+ * [no two keys in $this.keys and the stash are equal]
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *          where (there exists i: integer
+ *                   ((0 <= i  and  i < |$this.keys|  and
+ *                     k = $this.keys[i]  and  v = $this.values[i]  and
+ *                     k /= null)  or
+ *                    (0 <= i  and  i < $this.stashSize  and
+ *                     k = $this.stashKeys[i]  and
+ *                     v = $this.stashValues[i])))}
+ * </pre>
+ * @mathdefinitions <pre>
+ * MIX(
+ *   x: K,
+ *   seed: integer
+ *  ): integer satisfies
+ *  MIX = [computed result of x.hashCode(), combined with seed and mixed by
+ *         the 64-bit Murmur3 finalizer]
+ *
+ * FIRST_BUCKET(
+ *   x: K,
+ *   n: integer,
+ *   seed: integer
+ *  ): integer satisfies
+ *  FIRST_BUCKET = MIX(x, seed) mod n
+ *
+ * SECOND_BUCKET(
+ *   x: K,
+ *   n: integer,
+ *   seed: integer
+ *  ): integer satisfies
+ *  SECOND_BUCKET = (MIX(x, seed) / 2^32) mod n
+ * </pre>
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4Cuckoo<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Number of slots in a bucket. Four references of each array span at
+     * most 32 bytes, so a bucket's keys (and its values) usually share one
+     * cache line.
+     */
+    private static final int SLOTS = 4;
+
+    /**
+     * Default number of slots in the table.
+     */
+    private static final int DEFAULT_CAPACITY = 128;
+
+    /**
+     * Default maximum ratio of entries to slots before the table grows. With
+     * two choices of four slots each, inserts rarely need long chains of
+     * kicks below about 0.9.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.85;
+
+    /**
+     * Largest power-of-two number of buckets whose slots fit in an array.
+     */
+    private static final int MAX_BUCKET_COUNT = (1 << 30) / SLOTS;
+
+    /**
+     * Number of entries kicked out of their bucket before the entry left
+     * over is put in the stash.
+     */
+    private static final int MAX_KICKS = 500;
+
+    /**
+     * Number of entries the stash normally holds; one more than this makes
+     * the table rebuild with a new seed.
+     */
+    private static final int STASH_SIZE = 4;
+
+    /**
+     * Number of seeds a rebuild tries before it settles for a larger stash,
+     * which only happens when many keys have equal hash codes.
+     */
+    private static final int MAX_RESEEDS = 8;
+
+    /**
+     * Keys of the entries in the table, or {@code null} for empty slots;
+     * bucket b is slots {@code b * SLOTS} to {@code b * SLOTS + SLOTS - 1}.
+     */
+    private Object[] keys;
+
+    /**
+     * Values of the entries in the table, at the same positions as their
+     * keys.
+     */
+    private Object[] values;
+
+    /**
+     * Keys of the entries that did not fit in the table.
+     */
+    private Object[] stashKeys;
+
+    /**
+     * Values of the entries that did not fit in the table, at the same
+     * positions as their keys.
+     */
+    private Object[] stashValues;
+
+    /**
+     * Number of entries in the stash.
+     */
+    private int stashSize;
+
+    /**
+     * Number of entries the stash may hold before the table is rebuilt.
+     */
+    private int stashLimit;
+
+    /**
+     * Number of buckets in the table.
+     */
+    private int bucketCount;
+
+    /**
+     * Seed mixed into hash codes to pick the two buckets of each key.
+     */
+    private long seed;
+
+    /**
+     * Number of entries in {@code this}.
+     */
+    private int size;
+
+    /**
+     * Slot at which {@code removeAny} starts looking for an entry.
+     */
+    private int removeAnyIndex;
+
+    /**
+     * Maximum ratio of entries to slots before the table grows.
+     */
+    private final double loadFactor;
+
+    /**
+     * Number of buckets the table is (re)created with.
+     */
+    private final int initialBucketCount;
+
+    /**
+     * Returns the number of buckets needed for at least {@code n} slots: the
+     * smallest power of 2 that is at least {@code n / SLOTS}, up to
+     * {@code MAX_BUCKET_COUNT}.
+     *
+     * @param n
+     *            the minimum number of slots
+     * @return the number of buckets to use
+     * @requires n > 0
+     * @ensures <pre>
+     * [bucketCountFor is a power of 2]  and
+     * (bucketCountFor * SLOTS >= n  or  bucketCountFor = MAX_BUCKET_COUNT)
+     * </pre>
+     */
+    private static int bucketCountFor(int n) {
+        int count = 1;
+        while ((long) count * SLOTS < n && count < MAX_BUCKET_COUNT) {
+            count <<= 1;
+        }
+        return count;
+    }
+
+    /**
+     * Returns {@code key}'s hash code mixed with {@code seed}, whose low and
+     * high halves pick the two buckets of {@code key}.
+     *
+     * @param key
+     *            the key
+     * @param seed
+     *            the seed
+     * @return MIX(key, seed)
+     */
+    private static long mix(Object key, long seed) {
+        final long c1 = 0xff51afd7ed558ccdL;
+        final long c2 = 0xc4ceb9fe1a85ec53L;
+        final int shift = 33;
+
+        long mixed = key.hashCode() ^ seed;
+        mixed ^= mixed >>> shift;
+        mixed *= c1;
+        mixed ^= mixed >>> shift;
+        mixed *= c2;
+        mixed ^= mixed >>> shift;
+        return mixed;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param bucketCount
+     *            the number of buckets in the table
+     * @requires [bucketCount is a power of 2]
+     * @ensures <pre>
+     * $this.bucketCount = bucketCount  and
+     * |$this.keys| = bucketCount * SLOTS  and  $this.size = 0  and
+     * [$this.seed is a new random seed]
+     * </pre>
+     */
+    private void createNewRep(int bucketCount) {
+
+        this.bucketCount = bucketCount;
+        this.keys = new Object[bucketCount * SLOTS];
+        this.values = new Object[bucketCount * SLOTS];
+        this.stashKeys = new Object[STASH_SIZE + 1];
+        this.stashValues = new Object[STASH_SIZE + 1];
+        this.stashSize = 0;
+        this.stashLimit = STASH_SIZE;
+        this.seed = ThreadLocalRandom.current().nextLong();
+        this.size = 0;
+        this.removeAnyIndex = 0;
+
+    }
+
+    /**
+     * Returns the first slot of the bucket picked by {@code mixed}, the low
+     * half of a mixed hash code.
+     *
+     * @param mixed
+     *            the (low half of the) mixed hash code
+     * @return the first slot of the bucket
+     */
+    private int bucketStart(long mixed) {
+        return ((int) mixed & (this.bucketCount - 1)) * SLOTS;
+    }
+
+    /**
+     * Returns the slot holding {@code key} in the bucket starting at
+     * {@code start}, or -1 if it is not there.
+     *
+     * @param start
+     *            the first slot of the bucket
+     * @param key
+     *            the key to look for
+     * @return the slot of {@code key}, or -1
+     */
+    private int find(int start, Object key) {
+        for (int i = start; i < start + SLOTS; i++) {
+            Object k = this.keys[i];
+            if (k != null && (k == key || k.equals(key))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns an empty slot of the bucket starting at {@code start}, or -1
+     * if it is full.
+     *
+     * @param start
+     *            the first slot of the bucket
+     * @return an empty slot, or -1
+     */
+    private int freeSlot(int start) {
+        for (int i = start; i < start + SLOTS; i++) {
+            if (this.keys[i] == null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the position of {@code key}: its slot in the table, or
+     * {@code |$this.keys|} plus its position in the stash, or -1 if
+     * {@code key} is not in {@code this}.
+     *
+     * @param key
+     *            the key to look for
+     * @return the position of {@code key}, or -1
+     * @ensures <pre>
+     * if key is in DOMAIN(this)
+     *  then (indexOf < |$this.keys|  and  $this.keys[indexOf] = key)  or
+     *       $this.stashKeys[indexOf - |$this.keys|] = key
+     *  else indexOf = -1
+     * </pre>
+     */
+    private int indexOf(Object key) {
+        long mixed = mix(key, this.seed);
+        int index = this.find(this.bucketStart(mixed), key);
+        if (index < 0) {
+            index = this.find(this.bucketStart(mixed >>> Integer.SIZE), key);
+        }
+        for (int i = 0; index < 0 && i < this.stashSize; i++) {
+            if (this.stashKeys[i].equals(key)) {
+                index = this.keys.length + i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Puts the entry ({@code key}, {@code value}) into the table, kicking
+     * other entries to their other bucket as needed; if after
+     * {@code MAX_KICKS} kicks an entry is still left over, it goes in the
+     * stash.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @updates $this.keys, $this.values, $this.stashKeys, $this.stashValues,
+     *          $this.stashSize
+     * @requires [key is not in $this.keys or the stash]
+     * @ensures [the entry is added to $this.keys and the stash, which
+     *          grows if it is full]
+     */
+    private void place(Object key, Object value) {
+        Object k = key;
+        Object v = value;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            long mixed = mix(k, this.seed);
+            int first = this.bucketStart(mixed);
+            int second = this.bucketStart(mixed >>> Integer.SIZE);
+            int slot = this.freeSlot(first);
+            if (slot < 0) {
+                slot = this.freeSlot(second);
+            }
+            if (slot >= 0) {
+                this.keys[slot] = k;
+                this.values[slot] = v;
+                return;
+            }
+            // both buckets are full: swap with a random entry of either
+            int victim = ThreadLocalRandom.current().nextInt(2 * SLOTS);
+            if (victim < SLOTS) {
+                victim += first;
+            } else {
+                victim += second - SLOTS;
+            }
+            Object evictedKey = this.keys[victim];
+            Object evictedValue = this.values[victim];
+            this.keys[victim] = k;
+            this.values[victim] = v;
+            k = evictedKey;
+            v = evictedValue;
+        }
+        if (this.stashSize == this.stashKeys.length) {
+            this.stashKeys = Arrays.copyOf(this.stashKeys,
+                    2 * this.stashSize);
+            this.stashValues = Arrays.copyOf(this.stashValues,
+                    2 * this.stashSize);
+        }
+        this.stashKeys[this.stashSize] = k;
+        this.stashValues[this.stashSize] = v;
+        this.stashSize++;
+    }
+
+    /**
+     * Moves entries from the stash into the table wherever one of their
+     * buckets has an empty slot, without kicking anything.
+     *
+     * @updates $this.keys, $this.values, $this.stashKeys, $this.stashValues,
+     *          $this.stashSize
+     * @ensures [the abstract value of this is unchanged]
+     */
+    private void drainStash() {
+        int i = 0;
+        while (i < this.stashSize) {
+            long mixed = mix(this.stashKeys[i], this.seed);
+            int slot = this.freeSlot(this.bucketStart(mixed));
+            if (slot < 0) {
+                slot = this.freeSlot(this.bucketStart(mixed >>> Integer.SIZE));
+            }
+            if (slot >= 0) {
+                this.keys[slot] = this.stashKeys[i];
+                this.values[slot] = this.stashValues[i];
+                this.removeFromStash(i);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Removes entry {@code i} of the stash by moving the last entry into its
+     * place.
+     *
+     * @param i
+     *            the position in the stash
+     * @updates $this.stashKeys, $this.stashValues, $this.stashSize
+     * @requires 0 <= i < $this.stashSize
+     */
+    private void removeFromStash(int i) {
+        this.stashSize--;
+        this.stashKeys[i] = this.stashKeys[this.stashSize];
+        this.stashValues[i] = this.stashValues[this.stashSize];
+        this.stashKeys[this.stashSize] = null;
+        this.stashValues[this.stashSize] = null;
+    }
+
+    /**
+     * Moves every entry into a new table of {@code newBucketCount} buckets
+     * with a new seed, trying up to {@code MAX_RESEEDS} seeds to keep the
+     * stash within {@code STASH_SIZE}. Once the stash has had to grow, new
+     * seeds cannot help (some keys have equal hash codes), so only one is
+     * tried.
+     *
+     * @param newBucketCount
+     *            the new number of buckets
+     * @updates $this.keys, $this.values, $this.stashKeys, $this.stashValues,
+     *          $this.stashSize, $this.stashLimit, $this.bucketCount,
+     *          $this.seed
+     * @requires [newBucketCount is a power of 2]  and
+     *           newBucketCount * SLOTS > $this.size
+     * @ensures <pre>
+     * $this.bucketCount = newBucketCount  and
+     * [the abstract value of this is unchanged]
+     * </pre>
+     */
+    private void rehash(int newBucketCount) {
+        // collect the entries, including any past the stash limit
+        Object[] entryKeys = new Object[this.size];
+        Object[] entryValues = new Object[this.size];
+        int count = 0;
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != null) {
+                entryKeys[count] = this.keys[i];
+                entryValues[count] = this.values[i];
+                count++;
+            }
+        }
+        for (int i = 0; i < this.stashSize; i++) {
+            entryKeys[count] = this.stashKeys[i];
+            entryValues[count] = this.stashValues[i];
+            count++;
+        }
+
+        int savedSize = this.size;
+        int maxSeeds = MAX_RESEEDS;
+        if (this.stashLimit > STASH_SIZE) {
+            maxSeeds = 1;
+        }
+        boolean fits = false;
+        for (int seeds = 1; !fits; seeds++) {
+            this.createNewRep(newBucketCount);
+            // the last seed keeps every entry, however large the stash
+            boolean last = seeds >= maxSeeds;
+            fits = true;
+            for (int i = 0; i < count && (fits || last); i++) {
+                this.place(entryKeys[i], entryValues[i]);
+                fits = this.stashSize <= STASH_SIZE;
+            }
+            fits |= last;
+        }
+        this.size = savedSize;
+        // a stash this large next triggers a rebuild once it has doubled
+        this.stashLimit = Math.max(STASH_SIZE, 2 * this.stashSize);
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map4Cuckoo() {
+
+        this(DEFAULT_CAPACITY);
+
+    }
+
+    /**
+     * Constructor resulting in a table with room for at least
+     * {@code initialCapacity} slots before it first grows.
+     *
+     * @param initialCapacity
+     *            initial number of slots
+     * @requires initialCapacity > 0
+     * @ensures this = {}
+     */
+    public Map4Cuckoo(int initialCapacity) {
+
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+
+    }
+
+    /**
+     * Constructor resulting in a table with room for at least
+     * {@code initialCapacity} slots that grows whenever the ratio of entries
+     * to slots would exceed {@code loadFactor}.
+     *
+     * @param initialCapacity
+     *            initial number of slots
+     * @param loadFactor
+     *            maximum ratio of entries to slots
+     * @requires initialCapacity > 0  and  0 < loadFactor < 1
+     * @ensures this = {}
+     */
+    public Map4Cuckoo(int initialCapacity, double loadFactor) {
+        assert initialCapacity > 0 : "Violation of: initialCapacity > 0";
+        assert loadFactor > 0 && loadFactor < 1 : ""
+                + "Violation of: 0 < loadFactor < 1";
+
+        this.loadFactor = loadFactor;
+        this.initialBucketCount = bucketCountFor(initialCapacity);
+        this.createNewRep(this.initialBucketCount);
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.initialBucketCount);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map4Cuckoo<?, ?> : ""
+                + "Violation of: source is of dynamic type Map4Cuckoo<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * Map4Cuckoo<?,?>, and the ?,? must be K,V or the call would not have
+         * compiled.
+         */
+        Map4Cuckoo<K, V> localSource = (Map4Cuckoo<K, V>) source;
+        this.keys = localSource.keys;
+        this.values = localSource.values;
+        this.stashKeys = localSource.stashKeys;
+        this.stashValues = localSource.stashValues;
+        this.stashSize = localSource.stashSize;
+        this.stashLimit = localSource.stashLimit;
+        this.bucketCount = localSource.bucketCount;
+        this.seed = localSource.seed;
+        this.size = localSource.size;
+        this.removeAnyIndex = localSource.removeAnyIndex;
+        localSource.createNewRep(localSource.initialBucketCount);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        if (this.size + 1 > this.keys.length * this.loadFactor
+                && this.bucketCount < MAX_BUCKET_COUNT) {
+            this.rehash(this.bucketCount * 2);
+        }
+
+        this.place(key, value);
+        this.size++;
+        if (this.stashSize > this.stashLimit) {
+            this.rehash(this.bucketCount);
+        }
+
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int index = this.indexOf(key);
+        Pair<K, V> removed;
+        if (index < this.keys.length) {
+            removed = new MapPair<K, V>((K) this.keys[index],
+                    (V) this.values[index]);
+            this.keys[index] = null;
+            this.values[index] = null;
+            if (this.stashSize > 0) {
+                // the freed slot may be one a stashed entry can use
+                this.drainStash();
+            }
+        } else {
+            index -= this.keys.length;
+            removed = new MapPair<K, V>((K) this.stashKeys[index],
+                    (V) this.stashValues[index]);
+            this.removeFromStash(index);
+        }
+        this.size--;
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        Pair<K, V> removed;
+        if (this.stashSize > 0) {
+            int last = this.stashSize - 1;
+            removed = new MapPair<K, V>((K) this.stashKeys[last],
+                    (V) this.stashValues[last]);
+            this.removeFromStash(last);
+        } else {
+            /*
+             * Scanning resumes where the last removeAny stopped, so draining
+             * the map visits each slot about once
+             */
+            int index = this.removeAnyIndex;
+            while (this.keys[index] == null) {
+                index = (index + 1) % this.keys.length;
+            }
+            this.removeAnyIndex = index;
+            removed = new MapPair<K, V>((K) this.keys[index],
+                    (V) this.values[index]);
+            this.keys[index] = null;
+            this.values[index] = null;
+        }
+        this.size--;
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int index = this.indexOf(key);
+        V value;
+        if (index < this.keys.length) {
+            value = (V) this.values[index];
+        } else {
+            value = (V) this.stashValues[index - this.keys.length];
+        }
+        return value;
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.indexOf(key) >= 0;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map4CuckooIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map4Cuckoo}.
+     */
+    private final class Map4CuckooIterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Position to be examined next: a slot of the table, or
+         * {@code |keys|} plus a position in the stash.
+         */
+        private int current;
+
+        /**
+         * No-argument constructor.
+         */
+        Map4CuckooIterator() {
+            this.numberSeen = 0;
+            this.current = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < Map4Cuckoo.this.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            Object[] keys = Map4Cuckoo.this.keys;
+            while (this.current < keys.length && keys[this.current] == null) {
+                this.current++;
+            }
+            Pair<K, V> next;
+            if (this.current < keys.length) {
+                next = new MapPair<K, V>((K) keys[this.current],
+                        (V) Map4Cuckoo.this.values[this.current]);
+            } else {
+                int i = this.current - keys.length;
+                next = new MapPair<K, V>((K) Map4Cuckoo.this.stashKeys[i],
+                        (V) Map4Cuckoo.this.stashValues[i]);
+            }
+            this.current++;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,680 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * Thread-safe {@code Map} represented as a hash table whose buckets are
+ * immutable chains published through an {@code AtomicReferenceArray}, with
+ * implementations of primary methods. No method ever blocks.
+ *
+ * <p>
+ * {@code hasKey} and {@code value} read the head of a bucket with volatile
+ * semantics and walk a chain that can no longer change, so every lookup is
+ * linearizable at the moment the head is read. {@code add} and
+ * {@code remove} build the new chain and install it with a compare-and-set
+ * on the bucket, retrying if another writer got there first.
+ * </p>
+ *
+ * <p>
+ * To grow, one thread (chosen by a compare-and-set) copies each bucket's
+ * chain into a table twice as large, splitting it between buckets {@code i}
+ * and {@code i + n}, and then replaces the bucket with a {@code Forward}
+ * marker pointing to the new table. Readers and writers reaching a marker
+ * simply continue in the new table, so lookups never wait for the copy.
+ * Iterators are weakly consistent: they follow markers, never fail, and see
+ * every entry present for their whole lifetime once. {@code clear},
+ * {@code transferFrom} and {@code newInstance} must not run concurrently with
+ * other methods on the same maps.
+ * </p>
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * [|$this.table| is a power of 2]  and
+ * [every bucket of $this.table, and of every table reached through Forward
+ *  markers, is null, a Forward marker, or an immutable chain of nodes]  and
+ * [every node n in a chain of bucket i of a table t has
+ *    n.hash = SPREAD(n.key.hashCode())  and  n.hash mod |t| = i]  and
+ * [a Forward marker at bucket i of t leads to a table of 2 * |t| buckets
+ *  whose buckets i and i + |t| hold the entries that bucket i held]  and
+ * $this.size = [number of nodes reachable from $this.table]  and
+ * [the keys of the nodes reachable from $this.table are distinct]
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *          where ([some node reachable from $this.table has key k and
+ *                  value v])}
+ * </pre>
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4LockFree<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of buckets.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Default maximum ratio of entries to buckets before the table grows.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    /**
+     * Largest number of buckets.
+     */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Hash of {@code Forward} markers; spread hashes of keys are never
+     * compared with it, since markers are recognized by type.
+     */
+    private static final int FORWARD_HASH = -1;
+
+    /**
+     * Number of buckets the table is (re)created with.
+     */
+    private final int initialCapacity;
+
+    /**
+     * Maximum ratio of entries to buckets before the table grows.
+     */
+    private final double loadFactor;
+
+    /**
+     * The current table.
+     */
+    private volatile AtomicReferenceArray<Node<K, V>> table;
+
+    /**
+     * Number of entries in {@code this}.
+     */
+    private volatile LongAdder size;
+
+    /**
+     * Whether a thread is growing {@code table}.
+     */
+    private volatile AtomicBoolean resizing;
+
+    /**
+     * Bucket at which {@code removeAny} starts looking for an entry.
+     */
+    private volatile int removeAnyIndex;
+
+    /**
+     * Immutable entry of a bucket chain.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static class Node<K, V> {
+
+        /**
+         * Spread hash of the key.
+         */
+        private final int hash;
+
+        /**
+         * The key.
+         */
+        private final K key;
+
+        /**
+         * The value.
+         */
+        private final V value;
+
+        /**
+         * Next node of the chain; {@code null} at the end of the chain.
+         */
+        private final Node<K, V> next;
+
+        /**
+         * Constructor.
+         *
+         * @param hash
+         *            the spread hash of the key
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         * @param next
+         *            the next node of the chain
+         */
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+    }
+
+    /**
+     * Marker replacing a bucket whose entries have been copied to a larger
+     * table.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class Forward<K, V> extends Node<K, V> {
+
+        /**
+         * The table holding the entries of the bucket now.
+         */
+        private final AtomicReferenceArray<Node<K, V>> nextTable;
+
+        /**
+         * Constructor.
+         *
+         * @param nextTable
+         *            the table holding the entries of the bucket now
+         */
+        Forward(AtomicReferenceArray<Node<K, V>> nextTable) {
+            super(FORWARD_HASH, null, null, null);
+            this.nextTable = nextTable;
+        }
+
+    }
+
+    /**
+     * Returns the smallest power of 2 that is at least {@code n}, up to
+     * {@code MAX_CAPACITY}.
+     *
+     * @param n
+     *            the minimum capacity
+     * @return the capacity to use
+     * @requires n > 0
+     */
+    private static int tableSizeFor(int n) {
+        int capacity = 1;
+        while (capacity < n && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Mixes the bits of {@code h} with the Murmur3 finalizer, so that the low
+     * bits choosing the bucket depend on every bit of {@code h}.
+     *
+     * @param h
+     *            the hash code to spread
+     * @return the spread hash
+     */
+    private static int spread(int h) {
+        final int c1 = 0x85ebca6b;
+        final int c2 = 0xc2b2ae35;
+        final int shift1 = 16;
+        final int shift2 = 13;
+
+        int mixed = h;
+        mixed ^= mixed >>> shift1;
+        mixed *= c1;
+        mixed ^= mixed >>> shift2;
+        mixed *= c2;
+        mixed ^= mixed >>> shift1;
+        return mixed;
+    }
+
+    /**
+     * Returns the node of {@code key} in the chain starting at {@code node},
+     * or {@code null} if there is none.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     * @param node
+     *            the head of the chain
+     * @param hash
+     *            the spread hash of {@code key}
+     * @param key
+     *            the key to look for
+     * @return the node of {@code key}, or {@code null}
+     * @requires [node is not a Forward marker]
+     */
+    private static <K, V> Node<K, V> find(Node<K, V> node, int hash,
+            Object key) {
+        Node<K, V> n = node;
+        while (n != null && (n.hash != hash || !n.key.equals(key))) {
+            n = n.next;
+        }
+        return n;
+    }
+
+    /**
+     * Returns a copy of the chain starting at {@code head} without
+     * {@code removed}, sharing the nodes after {@code removed}.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     * @param head
+     *            the head of the chain
+     * @param removed
+     *            the node to leave out
+     * @return the head of the new chain
+     * @requires [removed is in the chain starting at head]
+     */
+    private static <K, V> Node<K, V> without(Node<K, V> head,
+            Node<K, V> removed) {
+        /*
+         * The nodes before removed are copied in a loop rather than by
+         * recursion, since a chain of keys with equal hash codes can be too
+         * long for the stack
+         */
+        Deque<Node<K, V>> before = new ArrayDeque<Node<K, V>>();
+        for (Node<K, V> n = head; n != removed; n = n.next) {
+            before.push(n);
+        }
+        Node<K, V> copy = removed.next;
+        while (!before.isEmpty()) {
+            Node<K, V> n = before.pop();
+            copy = new Node<K, V>(n.hash, n.key, n.value, copy);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the node of {@code key}, or {@code null} if there is none,
+     * following {@code Forward} markers.
+     *
+     * @param hash
+     *            the spread hash of {@code key}
+     * @param key
+     *            the key to look for
+     * @return the node of {@code key}, or {@code null}
+     */
+    private Node<K, V> get(int hash, Object key) {
+        AtomicReferenceArray<Node<K, V>> t = this.table;
+        Node<K, V> head = t.get(hash & (t.length() - 1));
+        while (head instanceof Forward<?, ?>) {
+            t = ((Forward<K, V>) head).nextTable;
+            head = t.get(hash & (t.length() - 1));
+        }
+        return find(head, hash, key);
+    }
+
+    /**
+     * Grows the table if it is over its load factor and no other thread is
+     * already growing it.
+     */
+    private void growIfNeeded() {
+        AtomicReferenceArray<Node<K, V>> t = this.table;
+        int n = t.length();
+        if (this.size.sum() > n * this.loadFactor && n < MAX_CAPACITY
+                && this.resizing.compareAndSet(false, true)) {
+            try {
+                // another thread may have grown the table in the meantime
+                if (this.table == t) {
+                    this.transfer(t);
+                }
+            } finally {
+                this.resizing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Copies every bucket of {@code t} into a table twice as large, leaving a
+     * {@code Forward} marker behind in each, and then makes the new table the
+     * table of {@code this}.
+     *
+     * @param t
+     *            the table to grow
+     * @requires [t is $this.table, and the caller is the only thread growing
+     *           it]
+     */
+    private void transfer(AtomicReferenceArray<Node<K, V>> t) {
+        int n = t.length();
+        AtomicReferenceArray<Node<K, V>> nextTable =
+                new AtomicReferenceArray<Node<K, V>>(2 * n);
+        Forward<K, V> forward = new Forward<K, V>(nextTable);
+        for (int i = 0; i < n; i++) {
+            boolean moved = false;
+            while (!moved) {
+                Node<K, V> head = t.get(i);
+                Node<K, V> low = null;
+                Node<K, V> high = null;
+                for (Node<K, V> node = head; node != null; node = node.next) {
+                    if ((node.hash & n) == 0) {
+                        low = new Node<K, V>(node.hash, node.key, node.value,
+                                low);
+                    } else {
+                        high = new Node<K, V>(node.hash, node.key, node.value,
+                                high);
+                    }
+                }
+                /*
+                 * Writers only reach buckets i and i + n of nextTable through
+                 * the marker at i, so they are still private here; if a writer
+                 * changed bucket i meanwhile, the split is redone
+                 */
+                nextTable.set(i, low);
+                nextTable.set(i + n, high);
+                moved = t.compareAndSet(i, head, forward);
+            }
+        }
+        this.table = nextTable;
+        this.removeAnyIndex = 0;
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+
+        this.table = new AtomicReferenceArray<Node<K, V>>(this.initialCapacity);
+        this.size = new LongAdder();
+        this.resizing = new AtomicBoolean(false);
+        this.removeAnyIndex = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map4LockFree() {
+
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+
+    }
+
+    /**
+     * Constructor resulting in a table with at least {@code initialCapacity}
+     * buckets that grows whenever the ratio of entries to buckets exceeds
+     * {@code loadFactor}.
+     *
+     * @param initialCapacity
+     *            initial number of buckets
+     * @param loadFactor
+     *            maximum ratio of entries to buckets
+     * @requires initialCapacity > 0  and  loadFactor > 0
+     * @ensures this = {}
+     */
+    public Map4LockFree(int initialCapacity, double loadFactor) {
+        assert initialCapacity > 0 : "Violation of: initialCapacity > 0";
+        assert loadFactor > 0 : "Violation of: loadFactor > 0";
+
+        this.initialCapacity = tableSizeFor(initialCapacity);
+        this.loadFactor = loadFactor;
+        this.createNewRep();
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public final Map<K, V> newInstance() {
+        return new Map4LockFree<K, V>(this.initialCapacity, this.loadFactor);
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map4LockFree<?, ?> : ""
+                + "Violation of: source is of dynamic type Map4LockFree<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * Map4LockFree<?,?>, and the ?,? must be K,V or the call would not
+         * have compiled.
+         */
+        Map4LockFree<K, V> localSource = (Map4LockFree<K, V>) source;
+        this.table = localSource.table;
+        this.size = localSource.size;
+        this.resizing = localSource.resizing;
+        this.removeAnyIndex = localSource.removeAnyIndex;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        int hash = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> t = this.table;
+        boolean added = false;
+        while (!added) {
+            int index = hash & (t.length() - 1);
+            Node<K, V> head = t.get(index);
+            if (head instanceof Forward<?, ?>) {
+                t = ((Forward<K, V>) head).nextTable;
+            } else {
+                assert find(head, hash, key) == null : ""
+                        + "Violation of: key is not in DOMAIN(this)";
+                added = t.compareAndSet(index, head,
+                        new Node<K, V>(hash, key, value, head));
+            }
+        }
+        this.size.increment();
+        this.growIfNeeded();
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int hash = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> t = this.table;
+        Node<K, V> removed = null;
+        while (removed == null) {
+            int index = hash & (t.length() - 1);
+            Node<K, V> head = t.get(index);
+            if (head instanceof Forward<?, ?>) {
+                t = ((Forward<K, V>) head).nextTable;
+            } else {
+                Node<K, V> node = find(head, hash, key);
+                assert node != null : "Violation of: key is in DOMAIN(this)";
+                if (t.compareAndSet(index, head, without(head, node))) {
+                    removed = node;
+                }
+            }
+        }
+        this.size.decrement();
+        return new MapPair<K, V>(removed.key, removed.value);
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * Buckets are scanned from where the last removeAny succeeded,
+         * following markers; a bucket emptied by another thread meanwhile is
+         * simply skipped, and a scan that comes back empty-handed starts over
+         * from the current table unless this has become empty
+         */
+        AtomicReferenceArray<Node<K, V>> t = this.table;
+        int index = this.removeAnyIndex & (t.length() - 1);
+        int scanned = 0;
+        Node<K, V> removed = null;
+        while (removed == null) {
+            Node<K, V> head = t.get(index);
+            if (head instanceof Forward<?, ?>) {
+                t = ((Forward<K, V>) head).nextTable;
+                scanned = 0;
+            } else if (head == null) {
+                index = (index + 1) & (t.length() - 1);
+                scanned++;
+                if (scanned == t.length()) {
+                    if (this.size() == 0) {
+                        throw new AssertionError(
+                                "Violation of: this /= empty_set");
+                    }
+                    t = this.table;
+                    index = 0;
+                    scanned = 0;
+                }
+            } else if (t.compareAndSet(index, head, head.next)) {
+                removed = head;
+            }
+        }
+        this.removeAnyIndex = index;
+        this.size.decrement();
+        return new MapPair<K, V>(removed.key, removed.value);
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        Node<K, V> node = this.get(spread(key.hashCode()), key);
+        assert node != null : "Violation of: key is in DOMAIN(this)";
+
+        return node.value;
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.get(spread(key.hashCode()), key) != null;
+    }
+
+    @Override
+    public final int size() {
+        return (int) this.size.sum();
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map4LockFreeIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map4LockFree}.
+     */
+    private final class Map4LockFreeIterator
+            implements Iterator<Pair<K, V>> {
+
+        /**
+         * The table being iterated over.
+         */
+        private final AtomicReferenceArray<Node<K, V>> iteratedTable;
+
+        /**
+         * Index of the next bucket of {@code iteratedTable} to visit.
+         */
+        private int nextBucket;
+
+        /**
+         * Chains found but not yet returned.
+         */
+        private final Deque<Node<K, V>> pending;
+
+        /**
+         * Node to be returned next, or {@code null} if it must be looked for.
+         */
+        private Node<K, V> current;
+
+        /**
+         * No-argument constructor.
+         */
+        Map4LockFreeIterator() {
+            this.iteratedTable = Map4LockFree.this.table;
+            this.nextBucket = 0;
+            this.pending = new ArrayDeque<Node<K, V>>();
+            this.current = null;
+        }
+
+        /**
+         * Pushes the chains holding the entries of bucket {@code i} of
+         * {@code t} onto {@code pending}, following markers.
+         *
+         * @param t
+         *            the table
+         * @param i
+         *            the bucket
+         */
+        private void visit(AtomicReferenceArray<Node<K, V>> t, int i) {
+            Node<K, V> head = t.get(i);
+            if (head instanceof Forward<?, ?>) {
+                AtomicReferenceArray<Node<K, V>> next =
+                        ((Forward<K, V>) head).nextTable;
+                this.visit(next, i);
+                this.visit(next, i + t.length());
+            } else if (head != null) {
+                this.pending.push(head);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.current == null) {
+                if (!this.pending.isEmpty()) {
+                    this.current = this.pending.pop();
+                } else if (this.nextBucket < this.iteratedTable.length()) {
+                    this.visit(this.iteratedTable, this.nextBucket);
+                    this.nextBucket++;
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Node<K, V> node = this.current;
+            this.current = node.next;
+            return new MapPair<K, V>(node.key, node.value);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,1320 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as an open-addressing hash table stored outside the
+ * Java heap, in a direct {@code ByteBuffer} (the "arena"), with
+ * implementations of primary methods.
+ *
+ * <p>
+ * Keys and values are converted to bytes by the {@code Serializer}s given to
+ * the constructor, and each entry is written into the arena as a record:
+ * </p>
+ *
+ * <pre>
+ * int keyLength, int valueLength, keyLength key bytes, valueLength value bytes
+ * </pre>
+ *
+ * <p>
+ * The slot table, also in the arena, holds 8 bytes per slot: the hash of the
+ * key bytes and the position of the record, 0 for an empty slot. Collisions
+ * are resolved by linear probing, and removal shifts later slots of the probe
+ * run back into the gap. Records are only ever appended; the space of removed
+ * records and of outgrown slot tables is reclaimed by copying the live
+ * records into a new arena once it makes up half of the arena.
+ * </p>
+ *
+ * <p>
+ * However many entries there are, the heap holds only this object and the
+ * arena's {@code ByteBuffer}, so the garbage collector has nothing to trace.
+ * {@code value}, {@code remove}, {@code removeAny} and the iterator return
+ * new objects read from the arena rather than the objects that were added.
+ * The arena is a single {@code ByteBuffer}, so it is limited to 2 GB.
+ * </p>
+ *
+ * <p>
+ * {@code close} releases the arena; a closed map must not be used again.
+ * </p>
+ *
+ * <p>
+ * A map constructed with a file keeps the arena in that file, mapped into
+ * memory with {@code FileChannel.map}, so the file is the table: reopening it
+ * only maps it again, and the operating system reads each page in the first
+ * time a lookup touches it. The arena starts with a {@code HEADER_BYTES}-byte
+ * header of big-endian {@code int}s:
+ * </p>
+ *
+ * <pre>
+ * MAGIC, VERSION, state (CLEAN or DIRTY), capacity, slotsOffset, size, top,
+ * garbage, CRC-32 of the preceding 32 bytes
+ * </pre>
+ *
+ * <p>
+ * The header is marked {@code DIRTY} and forced to disk before the first
+ * change after a {@code sync}, and marked {@code CLEAN} again by
+ * {@code sync} (and {@code close}) only after the rest of the file has been
+ * forced to disk. Reopening a file whose header is not {@code CLEAN}, say
+ * after a crash, fails instead of returning a table that may be torn.
+ * Compaction and {@code clear} write a new file next to the old one and move
+ * it into place atomically. The serializers are not recorded in the file;
+ * it must be reopened with the ones it was written with.
+ * </p>
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * [$this.capacity is a power of 2]  and
+ * $this.size <= $this.capacity * $this.loadFactor  and
+ * $this.size < $this.capacity  and
+ * ARENA_START <= $this.slotsOffset  and
+ * $this.slotsOffset + $this.capacity * SLOT_BYTES <= $this.top  and
+ * $this.top <= |$this.arena|  and
+ * [the bytes of $this.arena at and after $this.top are 0]  and
+ * $this.size = [number of slots with a non-zero record position]  and
+ * [every non-zero record position is that of a record between the slot
+ *  table and $this.top, and no two slots hold the same position]  and
+ * $this.garbage = $this.top - ARENA_START - $this.capacity * SLOT_BYTES -
+ *   [total length of the records of the slots]  and
+ * [the hash of every non-empty slot is HASH of its record's key bytes]  and
+ * [every slot from HASH(key bytes) mod $this.capacity up to a non-empty slot,
+ *  wrapping around the end of the table, is non-empty]  and
+ * [the key bytes of the records of the slots are distinct]
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *          where ([some slot's record holds the bytes of k and v])}
+ * </pre>
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4OffHeap<K, V> extends MapSecondary<K, V>
+        implements AutoCloseable {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of slots in the table.
+     */
+    private static final int DEFAULT_CAPACITY = 128;
+
+    /**
+     * Default maximum ratio of entries to slots before the table grows.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.5;
+
+    /**
+     * Largest number of slots; the table and the one replacing it must fit in
+     * the arena together.
+     */
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    /**
+     * Largest number of bytes in the arena.
+     */
+    private static final int MAX_ARENA_BYTES = Integer.MAX_VALUE - 8;
+
+    /**
+     * Bytes reserved for the header at the start of every arena. Since the
+     * arena hands out nothing before it, no record is at position 0, which
+     * marks an empty slot.
+     */
+    private static final int HEADER_BYTES = 64;
+
+    /**
+     * Position of the first byte the arena hands out.
+     */
+    private static final int ARENA_START = HEADER_BYTES;
+
+    /**
+     * First header field of every file written by this class ("MAP4").
+     */
+    private static final int MAGIC = 0x4D415034;
+
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * State of a file whose header matches the rest of the file.
+     */
+    private static final int CLEAN = 1;
+
+    /**
+     * State of a file that may have changed since its header was written.
+     */
+    private static final int DIRTY = 2;
+
+    /**
+     * Position in the header of the magic number.
+     */
+    private static final int MAGIC_OFFSET = 0;
+
+    /**
+     * Position in the header of the version.
+     */
+    private static final int VERSION_OFFSET = 4;
+
+    /**
+     * Position in the header of the state.
+     */
+    private static final int STATE_OFFSET = 8;
+
+    /**
+     * Position in the header of the number of slots.
+     */
+    private static final int CAPACITY_OFFSET = 12;
+
+    /**
+     * Position in the header of the position of the slot table.
+     */
+    private static final int SLOTS_OFFSET_OFFSET = 16;
+
+    /**
+     * Position in the header of the number of entries.
+     */
+    private static final int SIZE_OFFSET = 20;
+
+    /**
+     * Position in the header of the first unused byte.
+     */
+    private static final int TOP_OFFSET = 24;
+
+    /**
+     * Position in the header of the number of garbage bytes.
+     */
+    private static final int GARBAGE_OFFSET = 28;
+
+    /**
+     * Position in the header of the checksum of the fields before it.
+     */
+    private static final int CHECKSUM_OFFSET = 32;
+
+    /**
+     * Bytes per slot: the hash of the key, then the position of the record.
+     */
+    private static final int SLOT_BYTES = 8;
+
+    /**
+     * Bytes of the record header: the key length, then the value length.
+     */
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    /**
+     * Bytes of records the initial arena has room for, per slot.
+     */
+    private static final int RECORD_BYTES_PER_SLOT = 32;
+
+    /**
+     * Converts keys to and from bytes.
+     */
+    private final Serializer<K> keySerializer;
+
+    /**
+     * Converts values to and from bytes.
+     */
+    private final Serializer<V> valueSerializer;
+
+    /**
+     * Maximum ratio of entries to slots before the table grows.
+     */
+    private final double loadFactor;
+
+    /**
+     * Number of slots the table is (re)created with.
+     */
+    private final int initialCapacity;
+
+    /**
+     * File holding the arena, or {@code null} if the arena is a direct
+     * {@code ByteBuffer}.
+     */
+    private final Path file;
+
+    /**
+     * Channel of {@code file} that {@code arena} is mapped from.
+     */
+    private FileChannel channel;
+
+    /**
+     * Channel of the file that replaces {@code file} once it is complete, or
+     * {@code null} if none is being written.
+     */
+    private FileChannel pendingChannel;
+
+    /**
+     * Whether {@code file} has been marked {@code DIRTY} since the last
+     * {@code sync}.
+     */
+    private boolean dirty;
+
+    /**
+     * The header, slot table and records; {@code null} once closed.
+     */
+    private ByteBuffer arena;
+
+    /**
+     * View of {@code arena} whose position and limit are moved to pass a
+     * single key or value to a {@code Serializer}.
+     */
+    private ByteBuffer reader;
+
+    /**
+     * Position of the first unused byte of {@code arena}.
+     */
+    private int top;
+
+    /**
+     * Number of bytes before {@code top} not used by the slot table or by the
+     * record of any entry.
+     */
+    private int garbage;
+
+    /**
+     * Position of the slot table.
+     */
+    private int slotsOffset;
+
+    /**
+     * Number of slots in the table.
+     */
+    private int capacity;
+
+    /**
+     * Number of entries in {@code this}.
+     */
+    private int size;
+
+    /**
+     * Slot at which {@code removeAny} starts looking for an entry.
+     */
+    private int removeAnyIndex;
+
+    /**
+     * Bytes of the key most recently passed to {@code encodeKey}.
+     */
+    private ByteBuffer keyBytes;
+
+    /**
+     * Number of bytes in {@code keyBytes}.
+     */
+    private int keyLength;
+
+    /**
+     * Hash of the bytes in {@code keyBytes}.
+     */
+    private int keyHash;
+
+    /**
+     * Returns the smallest power of 2 that is at least {@code n}, up to
+     * {@code MAX_CAPACITY}.
+     *
+     * @param n
+     *            the minimum capacity
+     * @return the capacity to use
+     * @requires n > 0
+     */
+    private static int tableSizeFor(int n) {
+        int capacity = 1;
+        while (capacity < n && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns the hash of the first {@code length} bytes of {@code bytes},
+     * mixed by the Murmur3 finalizer so that every bit of the hash depends on
+     * every byte.
+     *
+     * @param bytes
+     *            the bytes to hash
+     * @param length
+     *            the number of bytes to hash
+     * @return the hash of the bytes
+     * @requires 0 <= length <= |bytes|
+     */
+    private static int hash(byte[] bytes, int length) {
+        final int multiplier = 31;
+        final int c1 = 0x85ebca6b;
+        final int c2 = 0xc2b2ae35;
+        final int shift1 = 16;
+        final int shift2 = 13;
+
+        int h = 1;
+        for (int i = 0; i < length; i++) {
+            h = multiplier * h + bytes[i];
+        }
+        h ^= h >>> shift1;
+        h *= c1;
+        h ^= h >>> shift2;
+        h *= c2;
+        h ^= h >>> shift1;
+        return h;
+    }
+
+    /**
+     * Returns the path of the file written to replace {@code file}.
+     *
+     * @param file
+     *            the file to be replaced
+     * @return the path of the replacement
+     */
+    private static Path pendingFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    /**
+     * Returns the CRC-32 of the header fields of {@code arena} before the
+     * checksum.
+     *
+     * @param arena
+     *            the arena
+     * @return the checksum of the header
+     */
+    private static int checksum(ByteBuffer arena) {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < CHECKSUM_OFFSET; i++) {
+            crc.update(arena.get(i));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param slots
+     *            the number of slots in the table
+     * @requires [slots is a power of 2]
+     */
+    private void createNewRep(int slots) {
+
+        long bytes = ARENA_START
+                + (long) slots * (SLOT_BYTES + RECORD_BYTES_PER_SLOT);
+        this.replaceArena((int) Math.min(bytes, MAX_ARENA_BYTES));
+        this.capacity = slots;
+        this.slotsOffset = ARENA_START;
+        this.top = this.slotsOffset + slots * SLOT_BYTES;
+        this.garbage = 0;
+        this.size = 0;
+        this.removeAnyIndex = 0;
+        this.commitArena();
+
+    }
+
+    /**
+     * Creator of representation from the existing {@code file}.
+     *
+     * @throws IOException
+     *             if {@code file} cannot be read, or is not a cleanly closed
+     *             file written by this class
+     * @requires $this.file is not null
+     */
+    private void openRep() throws IOException {
+        this.channel = FileChannel.open(this.file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long length = this.channel.size();
+            if (length < HEADER_BYTES || length > MAX_ARENA_BYTES) {
+                throw new IOException(this.file + " is not a map file");
+            }
+            this.setArena(this.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    length));
+            if (this.arena.getInt(MAGIC_OFFSET) != MAGIC
+                    || this.arena.getInt(VERSION_OFFSET) != VERSION
+                    || this.arena.getInt(CHECKSUM_OFFSET) != checksum(
+                            this.arena)) {
+                throw new IOException(this.file + " is not a map file");
+            }
+            if (this.arena.getInt(STATE_OFFSET) != CLEAN) {
+                throw new IOException(this.file + " was not closed cleanly");
+            }
+            this.capacity = this.arena.getInt(CAPACITY_OFFSET);
+            this.slotsOffset = this.arena.getInt(SLOTS_OFFSET_OFFSET);
+            this.size = this.arena.getInt(SIZE_OFFSET);
+            this.top = this.arena.getInt(TOP_OFFSET);
+            this.garbage = this.arena.getInt(GARBAGE_OFFSET);
+            this.removeAnyIndex = 0;
+            this.dirty = false;
+            if (this.capacity <= 0 || this.capacity > MAX_CAPACITY
+                    || Integer.bitCount(this.capacity) != 1
+                    || this.size < 0 || this.size >= this.capacity
+                    || this.slotsOffset < ARENA_START
+                    || (long) this.slotsOffset
+                            + (long) this.capacity * SLOT_BYTES > this.top
+                    || this.top > length || this.garbage < 0
+                    || this.garbage > this.top) {
+                throw new IOException(this.file + " has a corrupt header");
+            }
+        } catch (IOException e) {
+            this.channel.close();
+            this.arena = null;
+            this.reader = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Makes {@code arena} the arena of {@code this}.
+     *
+     * @param arena
+     *            the new arena
+     * @updates $this.arena, $this.reader
+     */
+    private void setArena(ByteBuffer arena) {
+        this.arena = arena;
+        this.reader = arena.duplicate();
+    }
+
+    /**
+     * Replaces the arena of {@code this} with a new, zeroed arena of
+     * {@code bytes} bytes. For a file-backed map the new arena is a new file,
+     * which replaces {@code file} at the next {@code commitArena}.
+     *
+     * @param bytes
+     *            the size of the new arena
+     * @updates $this.arena, $this.reader, $this.pendingChannel
+     * @requires HEADER_BYTES <= bytes <= MAX_ARENA_BYTES
+     */
+    private void replaceArena(int bytes) {
+        if (this.file == null) {
+            this.setArena(ByteBuffer.allocateDirect(bytes));
+        } else {
+            try {
+                this.pendingChannel = FileChannel.open(pendingFile(this.file),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                this.setArena(this.pendingChannel
+                        .map(FileChannel.MapMode.READ_WRITE, 0, bytes));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Finishes a {@code replaceArena}: for a file-backed map, writes the new
+     * file to disk and moves it over {@code file}, so that {@code file} is at
+     * all times either the old table or the complete new one.
+     *
+     * @updates $this
+     */
+    private void commitArena() {
+        if (this.pendingChannel != null) {
+            this.dirty = true;
+            this.sync();
+            try {
+                if (this.channel != null) {
+                    this.channel.close();
+                }
+                Files.move(pendingFile(this.file), this.file,
+                        StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.channel = this.pendingChannel;
+            this.pendingChannel = null;
+        }
+    }
+
+    /**
+     * Replaces the arena of {@code this} with one of {@code bytes} bytes
+     * holding the same bytes up to {@code top}. A file-backed map grows its
+     * file in place.
+     *
+     * @param bytes
+     *            the size of the new arena
+     * @updates $this.arena, $this.reader
+     * @requires $this.top <= bytes <= MAX_ARENA_BYTES
+     */
+    private void extendArena(int bytes) {
+        if (this.file == null) {
+            ByteBuffer source = this.arena.duplicate();
+            source.position(0);
+            source.limit(this.top);
+            this.setArena(ByteBuffer.allocateDirect(bytes));
+            this.arena.put(source);
+        } else {
+            try {
+                this.setArena(this.channel.map(FileChannel.MapMode.READ_WRITE,
+                        0, bytes));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes the fields of {@code this} into the header of the arena, with
+     * state {@code state}.
+     *
+     * @param state
+     *            CLEAN or DIRTY
+     * @updates $this.arena
+     */
+    private void writeHeader(int state) {
+        this.arena.putInt(MAGIC_OFFSET, MAGIC);
+        this.arena.putInt(VERSION_OFFSET, VERSION);
+        this.arena.putInt(STATE_OFFSET, state);
+        this.arena.putInt(CAPACITY_OFFSET, this.capacity);
+        this.arena.putInt(SLOTS_OFFSET_OFFSET, this.slotsOffset);
+        this.arena.putInt(SIZE_OFFSET, this.size);
+        this.arena.putInt(TOP_OFFSET, this.top);
+        this.arena.putInt(GARBAGE_OFFSET, this.garbage);
+        this.arena.putInt(CHECKSUM_OFFSET, checksum(this.arena));
+    }
+
+    /**
+     * Marks the file of a file-backed map {@code DIRTY} on disk, unless it
+     * already is, before {@code this} changes.
+     *
+     * @updates $this.arena, $this.dirty
+     */
+    private void markDirty() {
+        if (this.file != null && !this.dirty) {
+            this.writeHeader(DIRTY);
+            ((MappedByteBuffer) this.arena).force();
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * Returns the position of slot {@code index}.
+     *
+     * @param index
+     *            the slot
+     * @return the position in the arena of the slot
+     * @requires 0 <= index < $this.capacity
+     */
+    private int slot(int index) {
+        return this.slotsOffset + index * SLOT_BYTES;
+    }
+
+    /**
+     * Returns the position of the record of slot {@code index}, or 0 if the
+     * slot is empty.
+     *
+     * @param index
+     *            the slot
+     * @return the position of the record
+     * @requires 0 <= index < $this.capacity
+     */
+    private int record(int index) {
+        return this.arena.getInt(this.slot(index) + Integer.BYTES);
+    }
+
+    /**
+     * Returns the number of bytes of the record at {@code record}.
+     *
+     * @param arena
+     *            the arena holding the record
+     * @param record
+     *            the position of the record
+     * @return the length of the record
+     */
+    private static int recordLength(ByteBuffer arena, int record) {
+        return RECORD_HEADER_BYTES + arena.getInt(record)
+                + arena.getInt(record + Integer.BYTES);
+    }
+
+    /**
+     * Reads an object from the {@code length} bytes at {@code position}.
+     *
+     * @param <T>
+     *            type of the object
+     * @param serializer
+     *            converts the bytes to the object
+     * @param position
+     *            the position in the arena of the bytes
+     * @param length
+     *            the number of bytes
+     * @return the object read
+     */
+    private <T> T read(Serializer<T> serializer, int position, int length) {
+        this.reader.limit(this.reader.capacity());
+        this.reader.position(position);
+        this.reader.limit(position + length);
+        return serializer.read(this.reader);
+    }
+
+    /**
+     * Returns the key of the record at {@code record}.
+     *
+     * @param record
+     *            the position of the record
+     * @return the key
+     */
+    private K readKey(int record) {
+        return this.read(this.keySerializer, record + RECORD_HEADER_BYTES,
+                this.arena.getInt(record));
+    }
+
+    /**
+     * Returns the value of the record at {@code record}.
+     *
+     * @param record
+     *            the position of the record
+     * @return the value
+     */
+    private V readValue(int record) {
+        int keyBytesLength = this.arena.getInt(record);
+        return this.read(this.valueSerializer,
+                record + RECORD_HEADER_BYTES + keyBytesLength,
+                this.arena.getInt(record + Integer.BYTES));
+    }
+
+    /**
+     * Writes the bytes of {@code key} into {@code keyBytes} and records their
+     * length and hash.
+     *
+     * @param key
+     *            the key
+     * @updates $this.keyBytes, $this.keyLength, $this.keyHash
+     * @requires this is not closed
+     */
+    private void encodeKey(K key) {
+        assert this.arena != null : "Violation of: this is not closed";
+
+        this.keyLength = this.keySerializer.length(key);
+        if (this.keyBytes.capacity() < this.keyLength) {
+            this.keyBytes = ByteBuffer.allocate(
+                    Math.max(this.keyLength, 2 * this.keyBytes.capacity()));
+        }
+        this.keyBytes.clear();
+        this.keySerializer.write(key, this.keyBytes);
+        assert this.keyBytes.position() == this.keyLength : ""
+                + "Violation of: [serializer wrote length(key) bytes]";
+        this.keyHash = hash(this.keyBytes.array(), this.keyLength);
+    }
+
+    /**
+     * Returns the slot whose record holds the bytes in {@code keyBytes}, or -1
+     * if there is none.
+     *
+     * @return the slot of the encoded key, or -1
+     */
+    private int indexOfEncodedKey() {
+        int mask = this.capacity - 1;
+        int index = this.keyHash & mask;
+        byte[] bytes = this.keyBytes.array();
+
+        // the probe run for the key ends at the first empty slot
+        int record = this.record(index);
+        while (record != 0) {
+            if (this.arena.getInt(this.slot(index)) == this.keyHash
+                    && this.arena.getInt(record) == this.keyLength) {
+                int start = record + RECORD_HEADER_BYTES;
+                int i = 0;
+                while (i < this.keyLength
+                        && this.arena.get(start + i) == bytes[i]) {
+                    i++;
+                }
+                if (i == this.keyLength) {
+                    return index;
+                }
+            }
+            index = (index + 1) & mask;
+            record = this.record(index);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of {@code key}, or -1 if {@code key} is not in
+     * {@code this}.
+     *
+     * @param key
+     *            the key to look for
+     * @return the slot of {@code key}, or -1
+     * @requires this is not closed
+     */
+    private int indexOf(K key) {
+        this.encodeKey(key);
+        return this.indexOfEncodedKey();
+    }
+
+    /**
+     * Makes sure there are at least {@code bytes} unused bytes after
+     * {@code top}, copying the live records into a new arena if that is
+     * needed.
+     *
+     * @param bytes
+     *            the number of bytes needed
+     * @updates $this
+     * @requires bytes >= 0
+     * @ensures $this.top + bytes <= |$this.arena|
+     */
+    private void ensureRoom(int bytes) {
+        if ((long) this.top + bytes > this.arena.capacity()) {
+            long live = this.top - this.garbage;
+            long needed = Math.max(2 * (live + bytes),
+                    this.arena.capacity());
+            assert live + bytes <= MAX_ARENA_BYTES : ""
+                    + "Violation of: [the entries fit in " + MAX_ARENA_BYTES
+                    + " bytes]";
+            if (this.garbage < live) {
+                needed = Math.max(2L * this.arena.capacity(),
+                        (long) this.top + bytes);
+                this.extendArena((int) Math.min(needed, MAX_ARENA_BYTES));
+            } else {
+                this.compact((int) Math.min(needed, MAX_ARENA_BYTES));
+            }
+        }
+    }
+
+    /**
+     * Moves the slot table and the live records, leaving out the garbage,
+     * into a new arena of {@code bytes} bytes. Every entry keeps its slot.
+     *
+     * @param bytes
+     *            the size of the new arena
+     * @updates $this
+     * @requires bytes >= $this.top - $this.garbage
+     */
+    private void compact(int bytes) {
+        ByteBuffer old = this.arena;
+        int oldSlotsOffset = this.slotsOffset;
+        this.replaceArena(bytes);
+        this.slotsOffset = ARENA_START;
+        this.top = this.slotsOffset + this.capacity * SLOT_BYTES;
+        this.garbage = 0;
+
+        ByteBuffer source = old.duplicate();
+        for (int i = 0; i < this.capacity; i++) {
+            int oldSlot = oldSlotsOffset + i * SLOT_BYTES;
+            int record = old.getInt(oldSlot + Integer.BYTES);
+            if (record != 0) {
+                int length = recordLength(old, record);
+                source.limit(source.capacity());
+                source.position(record);
+                source.limit(record + length);
+                this.arena.position(this.top);
+                this.arena.put(source);
+                this.arena.putInt(this.slot(i), old.getInt(oldSlot));
+                this.arena.putInt(this.slot(i) + Integer.BYTES, this.top);
+                this.top += length;
+            }
+        }
+        this.commitArena();
+    }
+
+    /**
+     * Moves every entry into a new slot table twice as large.
+     *
+     * @updates $this
+     * @requires 2 * $this.capacity <= MAX_CAPACITY
+     */
+    private void growSlots() {
+        int newCapacity = 2 * this.capacity;
+        this.ensureRoom(newCapacity * SLOT_BYTES);
+        this.markDirty();
+
+        int oldSlotsOffset = this.slotsOffset;
+        int oldCapacity = this.capacity;
+        this.slotsOffset = this.top;
+        this.capacity = newCapacity;
+        this.top += newCapacity * SLOT_BYTES;
+        this.garbage += oldCapacity * SLOT_BYTES;
+        this.removeAnyIndex = 0;
+
+        int mask = newCapacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            int oldSlot = oldSlotsOffset + i * SLOT_BYTES;
+            if (this.arena.getInt(oldSlot + Integer.BYTES) != 0) {
+                int index = this.arena.getInt(oldSlot) & mask;
+                while (this.record(index) != 0) {
+                    index = (index + 1) & mask;
+                }
+                this.arena.putLong(this.slot(index),
+                        this.arena.getLong(oldSlot));
+            }
+        }
+    }
+
+    /**
+     * Empties slot {@code index}, counting its record as garbage, and shifts
+     * back later slots of the same probe run so that none of them becomes
+     * unreachable.
+     *
+     * @param index
+     *            the slot to empty
+     * @updates $this
+     * @requires 0 <= index < $this.capacity  and  [slot index is not empty]
+     */
+    private void deleteSlot(int index) {
+        this.garbage += recordLength(this.arena, this.record(index));
+
+        int mask = this.capacity - 1;
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (this.record(next) != 0) {
+            int nextHome = this.arena.getInt(this.slot(next)) & mask;
+            /*
+             * The entry at next may fill the gap unless its home lies
+             * cyclically after the gap, up to and including next itself
+             */
+            if (((next - nextHome) & mask) >= ((next - gap) & mask)) {
+                this.arena.putLong(this.slot(gap),
+                        this.arena.getLong(this.slot(next)));
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        this.arena.putLong(this.slot(gap), 0L);
+        this.size--;
+    }
+
+    /**
+     * Removes the entry in slot {@code index} and returns it.
+     *
+     * @param index
+     *            the slot
+     * @return the removed entry
+     * @updates $this
+     * @requires 0 <= index < $this.capacity  and  [slot index is not empty]
+     */
+    private Pair<K, V> removeSlot(int index) {
+        int record = this.record(index);
+        Pair<K, V> removed = new MapPair<K, V>(this.readKey(record),
+                this.readValue(record));
+        this.deleteSlot(index);
+        return removed;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor resulting in a map whose keys and values are stored using
+     * {@code keySerializer} and {@code valueSerializer}.
+     *
+     * @param keySerializer
+     *            converts keys to and from bytes
+     * @param valueSerializer
+     *            converts values to and from bytes
+     * @requires [keySerializer is canonical]
+     * @ensures this = {}
+     */
+    public Map4OffHeap(Serializer<K> keySerializer,
+            Serializer<V> valueSerializer) {
+
+        this(keySerializer, valueSerializer, DEFAULT_CAPACITY,
+                DEFAULT_LOAD_FACTOR);
+
+    }
+
+    /**
+     * Constructor resulting in a map whose keys and values are stored using
+     * {@code keySerializer} and {@code valueSerializer}, in a table with room
+     * for at least {@code initialCapacity} slots that grows whenever the ratio
+     * of entries to slots would exceed {@code loadFactor}.
+     *
+     * @param keySerializer
+     *            converts keys to and from bytes
+     * @param valueSerializer
+     *            converts values to and from bytes
+     * @param initialCapacity
+     *            initial number of slots
+     * @param loadFactor
+     *            maximum ratio of entries to slots
+     * @requires <pre>
+     * [keySerializer is canonical]  and
+     * initialCapacity > 0  and  0 < loadFactor < 1
+     * </pre>
+     * @ensures this = {}
+     */
+    public Map4OffHeap(Serializer<K> keySerializer,
+            Serializer<V> valueSerializer, int initialCapacity,
+            double loadFactor) {
+        assert keySerializer != null : ""
+                + "Violation of: keySerializer is not null";
+        assert valueSerializer != null : ""
+                + "Violation of: valueSerializer is not null";
+        assert initialCapacity > 0 : "Violation of: initialCapacity > 0";
+        assert loadFactor > 0 && loadFactor < 1 : ""
+                + "Violation of: 0 < loadFactor < 1";
+
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.loadFactor = loadFactor;
+        this.initialCapacity = tableSizeFor(initialCapacity);
+        this.file = null;
+        this.keyBytes = ByteBuffer.allocate(RECORD_BYTES_PER_SLOT);
+        this.createNewRep(this.initialCapacity);
+
+    }
+
+    /**
+     * Constructor resulting in a map kept in {@code file}, whose keys and
+     * values are stored using {@code keySerializer} and
+     * {@code valueSerializer}. If {@code file} exists, its entries are the
+     * entries of the new map; otherwise {@code file} is created, empty.
+     *
+     * @param file
+     *            the file holding the map
+     * @param keySerializer
+     *            converts keys to and from bytes
+     * @param valueSerializer
+     *            converts values to and from bytes
+     * @throws IOException
+     *             if {@code file} cannot be created or read, or is not a
+     *             cleanly closed map file
+     * @requires <pre>
+     * [keySerializer is canonical]  and
+     * [if file exists, it was written with keySerializer and valueSerializer]
+     * </pre>
+     * @ensures this = [the entries in file, or {} if there was no file]
+     */
+    public Map4OffHeap(Path file, Serializer<K> keySerializer,
+            Serializer<V> valueSerializer) throws IOException {
+
+        this(file, keySerializer, valueSerializer, DEFAULT_CAPACITY,
+                DEFAULT_LOAD_FACTOR);
+
+    }
+
+    /**
+     * Constructor resulting in a map kept in {@code file}, whose keys and
+     * values are stored using {@code keySerializer} and
+     * {@code valueSerializer}, in a table that grows whenever the ratio of
+     * entries to slots would exceed {@code loadFactor}. If {@code file}
+     * exists, its entries are the entries of the new map; otherwise
+     * {@code file} is created, empty, with room for at least
+     * {@code initialCapacity} slots.
+     *
+     * @param file
+     *            the file holding the map
+     * @param keySerializer
+     *            converts keys to and from bytes
+     * @param valueSerializer
+     *            converts values to and from bytes
+     * @param initialCapacity
+     *            initial number of slots
+     * @param loadFactor
+     *            maximum ratio of entries to slots
+     * @throws IOException
+     *             if {@code file} cannot be created or read, or is not a
+     *             cleanly closed map file
+     * @requires <pre>
+     * [keySerializer is canonical]  and
+     * [if file exists, it was written with keySerializer and valueSerializer]
+     *   and
+     * initialCapacity > 0  and  0 < loadFactor < 1
+     * </pre>
+     * @ensures this = [the entries in file, or {} if there was no file]
+     */
+    public Map4OffHeap(Path file, Serializer<K> keySerializer,
+            Serializer<V> valueSerializer, int initialCapacity,
+            double loadFactor) throws IOException {
+        assert file != null : "Violation of: file is not null";
+        assert keySerializer != null : ""
+                + "Violation of: keySerializer is not null";
+        assert valueSerializer != null : ""
+                + "Violation of: valueSerializer is not null";
+        assert initialCapacity > 0 : "Violation of: initialCapacity > 0";
+        assert loadFactor > 0 && loadFactor < 1 : ""
+                + "Violation of: 0 < loadFactor < 1";
+
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.loadFactor = loadFactor;
+        this.initialCapacity = tableSizeFor(initialCapacity);
+        this.file = file;
+        this.keyBytes = ByteBuffer.allocate(RECORD_BYTES_PER_SLOT);
+        if (Files.exists(file)) {
+            this.openRep();
+        } else {
+            try {
+                this.createNewRep(this.initialCapacity);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    /**
+     * Returns a new, empty map with the serializers, initial capacity and
+     * load factor of {@code this}, not kept in a file.
+     *
+     * @return the new map
+     */
+    @Override
+    public final Map<K, V> newInstance() {
+        return new Map4OffHeap<K, V>(this.keySerializer, this.valueSerializer,
+                this.initialCapacity, this.loadFactor);
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.initialCapacity);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map4OffHeap<?, ?> : ""
+                + "Violation of: source is of dynamic type Map4OffHeap<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * Map4OffHeap<?,?>, and the ?,? must be K,V or the call would not
+         * have compiled.
+         */
+        Map4OffHeap<K, V> localSource = (Map4OffHeap<K, V>) source;
+        assert localSource.keySerializer == this.keySerializer
+                && localSource.valueSerializer == this.valueSerializer : ""
+                        + "Violation of: source uses the same serializers";
+        if (this.file == null && localSource.file == null) {
+            this.setArena(localSource.arena);
+        } else {
+            // a file cannot change hands, so its bytes are copied instead
+            ByteBuffer bytes = localSource.arena.duplicate();
+            bytes.position(0);
+            bytes.limit(localSource.top);
+            this.replaceArena(localSource.top);
+            this.arena.put(bytes);
+        }
+        this.top = localSource.top;
+        this.garbage = localSource.garbage;
+        this.slotsOffset = localSource.slotsOffset;
+        this.capacity = localSource.capacity;
+        this.size = localSource.size;
+        this.removeAnyIndex = localSource.removeAnyIndex;
+        this.commitArena();
+        localSource.createNewRep(localSource.initialCapacity);
+    }
+
+    /**
+     * Writes every change to {@code this} to its file and marks the file
+     * {@code CLEAN}, so that reopening the file gives the current entries.
+     * Does nothing for a map that is not kept in a file.
+     *
+     * @requires this is not closed
+     */
+    public final void sync() {
+        assert this.arena != null : "Violation of: this is not closed";
+
+        if (this.file != null && this.dirty) {
+            // the header may only say CLEAN once everything else is on disk
+            this.writeHeader(DIRTY);
+            ((MappedByteBuffer) this.arena).force();
+            this.writeHeader(CLEAN);
+            ((MappedByteBuffer) this.arena).force();
+            this.dirty = false;
+        }
+    }
+
+    /**
+     * Releases the arena of {@code this}, after a {@code sync} if it is kept
+     * in a file. The memory of a direct or mapped {@code ByteBuffer} is
+     * returned to the operating system once the buffer is garbage collected;
+     * {@code close} drops the only reference to it.
+     *
+     * @ensures [this is closed]
+     */
+    @Override
+    public final void close() {
+        if (this.arena == null) {
+            return;
+        }
+        if (this.file != null) {
+            this.sync();
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        this.arena = null;
+        this.reader = null;
+        this.size = 0;
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        // grow first so there is always an empty slot to end the probe
+        if (this.size + 1 > this.capacity * this.loadFactor
+                && this.capacity < MAX_CAPACITY) {
+            this.growSlots();
+        }
+        assert this.size + 1 < this.capacity : "Violation of: "
+                + "|this| < " + (MAX_CAPACITY - 1);
+
+        this.encodeKey(key);
+        int valueLength = this.valueSerializer.length(value);
+        int length = RECORD_HEADER_BYTES + this.keyLength + valueLength;
+        this.ensureRoom(length);
+        this.markDirty();
+
+        int record = this.top;
+        this.arena.putInt(record, this.keyLength);
+        this.arena.putInt(record + Integer.BYTES, valueLength);
+        this.arena.position(record + RECORD_HEADER_BYTES);
+        this.arena.put(this.keyBytes.array(), 0, this.keyLength);
+        this.valueSerializer.write(value, this.arena);
+        assert this.arena.position() == record + length : ""
+                + "Violation of: [serializer wrote length(value) bytes]";
+        this.top += length;
+
+        int mask = this.capacity - 1;
+        int index = this.keyHash & mask;
+        while (this.record(index) != 0) {
+            index = (index + 1) & mask;
+        }
+        this.arena.putInt(this.slot(index), this.keyHash);
+        this.arena.putInt(this.slot(index) + Integer.BYTES, record);
+        this.size++;
+
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        this.markDirty();
+        return this.removeSlot(this.indexOf(key));
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * Scanning resumes where the last removeAny stopped, so draining the
+         * map visits each slot about once
+         */
+        int mask = this.capacity - 1;
+        int index = this.removeAnyIndex;
+        while (this.record(index) == 0) {
+            index = (index + 1) & mask;
+        }
+        this.removeAnyIndex = index;
+        this.markDirty();
+        return this.removeSlot(index);
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return this.readValue(this.record(this.indexOf(key)));
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.indexOf(key) >= 0;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        assert this.arena != null : "Violation of: this is not closed";
+
+        return new Map4OffHeapIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map4OffHeap}.
+     */
+    private final class Map4OffHeapIterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Slot to be examined next.
+         */
+        private int currentSlot;
+
+        /**
+         * No-argument constructor.
+         */
+        Map4OffHeapIterator() {
+            this.numberSeen = 0;
+            this.currentSlot = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < Map4OffHeap.this.size;
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            int record = Map4OffHeap.this.record(this.currentSlot);
+            while (record == 0) {
+                this.currentSlot++;
+                record = Map4OffHeap.this.record(this.currentSlot);
+            }
+            this.currentSlot++;
+            return new MapPair<K, V>(Map4OffHeap.this.readKey(record),
+                    Map4OffHeap.this.readValue(record));
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,501 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as an open-addressing hash table (parallel key and
+ * value arrays with linear probing), with implementations of primary methods.
+ *
+ * <p>
+ * Unlike {@code Map4}, there are no bucket objects: every entry lives directly
+ * in the {@code keys} and {@code values} arrays, so a lookup reads a run of
+ * adjacent array slots instead of following references into a separate
+ * {@code Map} per bucket. Removal shifts later entries of the probe run back
+ * into the gap, so the table never holds "deleted" markers.
+ * </p>
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * |$this.keys| = |$this.values|  and
+ * [|$this.keys| is a power of 2]  and
+ * $this.size = [number of non-null entries in $this.keys]  and
+ * $this.size <= |$this.keys| * $this.loadFactor  and
+ * $this.size < |$this.keys|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|)
+ *   (($this.keys[i] = null) = ($this.values[i] = null))  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|  and  $this.keys[i] /= null)
+ *   ([every slot from home($this.keys[i]) up to i, wrapping around the end
+ *     of the arrays, holds a non-null key])  and
+ * [no two non-null entries of $this.keys are equal]
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *          where (there exists i: integer
+ *                   (0 <= i  and  i < |$this.keys|  and
+ *                    k = $this.keys[i]  and  v = $this.values[i]  and
+ *                    k /= null))}
+ * </pre>
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4OpenAddressing<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of slots in the table.
+     */
+    private static final int DEFAULT_CAPACITY = 128;
+
+    /**
+     * Default maximum ratio of entries to slots before the table grows.
+     * Linear probing slows down sharply above about 0.7.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.5;
+
+    /**
+     * Largest power of 2 that can be used as an array length.
+     */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Keys of the entries, or {@code null} for empty slots.
+     */
+    private Object[] keys;
+
+    /**
+     * Values of the entries, at the same positions as their keys.
+     */
+    private Object[] values;
+
+    /**
+     * Number of entries in {@code this}.
+     */
+    private int size;
+
+    /**
+     * Slot at which {@code removeAny} starts looking for an entry.
+     */
+    private int removeAnyIndex;
+
+    /**
+     * Maximum ratio of entries to slots before the table grows.
+     */
+    private final double loadFactor;
+
+    /**
+     * Number of slots the table is (re)created with.
+     */
+    private final int initialCapacity;
+
+    /**
+     * Returns the smallest power of 2 that is at least {@code n}, up to
+     * {@code MAX_CAPACITY}.
+     *
+     * @param n
+     *            the minimum capacity
+     * @return the capacity to use
+     * @requires n > 0
+     * @ensures <pre>
+     * [tableSizeFor is a power of 2]  and
+     * (tableSizeFor >= n  or  tableSizeFor = MAX_CAPACITY)
+     * </pre>
+     */
+    private static int tableSizeFor(int n) {
+        int capacity = 1;
+        while (capacity < n && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns the slot at which a probe for {@code key} starts.
+     *
+     * @param key
+     *            the key
+     * @param capacity
+     *            the number of slots in the table
+     * @return the home slot of {@code key}
+     * @requires [capacity is a power of 2]
+     * @ensures 0 <= home < capacity
+     */
+    private static int home(Object key, int capacity) {
+        int h = key.hashCode();
+        // fold the high bits in, since the mask only keeps the low ones
+        h ^= h >>> 16;
+        return h & (capacity - 1);
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param capacity
+     *            the number of slots in the table
+     * @requires [capacity is a power of 2]
+     * @ensures <pre>
+     * |$this.keys| = capacity  and  |$this.values| = capacity  and
+     * $this.size = 0
+     * </pre>
+     */
+    private void createNewRep(int capacity) {
+
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.size = 0;
+        this.removeAnyIndex = 0;
+
+    }
+
+    /**
+     * Returns the slot holding {@code key}, or -1 if {@code key} is not in
+     * {@code this}.
+     *
+     * @param key
+     *            the key to look for
+     * @return the slot of {@code key}, or -1
+     * @ensures <pre>
+     * if key is in DOMAIN(this)
+     *  then $this.keys[indexOf] = key
+     *  else indexOf = -1
+     * </pre>
+     */
+    private int indexOf(Object key) {
+        int mask = this.keys.length - 1;
+        int index = home(key, this.keys.length);
+
+        // the probe run for key ends at the first empty slot
+        while (this.keys[index] != null) {
+            if (this.keys[index].equals(key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Empties slot {@code index} and shifts back later entries of the same
+     * probe run so that none of them becomes unreachable.
+     *
+     * @param index
+     *            the slot to empty
+     * @updates $this.keys, $this.values
+     * @requires 0 <= index < |$this.keys|  and  $this.keys[index] /= null
+     * @ensures [the entry at #$this.keys[index] is removed and the convention
+     *          holds with $this.size reduced by one]
+     */
+    private void deleteSlot(int index) {
+        int mask = this.keys.length - 1;
+        int gap = index;
+        int next = (gap + 1) & mask;
+
+        while (this.keys[next] != null) {
+            int nextHome = home(this.keys[next], this.keys.length);
+            /*
+             * The entry at next may fill the gap unless its home lies
+             * cyclically after the gap, up to and including next itself
+             */
+            if (((next - nextHome) & mask) >= ((next - gap) & mask)) {
+                this.keys[gap] = this.keys[next];
+                this.values[gap] = this.values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        this.keys[gap] = null;
+        this.values[gap] = null;
+        this.size--;
+    }
+
+    /**
+     * Moves every entry into a new table of {@code newCapacity} slots.
+     *
+     * @param newCapacity
+     *            the new number of slots
+     * @updates $this.keys, $this.values
+     * @requires [newCapacity is a power of 2]  and  newCapacity > $this.size
+     * @ensures <pre>
+     * |$this.keys| = newCapacity  and
+     * [the abstract value of this is unchanged]
+     * </pre>
+     */
+    private void rehash(int newCapacity) {
+        Object[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new Object[newCapacity];
+        this.values = new Object[newCapacity];
+        this.removeAnyIndex = 0;
+
+        int mask = newCapacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int index = home(oldKeys[i], newCapacity);
+                while (this.keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map4OpenAddressing() {
+
+        this(DEFAULT_CAPACITY);
+
+    }
+
+    /**
+     * Constructor resulting in a table with room for at least
+     * {@code initialCapacity} slots before it first grows.
+     *
+     * @param initialCapacity
+     *            initial number of slots
+     * @requires initialCapacity > 0
+     * @ensures this = {}
+     */
+    public Map4OpenAddressing(int initialCapacity) {
+
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+
+    }
+
+    /**
+     * Constructor resulting in a table with room for at least
+     * {@code initialCapacity} slots that grows whenever the ratio of entries
+     * to slots would exceed {@code loadFactor}.
+     *
+     * @param initialCapacity
+     *            initial number of slots
+     * @param loadFactor
+     *            maximum ratio of entries to slots
+     * @requires initialCapacity > 0  and  0 < loadFactor < 1
+     * @ensures this = {}
+     */
+    public Map4OpenAddressing(int initialCapacity, double loadFactor) {
+        assert initialCapacity > 0 : "Violation of: initialCapacity > 0";
+        assert loadFactor > 0 && loadFactor < 1 : ""
+                + "Violation of: 0 < loadFactor < 1";
+
+        this.loadFactor = loadFactor;
+        this.initialCapacity = tableSizeFor(initialCapacity);
+        this.createNewRep(this.initialCapacity);
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.initialCapacity);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map4OpenAddressing<?, ?> : ""
+                + "Violation of: source is of dynamic type "
+                + "Map4OpenAddressing<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * Map4OpenAddressing<?,?>, and the ?,? must be K,V or the call would
+         * not have compiled.
+         */
+        Map4OpenAddressing<K, V> localSource =
+                (Map4OpenAddressing<K, V>) source;
+        this.keys = localSource.keys;
+        this.values = localSource.values;
+        this.size = localSource.size;
+        this.removeAnyIndex = localSource.removeAnyIndex;
+        localSource.createNewRep(localSource.initialCapacity);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        // grow first so there is always an empty slot to end the probe
+        if (this.size + 1 > this.keys.length * this.loadFactor
+                && this.keys.length < MAX_CAPACITY) {
+            this.rehash(this.keys.length * 2);
+        }
+        assert this.size + 1 < this.keys.length : "Violation of: "
+                + "|this| < " + (MAX_CAPACITY - 1);
+
+        int mask = this.keys.length - 1;
+        int index = home(key, this.keys.length);
+        while (this.keys[index] != null) {
+            index = (index + 1) & mask;
+        }
+        this.keys[index] = key;
+        this.values[index] = value;
+        this.size++;
+
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int index = this.indexOf(key);
+        Pair<K, V> removed = new MapPair<K, V>((K) this.keys[index],
+                (V) this.values[index]);
+        this.deleteSlot(index);
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * Scanning resumes where the last removeAny stopped, so draining the
+         * map visits each slot about once; entries shifted back into a freed
+         * slot are found on the next call
+         */
+        int mask = this.keys.length - 1;
+        int index = this.removeAnyIndex;
+        while (this.keys[index] == null) {
+            index = (index + 1) & mask;
+        }
+        this.removeAnyIndex = index;
+
+        Pair<K, V> removed = new MapPair<K, V>((K) this.keys[index],
+                (V) this.values[index]);
+        this.deleteSlot(index);
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return (V) this.values[this.indexOf(key)];
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.indexOf(key) >= 0;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map4OpenAddressingIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code Map4OpenAddressing}.
+     */
+    private final class Map4OpenAddressingIterator
+            implements Iterator<Pair<K, V>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Slot to be examined next.
+         */
+        private int currentSlot;
+
+        /**
+         * No-argument constructor.
+         */
+        Map4OpenAddressingIterator() {
+            this.numberSeen = 0;
+            this.currentSlot = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < Map4OpenAddressing.this.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            Object[] keys = Map4OpenAddressing.this.keys;
+            while (keys[this.currentSlot] == null) {
+                this.currentSlot++;
+            }
+            Pair<K, V> next = new MapPair<K, V>((K) keys[this.currentSlot],
+                    (V) Map4OpenAddressing.this.values[this.currentSlot]);
+            this.currentSlot++;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+import components.map.Map;
+
+/**
+ * Immutable (key, value) pair handed out by the {@code remove},
+ * {@code removeAny} and iterator methods of maps that do not store their
+ * entries as {@code Pair} objects.
+ *
+ * @param <K>
+ *            type of key
+ * @param <V>
+ *            type of value
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+final class MapPair<K, V> implements Map.Pair<K, V> {
+
+    /**
+     * The key.
+     */
+    private final K key;
+
+    /**
+     * The value.
+     */
+    private final V value;
+
+    /**
+     * Constructor from key and value.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     */
+    MapPair(K key, V value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    @Override
+    public K key() {
+        return this.key;
+    }
+
+    @Override
+    public V value() {
+        return this.value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof Map.Pair<?, ?>)) {
+            return false;
+        }
+        Map.Pair<?, ?> pair = (Map.Pair<?, ?>) obj;
+        return this.key.equals(pair.key()) && this.value.equals(pair.value());
+    }
+
+    @Override
+    public int hashCode() {
+        final int a = 37;
+        final int b = 17;
+        return a * this.key.hashCode() + b * this.value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + this.key + "," + this.value + ")";
+    }
+
+}
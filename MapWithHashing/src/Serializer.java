@@ -0,0 +1,280 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Conversion between objects of type {@code T} and the bytes that represent
+ * them outside the Java heap.
+ *
+ * <p>
+ * Maps that store their keys as bytes compare and hash the bytes instead of
+ * calling {@code equals} and {@code hashCode}. A {@code Serializer} for keys
+ * must therefore be canonical: two objects are equal exactly when they are
+ * written as the same bytes.
+ * </p>
+ *
+ * @param <T>
+ *            type of the objects converted
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public interface Serializer<T> {
+
+    /**
+     * Reports how many bytes {@code write} uses for {@code x}.
+     *
+     * @param x
+     *            the object to be written
+     * @return the number of bytes written for {@code x}
+     * @requires x is not null
+     * @ensures length >= 0
+     */
+    int length(T x);
+
+    /**
+     * Writes {@code x} into {@code buffer} at its position, advancing the
+     * position by {@code length(x)}.
+     *
+     * @param x
+     *            the object to be written
+     * @param buffer
+     *            the buffer written into
+     * @updates buffer
+     * @requires x is not null  and  buffer.remaining() >= length(x)
+     * @ensures [buffer holds the bytes of x between #buffer.position() and
+     *          buffer.position()]
+     */
+    void write(T x, ByteBuffer buffer);
+
+    /**
+     * Reads an object from the remaining bytes of {@code buffer}.
+     *
+     * @param buffer
+     *            the buffer read from
+     * @return the object whose bytes are {@code buffer}'s remaining bytes
+     * @updates buffer
+     * @requires [buffer's remaining bytes were written by write]
+     * @ensures [read is equal to the object that was written]
+     */
+    T read(ByteBuffer buffer);
+
+    /**
+     * {@code Integer}s as 4 bytes.
+     */
+    Serializer<Integer> INTEGER = new Serializer<Integer>() {
+
+        @Override
+        public int length(Integer x) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void write(Integer x, ByteBuffer buffer) {
+            buffer.putInt(x);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+
+    };
+
+    /**
+     * {@code Long}s as 8 bytes.
+     */
+    Serializer<Long> LONG = new Serializer<Long>() {
+
+        @Override
+        public int length(Long x) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(Long x, ByteBuffer buffer) {
+            buffer.putLong(x);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+
+    };
+
+    /**
+     * {@code String}s as their UTF-8 bytes, so the length varies with the
+     * string. An unpaired surrogate, which UTF-8 has no bytes for, is written
+     * as the three bytes UTF-8 would use for any other {@code char} in its
+     * range, instead of as {@code '?'} as by {@code String.getBytes}; that
+     * keeps the bytes of different strings different, and {@code read} gives
+     * back every string exactly.
+     */
+    Serializer<String> STRING = new Serializer<String>() {
+
+        /**
+         * Largest {@code char} written as one byte, plus one.
+         */
+        private static final int ONE_BYTE_LIMIT = 0x80;
+
+        /**
+         * Largest {@code char} written as two bytes, plus one.
+         */
+        private static final int TWO_BYTE_LIMIT = 0x800;
+
+        /**
+         * First byte of a three-byte sequence, before the payload bits.
+         */
+        private static final int THREE_BYTE_LEAD = 0xE0;
+
+        /**
+         * First byte of a four-byte sequence, before the payload bits.
+         */
+        private static final int FOUR_BYTE_LEAD = 0xF0;
+
+        /**
+         * First byte of a two-byte sequence, before the payload bits.
+         */
+        private static final int TWO_BYTE_LEAD = 0xC0;
+
+        /**
+         * Continuation byte, before its payload bits.
+         */
+        private static final int CONTINUATION = 0x80;
+
+        /**
+         * Mask for the six payload bits of a continuation byte.
+         */
+        private static final int SIX_BITS = 0x3F;
+
+        /**
+         * Number of payload bits in a continuation byte.
+         */
+        private static final int SHIFT = 6;
+
+        /**
+         * Reports whether {@code x} has a surrogate pair starting at
+         * {@code i}.
+         *
+         * @param x
+         *            the string
+         * @param i
+         *            the index in {@code x}
+         * @return true iff x[i, i+2) is a high surrogate and a low surrogate
+         * @requires 0 <= i < |x|
+         */
+        private boolean isPairAt(String x, int i) {
+            return Character.isHighSurrogate(x.charAt(i)) && i + 1 < x.length()
+                    && Character.isLowSurrogate(x.charAt(i + 1));
+        }
+
+        /**
+         * Writes the continuation byte holding bits
+         * [{@code shift}, {@code shift + SHIFT}) of {@code bits}.
+         *
+         * @param bits
+         *            the code point or {@code char} being written
+         * @param shift
+         *            the position of the lowest bit written
+         * @param buffer
+         *            the buffer written into
+         * @updates buffer
+         */
+        private void putContinuation(int bits, int shift, ByteBuffer buffer) {
+            buffer.put((byte) (CONTINUATION | ((bits >> shift) & SIX_BITS)));
+        }
+
+        @Override
+        public int length(String x) {
+            final int twoBytes = 2;
+            final int threeBytes = 3;
+            final int fourBytes = 4;
+
+            int length = 0;
+            int i = 0;
+            while (i < x.length()) {
+                char c = x.charAt(i);
+                if (c < ONE_BYTE_LIMIT) {
+                    length++;
+                } else if (c < TWO_BYTE_LIMIT) {
+                    length += twoBytes;
+                } else if (this.isPairAt(x, i)) {
+                    length += fourBytes;
+                    i++;
+                } else {
+                    length += threeBytes;
+                }
+                i++;
+            }
+            return length;
+        }
+
+        @Override
+        public void write(String x, ByteBuffer buffer) {
+            final int twoShifts = 2 * SHIFT;
+            final int threeShifts = 3 * SHIFT;
+
+            int i = 0;
+            while (i < x.length()) {
+                char c = x.charAt(i);
+                if (c < ONE_BYTE_LIMIT) {
+                    buffer.put((byte) c);
+                } else if (c < TWO_BYTE_LIMIT) {
+                    buffer.put((byte) (TWO_BYTE_LEAD | (c >> SHIFT)));
+                    this.putContinuation(c, 0, buffer);
+                } else if (this.isPairAt(x, i)) {
+                    int codePoint = Character.toCodePoint(c, x.charAt(i + 1));
+                    int lead = FOUR_BYTE_LEAD | (codePoint >> threeShifts);
+                    buffer.put((byte) lead);
+                    this.putContinuation(codePoint, twoShifts, buffer);
+                    this.putContinuation(codePoint, SHIFT, buffer);
+                    this.putContinuation(codePoint, 0, buffer);
+                    i++;
+                } else {
+                    // includes unpaired surrogates, which stay distinct
+                    buffer.put((byte) (THREE_BYTE_LEAD | (c >> twoShifts)));
+                    this.putContinuation(c, SHIFT, buffer);
+                    this.putContinuation(c, 0, buffer);
+                }
+                i++;
+            }
+        }
+
+        @Override
+        public String read(ByteBuffer buffer) {
+            final int byteMask = 0xFF;
+            final int lowBitsOfTwo = 0x1F;
+            final int lowBitsOfThree = 0x0F;
+            final int lowBitsOfFour = 0x07;
+
+            StringBuilder x = new StringBuilder(buffer.remaining());
+            while (buffer.hasRemaining()) {
+                int lead = buffer.get() & byteMask;
+                int bits;
+                int continuations;
+                if (lead < ONE_BYTE_LIMIT) {
+                    bits = lead;
+                    continuations = 0;
+                } else if (lead < THREE_BYTE_LEAD) {
+                    bits = lead & lowBitsOfTwo;
+                    continuations = 1;
+                } else if (lead < FOUR_BYTE_LEAD) {
+                    bits = lead & lowBitsOfThree;
+                    continuations = 2;
+                } else {
+                    bits = lead & lowBitsOfFour;
+                    continuations = 3;
+                }
+                for (int k = 0; k < continuations; k++) {
+                    bits = (bits << SHIFT) | (buffer.get() & SIX_BITS);
+                }
+                // unpaired surrogates come back as single chars
+                x.appendCodePoint(bits);
+            }
+            return x.toString();
+        }
+
+    };
+
+}
@@ -0,0 +1,177 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code LongMap4}'s constructors and kernel methods.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class LongMap4Test {
+
+    /**
+     * Number of keys used by the tests that make the table grow.
+     */
+    private static final int MANY = 10000;
+
+    /*
+     * Test cases for constructors
+     */
+
+    @Test
+    public final void noArgsConstructorTest1() {
+        LongMap4<String> map = new LongMap4<String>();
+
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public final void constructorTest1() {
+        LongMap4<String> map = new LongMap4<String>(1, 0.75);
+
+        map.add(1, "one");
+        map.add(2, "two");
+        map.add(3, "three");
+
+        assertEquals(3, map.size());
+        assertEquals("two", map.value(2));
+    }
+
+    /*
+     * Test cases for kernel methods
+     */
+
+    @Test
+    public final void addTest1() {
+        LongMap4<String> map = new LongMap4<String>();
+
+        map.add(-7, "CSE");
+
+        assertEquals(1, map.size());
+        assertEquals(true, map.hasKey(-7));
+        assertEquals("CSE", map.value(-7));
+    }
+
+    @Test
+    public final void addTest2() {
+        LongMap4<Integer> map = new LongMap4<Integer>(1);
+
+        for (int i = 0; i < MANY; i++) {
+            map.add((long) i << 32, i);
+        }
+
+        assertEquals(MANY, map.size());
+        for (int i = 0; i < MANY; i++) {
+            assertEquals(Integer.valueOf(i), map.value((long) i << 32));
+        }
+    }
+
+    @Test
+    public final void removeTest1() {
+        LongMap4<String> map = new LongMap4<String>();
+        map.add(2231, "CSE");
+        map.add(2221, "CSE");
+
+        String removed = map.remove(2231);
+
+        assertEquals("CSE", removed);
+        assertEquals(1, map.size());
+        assertEquals(false, map.hasKey(2231));
+        assertEquals(true, map.hasKey(2221));
+    }
+
+    @Test
+    public final void removeTest2() {
+        LongMap4<Integer> map = new LongMap4<Integer>(1);
+        for (int i = 0; i < MANY; i++) {
+            map.add(i, i);
+        }
+
+        for (int i = 0; i < MANY; i += 2) {
+            assertEquals(Integer.valueOf(i), map.remove(i));
+        }
+
+        assertEquals(MANY / 2, map.size());
+        for (int i = 0; i < MANY; i++) {
+            assertEquals(i % 2 == 1, map.hasKey(i));
+        }
+    }
+
+    @Test
+    public final void removeAnyTest1() {
+        LongMap4<Integer> map = new LongMap4<Integer>();
+        for (int i = 0; i < MANY; i++) {
+            map.add(i, i);
+        }
+
+        long sum = 0;
+        while (map.size() > 0) {
+            sum += map.removeAny();
+        }
+
+        assertEquals((long) MANY * (MANY - 1) / 2, sum);
+    }
+
+    @Test
+    public final void hasKeyTest1() {
+        LongMap4<String> map = new LongMap4<String>();
+        map.add(0, "zero");
+
+        assertEquals(true, map.hasKey(0));
+        assertEquals(false, map.hasKey(1));
+    }
+
+    @Test
+    public final void transferFromTest1() {
+        LongMap4<String> source = new LongMap4<String>();
+        source.add(1, "one");
+        LongMap4<String> map = new LongMap4<String>();
+        map.add(2, "two");
+
+        map.transferFrom(source);
+
+        assertEquals(0, source.size());
+        assertEquals(1, map.size());
+        assertEquals("one", map.value(1));
+    }
+
+    /*
+     * Test cases for the Map view
+     */
+
+    @Test
+    public final void asMapTest1() {
+        LongMap4<String> map = new LongMap4<String>();
+        map.add(1, "one");
+        map.add(2, "two");
+        Map<Long, String> expected = new Map1L<Long, String>();
+        expected.add(1L, "one");
+        expected.add(2L, "two");
+
+        Map<Long, String> view = map.asMap();
+
+        assertEquals(expected, view);
+    }
+
+    @Test
+    public final void asMapTest2() {
+        Map<Long, String> view = new LongMap4.AsMap<String>();
+        view.add(1L, "one");
+        view.add(2L, "two");
+        Map<Long, String> expected = new Map1L<Long, String>();
+        expected.add(1L, "one");
+
+        Map.Pair<Long, String> removed = view.remove(2L);
+
+        assertEquals(Long.valueOf(2), removed.key());
+        assertEquals("two", removed.value());
+        assertEquals(expected, view);
+    }
+
+}
@@ -0,0 +1,262 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code Map4}'s {@code getOrDefault},
+ * {@code putIfAbsent}, {@code replaceValue}, {@code compute} and
+ * {@code merge}.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4ComputeTest {
+
+    /**
+     * Number of entries used by the tests that make the table resize.
+     */
+    private static final int MANY = 10000;
+
+    /**
+     * Returns a {@code Map4} with a single bucket, holding the pairs
+     * (i, "value" + i) for {@code 0 <= i < n}, so that searches go down a
+     * chain.
+     *
+     * @param n
+     *            the number of pairs
+     * @return the map
+     */
+    private static Map4<Integer, String> chained(int n) {
+        Map4<Integer, String> map = new Map4<Integer, String>(1, 0.75,
+                Map4.ResizePolicy.FIXED);
+        for (int i = 0; i < n; i++) {
+            map.add(i, "value" + i);
+        }
+        return map;
+    }
+
+    /**
+     * Returns a {@code Map1L} holding the pairs (i, "value" + i) for
+     * {@code 0 <= i < n}.
+     *
+     * @param n
+     *            the number of pairs
+     * @return the map
+     */
+    private static Map<Integer, String> reference(int n) {
+        Map<Integer, String> map = new Map1L<Integer, String>();
+        for (int i = 0; i < n; i++) {
+            map.add(i, "value" + i);
+        }
+        return map;
+    }
+
+    @Test
+    public final void getOrDefaultTestPresent() {
+        Map4<Integer, String> map = chained(5);
+        Map<Integer, String> expected = reference(5);
+
+        String value = map.getOrDefault(3, "none");
+
+        assertEquals("value3", value);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void getOrDefaultTestAbsent() {
+        Map4<Integer, String> map = chained(5);
+        Map<Integer, String> expected = reference(5);
+
+        String value = map.getOrDefault(7, "none");
+
+        assertEquals("none", value);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void putIfAbsentTestPresent() {
+        Map4<Integer, String> map = chained(5);
+        Map<Integer, String> expected = reference(5);
+
+        String old = map.putIfAbsent(2, "other");
+
+        assertEquals("value2", old);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void putIfAbsentTestAbsent() {
+        Map4<Integer, String> map = chained(5);
+        Map<Integer, String> expected = reference(5);
+        expected.add(5, "other");
+
+        String old = map.putIfAbsent(5, "other");
+
+        assertEquals(null, old);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void replaceValueTestFirst() {
+        Map4<Integer, String> map = chained(5);
+        Map<Integer, String> expected = reference(5);
+        expected.replaceValue(4, "other");
+
+        String old = map.replaceValue(4, "other");
+
+        assertEquals("value4", old);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void replaceValueTestLast() {
+        Map4<Integer, String> map = chained(5);
+        Map<Integer, String> expected = reference(5);
+        expected.replaceValue(0, "other");
+
+        String old = map.replaceValue(0, "other");
+
+        assertEquals("value0", old);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void computeTestReplace() {
+        Map4<Integer, String> map = chained(5);
+        Map<Integer, String> expected = reference(5);
+        expected.replaceValue(2, "2:value2");
+
+        String value = map.compute(2, (key, old) -> key + ":" + old);
+
+        assertEquals("2:value2", value);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void computeTestAdd() {
+        Map4<Integer, String> map = chained(5);
+        Map<Integer, String> expected = reference(5);
+        expected.add(9, "9:null");
+
+        String value = map.compute(9, (key, old) -> key + ":" + old);
+
+        assertEquals("9:null", value);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void computeTestRemove() {
+        Map4<Integer, String> map = chained(5);
+        Map<Integer, String> expected = reference(5);
+        expected.remove(2);
+
+        String value = map.compute(2, (key, old) -> null);
+
+        assertEquals(null, value);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void computeTestAbsentNull() {
+        Map4<Integer, String> map = chained(5);
+        Map<Integer, String> expected = reference(5);
+
+        String value = map.compute(9, (key, old) -> null);
+
+        assertEquals(null, value);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void computeTestRemoveAll() {
+        Map4<Integer, String> map = chained(5);
+
+        for (int i = 0; i < 5; i++) {
+            map.compute(i, (key, old) -> null);
+        }
+
+        assertEquals(0, map.size());
+        assertEquals(new Map1L<Integer, String>(), map);
+    }
+
+    @Test
+    public final void mergeTestAbsent() {
+        Map4<Integer, String> map = chained(5);
+        Map<Integer, String> expected = reference(5);
+        expected.add(5, "x");
+
+        String value = map.merge(5, "x", String::concat);
+
+        assertEquals("x", value);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void mergeTestPresent() {
+        Map4<Integer, String> map = chained(5);
+        Map<Integer, String> expected = reference(5);
+        expected.replaceValue(1, "value1x");
+
+        String value = map.merge(1, "x", String::concat);
+
+        assertEquals("value1x", value);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void mergeTestRemove() {
+        Map4<Integer, String> map = chained(5);
+        Map<Integer, String> expected = reference(5);
+        expected.remove(1);
+
+        String value = map.merge(1, "x", (old, x) -> null);
+
+        assertEquals(null, value);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void mergeTestCountDuringResize() {
+        Map4<Integer, Integer> map = new Map4<Integer, Integer>(1, 0.75,
+                Map4.ResizePolicy.GROW_AND_SHRINK, true);
+        Map<Integer, Integer> expected = new Map1L<Integer, Integer>();
+        for (int i = 0; i < MANY; i++) {
+            expected.add(i, 1 + i % 3);
+        }
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < MANY; i++) {
+                if (i % 3 >= round) {
+                    map.merge(i, 1, Integer::sum);
+                }
+            }
+        }
+
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void computeTestRemoveDuringResize() {
+        Map4<Integer, Integer> map = new Map4<Integer, Integer>(1, 0.75,
+                Map4.ResizePolicy.GROW_AND_SHRINK, true);
+        Map<Integer, Integer> expected = new Map1L<Integer, Integer>();
+        for (int i = 0; i < MANY; i++) {
+            map.add(i, i);
+            if (i % 2 == 1) {
+                expected.add(i, i);
+            }
+        }
+
+        for (int i = 0; i < MANY; i += 2) {
+            map.compute(i, (key, old) -> null);
+        }
+
+        assertEquals(expected, map);
+    }
+
+}
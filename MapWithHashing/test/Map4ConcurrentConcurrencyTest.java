@@ -0,0 +1,349 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code Map4Concurrent} used by several threads at
+ * once, with few stripes so that writers contend for their locks, stripes
+ * grow while other threads use them, and readers' optimistic reads are
+ * invalidated. Each test runs randomized histories on several threads and
+ * checks the final map, its size and its iterator, and what the threads
+ * observed, against {@code Map1L}s kept by the threads themselves.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4ConcurrentConcurrencyTest {
+
+    /**
+     * Number of threads changing the map.
+     */
+    private static final int WRITERS = 4;
+
+    /**
+     * Number of threads only reading the map.
+     */
+    private static final int READERS = 4;
+
+    /**
+     * Number of operations per writer.
+     */
+    private static final int OPERATIONS = 20000;
+
+    /**
+     * Number of keys each writer works on; writers use disjoint ranges.
+     */
+    private static final int KEYS_PER_WRITER = 2000;
+
+    /**
+     * Number of keys present for the whole of a test.
+     */
+    private static final int STABLE_KEYS = 500;
+
+    /**
+     * Number of stripes of the maps under test; fewer than the writers, so
+     * that they share stripes.
+     */
+    private static final int TEST_STRIPES = 2;
+
+    /**
+     * Initial number of buckets per stripe, so that stripes grow during the
+     * tests.
+     */
+    private static final int TEST_STRIPE_SIZE = 1;
+
+    /**
+     * Load factor to be used in tests.
+     */
+    private static final double TEST_LOAD_FACTOR = 0.75;
+
+    /**
+     * Returns a new, empty {@code Map4Concurrent} with {@code TEST_STRIPES}
+     * stripes of {@code TEST_STRIPE_SIZE} buckets.
+     *
+     * @return the new map
+     * @ensures createTest = {}
+     */
+    private static Map<Integer, Integer> createTest() {
+        return new Map4Concurrent<Integer, Integer>(TEST_STRIPES,
+                TEST_STRIPE_SIZE, TEST_LOAD_FACTOR);
+    }
+
+    /**
+     * Returns the number of pairs {@code map}'s iterator visits.
+     *
+     * @param map
+     *            the map
+     * @return the number of pairs visited
+     */
+    private static int iteratorCount(Map<Integer, Integer> map) {
+        int count = 0;
+        Iterator<Map.Pair<Integer, Integer>> it = map.iterator();
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Runs {@code tasks} at once, waits for all of them, and returns their
+     * results, rethrowing the first failure.
+     *
+     * @param <T>
+     *            type of the results
+     * @param tasks
+     *            the tasks
+     * @return the results of the tasks, in order
+     * @throws Exception
+     *             if a task failed
+     */
+    private static <T> List<T> runAll(List<Callable<T>> tasks)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+        try {
+            List<Future<T>> futures = new ArrayList<Future<T>>();
+            for (Callable<T> task : tasks) {
+                futures.add(pool.submit(task));
+            }
+            List<T> results = new ArrayList<T>();
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw (Exception) e.getCause();
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns a task that runs a random history of {@code add}, {@code remove}
+     * and lookups on keys {@code first} to {@code first + KEYS_PER_WRITER - 1}
+     * of {@code map}, checking every result against a {@code Map1L} of the
+     * same keys, and returns that {@code Map1L}.
+     *
+     * @param map
+     *            the map shared by the threads
+     * @param first
+     *            the first key of the writer
+     * @param seed
+     *            seed of the random history
+     * @return the task
+     */
+    private static Callable<Map<Integer, Integer>> writer(
+            final Map<Integer, Integer> map, final int first,
+            final long seed) {
+        return new Callable<Map<Integer, Integer>>() {
+            @Override
+            public Map<Integer, Integer> call() {
+                Random random = new Random(seed);
+                Map<Integer, Integer> ref = new Map1L<Integer, Integer>();
+                for (int i = 0; i < OPERATIONS; i++) {
+                    int key = first + random.nextInt(KEYS_PER_WRITER);
+                    if (ref.hasKey(key)) {
+                        if (random.nextBoolean()) {
+                            assertEquals(ref.remove(key).value(),
+                                    map.remove(key).value());
+                        } else {
+                            assertEquals(ref.value(key), map.value(key));
+                        }
+                    } else {
+                        assertEquals(false, map.hasKey(key));
+                        ref.add(key, i);
+                        map.add(key, i);
+                    }
+                }
+                return ref;
+            }
+        };
+    }
+
+    /**
+     * Returns a task that looks up the stable keys of {@code map} until
+     * {@code done} is set, failing if one is ever missing or has the wrong
+     * value.
+     *
+     * @param map
+     *            the map shared by the threads
+     * @param done
+     *            set once the writers have finished
+     * @param seed
+     *            seed of the lookups
+     * @return the task
+     */
+    private static Callable<Map<Integer, Integer>> reader(
+            final Map<Integer, Integer> map, final AtomicBoolean done,
+            final long seed) {
+        return new Callable<Map<Integer, Integer>>() {
+            @Override
+            public Map<Integer, Integer> call() {
+                Random random = new Random(seed);
+                while (!done.get()) {
+                    int key = -1 - random.nextInt(STABLE_KEYS);
+                    assertEquals(true, map.hasKey(key));
+                    assertEquals(Integer.valueOf(key), map.value(key));
+                }
+                return new Map1L<Integer, Integer>();
+            }
+        };
+    }
+
+    /**
+     * Tests writers changing disjoint key ranges at once, checking the final
+     * contents, size and iterator against the writers' own {@code Map1L}s
+     */
+    @Test
+    public final void concurrentWritersTest1() throws Exception {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<Integer, Integer> map = createTest();
+        List<Callable<Map<Integer, Integer>>> tasks =
+                new ArrayList<Callable<Map<Integer, Integer>>>();
+        for (int w = 0; w < WRITERS; w++) {
+            tasks.add(writer(map, w * KEYS_PER_WRITER, w));
+        }
+
+        List<Map<Integer, Integer>> refs = runAll(tasks);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        Map<Integer, Integer> expected = new Map1L<Integer, Integer>();
+        for (Map<Integer, Integer> ref : refs) {
+            for (Map.Pair<Integer, Integer> pair : ref) {
+                expected.add(pair.key(), pair.value());
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.size(), iteratorCount(map));
+        assertEquals(expected, map);
+    }
+
+    /**
+     * Tests readers looking up keys that stay present while writers change
+     * other keys, then checks the final contents, size and iterator
+     */
+    @Test
+    public final void concurrentReadersTest1() throws Exception {
+        /*
+         * Set up variables and call method under test
+         */
+        final Map<Integer, Integer> map = createTest();
+        for (int key = -1; key >= -STABLE_KEYS; key--) {
+            map.add(key, key);
+        }
+        final AtomicBoolean done = new AtomicBoolean(false);
+        List<Callable<Map<Integer, Integer>>> tasks =
+                new ArrayList<Callable<Map<Integer, Integer>>>();
+        for (int r = 0; r < READERS; r++) {
+            tasks.add(reader(map, done, r));
+        }
+        for (int w = 0; w < WRITERS; w++) {
+            final Callable<Map<Integer, Integer>> writer = writer(map,
+                    w * KEYS_PER_WRITER, WRITERS + w);
+            tasks.add(new Callable<Map<Integer, Integer>>() {
+                @Override
+                public Map<Integer, Integer> call() throws Exception {
+                    try {
+                        return writer.call();
+                    } finally {
+                        done.set(true);
+                    }
+                }
+            });
+        }
+
+        List<Map<Integer, Integer>> refs = runAll(tasks);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        Map<Integer, Integer> expected = new Map1L<Integer, Integer>();
+        for (int key = -1; key >= -STABLE_KEYS; key--) {
+            expected.add(key, key);
+        }
+        for (Map<Integer, Integer> ref : refs) {
+            for (Map.Pair<Integer, Integer> pair : ref) {
+                expected.add(pair.key(), pair.value());
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.size(), iteratorCount(map));
+        assertEquals(expected, map);
+    }
+
+    /**
+     * Tests several threads draining the map with removeAny at once, each
+     * entry going to exactly one thread
+     */
+    @Test
+    public final void concurrentRemoveAnyTest1() throws Exception {
+        /*
+         * Set up variables and call method under test
+         */
+        final Map<Integer, Integer> map = createTest();
+        Map<Integer, Integer> expected = new Map1L<Integer, Integer>();
+        for (int key = 0; key < WRITERS * KEYS_PER_WRITER; key++) {
+            map.add(key, key);
+            expected.add(key, key);
+        }
+        List<Callable<Map<Integer, Integer>>> tasks =
+                new ArrayList<Callable<Map<Integer, Integer>>>();
+        for (int w = 0; w < WRITERS; w++) {
+            tasks.add(new Callable<Map<Integer, Integer>>() {
+                @Override
+                public Map<Integer, Integer> call() {
+                    Map<Integer, Integer> removed =
+                            new Map1L<Integer, Integer>();
+                    for (int i = 0; i < KEYS_PER_WRITER; i++) {
+                        Map.Pair<Integer, Integer> pair = map.removeAny();
+                        removed.add(pair.key(), pair.value());
+                    }
+                    return removed;
+                }
+            });
+        }
+
+        List<Map<Integer, Integer>> removed = runAll(tasks);
+
+        /*
+         * Assert that values of variables match expectations: every entry
+         * was removed by exactly one thread
+         */
+        Map<Integer, Integer> result = new Map1L<Integer, Integer>();
+        for (Map<Integer, Integer> part : removed) {
+            for (Map.Pair<Integer, Integer> pair : part) {
+                assertEquals(false, result.hasKey(pair.key()));
+                result.add(pair.key(), pair.value());
+            }
+        }
+        assertEquals(0, map.size());
+        assertEquals(0, iteratorCount(map));
+        assertEquals(expected, result);
+    }
+
+}
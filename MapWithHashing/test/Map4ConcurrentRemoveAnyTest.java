@@ -0,0 +1,85 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code removeAny} of {@code Map4Concurrent} on maps
+ * large enough for its stripes to have grown.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4ConcurrentRemoveAnyTest {
+
+    /**
+     * Number of keys used by the tests.
+     */
+    private static final int MANY = 50000;
+
+    /**
+     * Tests draining a large map with removeAny removes every pair once
+     */
+    @Test
+    public final void removeAnyTestDrain() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<Integer, Integer> result = new Map4Concurrent<Integer, Integer>();
+        Map<Integer, Integer> expected = new Map1L<Integer, Integer>();
+        Map<Integer, Integer> removed = new Map1L<Integer, Integer>();
+        for (int i = 0; i < MANY; i++) {
+            result.add(i, i);
+            expected.add(i, i);
+        }
+
+        while (result.size() > 0) {
+            Map.Pair<Integer, Integer> pair = result.removeAny();
+            removed.add(pair.key(), pair.value());
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, removed);
+    }
+
+    /**
+     * Tests removeAny interleaved with adds, so that some pairs land in
+     * buckets that removeAny has already scanned past
+     */
+    @Test
+    public final void removeAnyTestInterleavedAdds() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<Integer, Integer> result = new Map4Concurrent<Integer, Integer>();
+        Map<Integer, Integer> expected = new Map1L<Integer, Integer>();
+        Map<Integer, Integer> removed = new Map1L<Integer, Integer>();
+        for (int i = 0; i < MANY; i++) {
+            result.add(i, i);
+            expected.add(i, i);
+        }
+
+        for (int i = MANY; i < 2 * MANY; i++) {
+            Map.Pair<Integer, Integer> pair = result.removeAny();
+            removed.add(pair.key(), pair.value());
+            result.add(i, i);
+            expected.add(i, i);
+        }
+        while (result.size() > 0) {
+            Map.Pair<Integer, Integer> pair = result.removeAny();
+            removed.add(pair.key(), pair.value());
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, removed);
+    }
+
+}
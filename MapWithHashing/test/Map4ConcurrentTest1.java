@@ -0,0 +1,37 @@
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4Concurrent} using non-default
+ * constructor with a single stripe of a single bucket, so the stripe grows
+ * while the tests run.
+ */
+public class Map4ConcurrentTest1 extends MapTest {
+
+    /**
+     * Number of stripes to be used in tests.
+     */
+    private static final int TEST_STRIPES = 1;
+
+    /**
+     * Initial number of buckets per stripe to be used in tests.
+     */
+    private static final int TEST_STRIPE_SIZE = 1;
+
+    /**
+     * Load factor to be used in tests.
+     */
+    private static final double TEST_LOAD_FACTOR = 0.75;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4Concurrent<String, String>(TEST_STRIPES,
+                TEST_STRIPE_SIZE, TEST_LOAD_FACTOR);
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+}
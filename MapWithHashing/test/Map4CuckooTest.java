@@ -0,0 +1,20 @@
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4Cuckoo} using default
+ * constructor.
+ */
+public class Map4CuckooTest extends MapTest {
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4Cuckoo<String, String>();
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+}
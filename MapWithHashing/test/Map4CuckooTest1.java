@@ -0,0 +1,26 @@
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4Cuckoo} using non-default
+ * constructor and initial capacity 1, so the table grows from a single
+ * bucket.
+ */
+public class Map4CuckooTest1 extends MapTest {
+
+    /**
+     * Initial capacity of table to be used in tests.
+     */
+    private static final int TEST_CAPACITY = 1;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4Cuckoo<String, String>(TEST_CAPACITY);
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+}
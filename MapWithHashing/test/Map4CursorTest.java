@@ -0,0 +1,181 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code Map4}'s {@code forEach} and {@code Cursor}.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4CursorTest {
+
+    /**
+     * Number of entries used by the tests that need many buckets.
+     */
+    private static final int MANY = 10000;
+
+    /**
+     * Adds the pairs (i, "value" + i) for {@code 0 <= i < n} to {@code map}
+     * and to {@code expected}.
+     *
+     * @param map
+     *            the map under test
+     * @param expected
+     *            the map of expected pairs
+     * @param n
+     *            the number of pairs
+     */
+    private static void fill(Map<Integer, String> map,
+            Map<Integer, String> expected, int n) {
+        for (int i = 0; i < n; i++) {
+            map.add(i, "value" + i);
+            expected.add(i, "value" + i);
+        }
+    }
+
+    /**
+     * Returns the pairs visited by {@code cursor} from where it is until it
+     * runs out.
+     *
+     * @param cursor
+     *            the cursor
+     * @return the pairs visited
+     */
+    private static Map<Integer, String> visit(
+            Map4<Integer, String>.Cursor cursor) {
+        Map<Integer, String> seen = new Map1L<Integer, String>();
+        while (cursor.advance()) {
+            seen.add(cursor.key(), cursor.value());
+        }
+        return seen;
+    }
+
+    /**
+     * Returns the pairs visited by {@code map.forEach}, given a
+     * {@code BiConsumer}.
+     *
+     * @param map
+     *            the map
+     * @return the pairs visited
+     */
+    private static Map<Integer, String> visitKeysAndValues(
+            Map4<Integer, String> map) {
+        final Map<Integer, String> seen = new Map1L<Integer, String>();
+        map.forEach((key, value) -> seen.add(key, value));
+        return seen;
+    }
+
+    /**
+     * Returns the pairs visited by {@code map.forEach}, given a
+     * {@code Consumer} of pairs.
+     *
+     * @param map
+     *            the map
+     * @return the pairs visited
+     */
+    private static Map<Integer, String> visitPairs(Map4<Integer, String> map) {
+        final Map<Integer, String> seen = new Map1L<Integer, String>();
+        map.forEach((Map.Pair<Integer, String> pair) -> seen.add(pair.key(),
+                pair.value()));
+        return seen;
+    }
+
+    @Test
+    public final void cursorTestEmpty() {
+        Map4<Integer, String> map = new Map4<Integer, String>();
+        Map4<Integer, String>.Cursor cursor = map.cursor();
+
+        boolean advanced = cursor.advance();
+
+        assertEquals(false, advanced);
+        assertEquals(false, cursor.advance());
+    }
+
+    @Test
+    public final void cursorTestOneBucket() {
+        Map4<Integer, String> map = new Map4<Integer, String>(1, 0.75,
+                Map4.ResizePolicy.FIXED);
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+        fill(map, expected, 10);
+
+        Map<Integer, String> seen = visit(map.cursor());
+
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    public final void cursorTestMany() {
+        Map4<Integer, String> map = new Map4<Integer, String>();
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+        fill(map, expected, MANY);
+
+        Map<Integer, String> seen = visit(map.cursor());
+
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    public final void cursorTestDuringIncrementalResize() {
+        Map4<Integer, String> map = new Map4<Integer, String>(1, 0.75,
+                Map4.ResizePolicy.GROW, true);
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+        fill(map, expected, MANY);
+
+        Map<Integer, String> seen = visit(map.cursor());
+
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    public final void cursorTestReset() {
+        Map4<Integer, String> map = new Map4<Integer, String>();
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+        fill(map, expected, MANY);
+        Map4<Integer, String>.Cursor cursor = map.cursor();
+        visit(cursor);
+        map.remove(0);
+        expected.remove(0);
+
+        cursor.reset();
+        Map<Integer, String> seen = visit(cursor);
+
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    public final void forEachTestEmpty() {
+        Map4<Integer, String> map = new Map4<Integer, String>();
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+
+        assertEquals(expected, visitKeysAndValues(map));
+        assertEquals(expected, visitPairs(map));
+    }
+
+    @Test
+    public final void forEachTestMany() {
+        Map4<Integer, String> map = new Map4<Integer, String>();
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+        fill(map, expected, MANY);
+
+        assertEquals(expected, visitKeysAndValues(map));
+        assertEquals(expected, visitPairs(map));
+    }
+
+    @Test
+    public final void forEachTestDuringIncrementalResize() {
+        Map4<Integer, String> map = new Map4<Integer, String>(1, 0.75,
+                Map4.ResizePolicy.GROW, true);
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+        fill(map, expected, MANY);
+
+        assertEquals(expected, visitKeysAndValues(map));
+        assertEquals(expected, visitPairs(map));
+    }
+
+}
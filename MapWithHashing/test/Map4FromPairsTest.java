@@ -0,0 +1,157 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for building a {@code Map4} with {@code fromPairs}.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4FromPairsTest {
+
+    /**
+     * Number of pairs used by the tests that need many pages of buckets.
+     */
+    private static final int MANY = 100000;
+
+    /**
+     * Returns the pairs (i, "value" + i) for {@code first <= i < last}.
+     *
+     * @param first
+     *            the first key
+     * @param last
+     *            one more than the last key
+     * @return the pairs
+     */
+    private static List<Map.Pair<Integer, String>> pairs(int first,
+            int last) {
+        Map<Integer, String> source = new Map1L<Integer, String>();
+        for (int i = first; i < last; i++) {
+            source.add(i, "value" + i);
+        }
+        List<Map.Pair<Integer, String>> pairs =
+                new ArrayList<Map.Pair<Integer, String>>();
+        for (Map.Pair<Integer, String> pair : source) {
+            pairs.add(pair);
+        }
+        return pairs;
+    }
+
+    /**
+     * Returns a {@code Map1L} holding {@code pairs}.
+     *
+     * @param pairs
+     *            the pairs
+     * @return the map
+     */
+    private static Map<Integer, String> expected(
+            List<Map.Pair<Integer, String>> pairs) {
+        Map<Integer, String> map = new Map1L<Integer, String>();
+        for (Map.Pair<Integer, String> pair : pairs) {
+            map.add(pair.key(), pair.value());
+        }
+        return map;
+    }
+
+    @Test
+    public final void fromPairsTestEmpty() {
+        List<Map.Pair<Integer, String>> pairs = pairs(0, 0);
+
+        Map<Integer, String> map = Map4.fromPairs(pairs, 101);
+
+        assertEquals(0, map.size());
+        assertEquals(expected(pairs), map);
+    }
+
+    @Test
+    public final void fromPairsTest1() {
+        List<Map.Pair<Integer, String>> pairs = pairs(0, 1);
+
+        Map<Integer, String> map = Map4.fromPairs(pairs, 1);
+
+        assertEquals(expected(pairs), map);
+    }
+
+    @Test
+    public final void fromPairsTestSmallHint() {
+        List<Map.Pair<Integer, String>> pairs = pairs(-50, 50);
+
+        Map<Integer, String> map = Map4.fromPairs(pairs, 1);
+
+        assertEquals(expected(pairs), map);
+    }
+
+    @Test
+    public final void fromPairsTestMany() {
+        List<Map.Pair<Integer, String>> pairs = pairs(0, MANY);
+
+        Map<Integer, String> map = Map4.fromPairs(pairs, 1);
+
+        assertEquals(MANY, map.size());
+        assertEquals(expected(pairs), map);
+    }
+
+    @Test
+    public final void fromPairsTestThenChange() {
+        List<Map.Pair<Integer, String>> pairs = pairs(0, MANY);
+        Map<Integer, String> expected = expected(pairs);
+
+        Map<Integer, String> map = Map4.fromPairs(pairs, 101);
+        for (int i = 0; i < MANY; i += 2) {
+            assertEquals(expected.remove(i).value(), map.remove(i).value());
+        }
+        for (int i = MANY; i < 2 * MANY; i++) {
+            expected.add(i, "value" + i);
+            map.add(i, "value" + i);
+        }
+        while (map.size() > 0) {
+            Map.Pair<Integer, String> pair = map.removeAny();
+            assertEquals(expected.remove(pair.key()).value(), pair.value());
+        }
+
+        assertEquals(0, expected.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void fromPairsTestDuplicate() {
+        List<Map.Pair<Integer, String>> pairs = pairs(0, MANY);
+        pairs.addAll(pairs(MANY - 1, MANY));
+
+        Map4.fromPairs(pairs, 1);
+    }
+
+    /**
+     * Tests fromPairs with the largest hash table, with keys whose buckets
+     * are in its last page group and in its first
+     */
+    @Test
+    public final void fromPairsTestLastPageGroup() {
+        /*
+         * Set up variables and call method under test
+         */
+        List<Map.Pair<Integer, String>> pairs = pairs(Integer.MAX_VALUE - 100,
+                Integer.MAX_VALUE);
+        pairs.addAll(pairs(0, 100));
+
+        Map<Integer, String> map = Map4.fromPairs(pairs, Integer.MAX_VALUE);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(pairs.size(), map.size());
+        for (Map.Pair<Integer, String> pair : pairs) {
+            assertEquals(pair.value(), map.value(pair.key()));
+        }
+        assertEquals(expected(pairs), map);
+    }
+
+}
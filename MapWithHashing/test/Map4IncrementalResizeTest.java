@@ -0,0 +1,303 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code Map4} with incremental resizing, calling each
+ * method while a resize is half done, that is, while some entries are still
+ * in the old table.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4IncrementalResizeTest {
+
+    /**
+     * Size of hash table to be used in tests.
+     */
+    private static final int TEST_HASH_TABLE_SIZE = 101;
+
+    /**
+     * Load factor to be used in tests.
+     */
+    private static final double TEST_LOAD_FACTOR = 0.75;
+
+    /**
+     * Number of keys whose last add crosses the load factor of a table of
+     * {@code TEST_HASH_TABLE_SIZE} buckets and starts a resize; each later
+     * update moves only a few of them, so the resize stays in progress for
+     * several updates.
+     */
+    private static final int THRESHOLD_KEYS = 76;
+
+    /**
+     * Number of keys used by the tests that go through many resizes.
+     */
+    private static final int MANY = 5000;
+
+    /**
+     * Creates and returns an incrementally resized {@code Map4} with
+     * {@code n} pairs ("key" + i, "value" + i).
+     *
+     * @param n
+     *            the number of pairs
+     * @return the constructed map
+     * @ensures createTest = [the n pairs]
+     */
+    private static Map4<String, String> createTest(int n) {
+        Map4<String, String> map = new Map4<String, String>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR,
+                Map4.ResizePolicy.GROW_AND_SHRINK, true, Map4.Hashing.MODULUS);
+        for (int i = 0; i < n; i++) {
+            map.add("key" + i, "value" + i);
+        }
+        return map;
+    }
+
+    /**
+     * Creates and returns a {@code Map1L} with {@code n} pairs ("key" + i,
+     * "value" + i).
+     *
+     * @param n
+     *            the number of pairs
+     * @return the constructed map
+     * @ensures createRef = [the n pairs]
+     */
+    private static Map<String, String> createRef(int n) {
+        Map<String, String> map = new Map1L<String, String>();
+        for (int i = 0; i < n; i++) {
+            map.add("key" + i, "value" + i);
+        }
+        return map;
+    }
+
+    /**
+     * Tests that the add crossing the load factor starts a resize and leaves
+     * it in progress
+     */
+    @Test
+    public final void addTestStartsResize() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map4<String, String> before = createTest(THRESHOLD_KEYS - 1);
+        Map4<String, String> result = createTest(THRESHOLD_KEYS);
+        Map<String, String> expected = createRef(THRESHOLD_KEYS);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(false, before.resizeInProgress());
+        assertEquals(true, result.resizeInProgress());
+        assertEquals(expected, result);
+    }
+
+    /**
+     * Tests value and hasKey for every key, and for a missing key, right after
+     * a resize starts
+     */
+    @Test
+    public final void valueTestMidResize() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map4<String, String> result = createTest(THRESHOLD_KEYS);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(true, result.resizeInProgress());
+        for (int i = 0; i < THRESHOLD_KEYS; i++) {
+            assertEquals(true, result.hasKey("key" + i));
+            assertEquals("value" + i, result.value("key" + i));
+        }
+        assertEquals(false, result.hasKey("key" + THRESHOLD_KEYS));
+        assertEquals(THRESHOLD_KEYS, result.size());
+    }
+
+    /**
+     * Tests value for every key after each of the updates that finish a
+     * resize
+     */
+    @Test
+    public final void valueTestEachStep() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map4<String, String> result = createTest(THRESHOLD_KEYS);
+        int added = THRESHOLD_KEYS;
+
+        while (result.resizeInProgress()) {
+            result.add("key" + added, "value" + added);
+            added++;
+
+            /*
+             * Assert that values of variables match expectations
+             */
+            for (int i = 0; i < added; i++) {
+                assertEquals("value" + i, result.value("key" + i));
+            }
+        }
+        assertEquals(createRef(added), result);
+    }
+
+    /**
+     * Tests remove of each key, starting right after a resize starts
+     */
+    @Test
+    public final void removeTestMidResize() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map4<String, String> result = createTest(THRESHOLD_KEYS);
+        Map<String, String> expected = createRef(THRESHOLD_KEYS);
+        boolean startedMidResize = result.resizeInProgress();
+
+        for (int i = 0; i < THRESHOLD_KEYS; i++) {
+            Map.Pair<String, String> pair = result.remove("key" + i);
+            Map.Pair<String, String> expectedPair = expected.remove("key" + i);
+
+            /*
+             * Assert that values of variables match expectations
+             */
+            assertEquals(expectedPair, pair);
+            assertEquals(expected, result);
+        }
+        assertEquals(true, startedMidResize);
+    }
+
+    /**
+     * Tests remove of the keys in reverse order, so that keys not yet moved
+     * out of the old table are removed first
+     */
+    @Test
+    public final void removeTestMidResizeReverse() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map4<String, String> result = createTest(THRESHOLD_KEYS);
+        Map<String, String> expected = createRef(THRESHOLD_KEYS);
+
+        for (int i = THRESHOLD_KEYS - 1; i >= 0; i--) {
+            Map.Pair<String, String> pair = result.remove("key" + i);
+            Map.Pair<String, String> expectedPair = expected.remove("key" + i);
+
+            /*
+             * Assert that values of variables match expectations
+             */
+            assertEquals(expectedPair, pair);
+            assertEquals(expected, result);
+        }
+    }
+
+    /**
+     * Tests removeAny until the map is empty, starting right after a resize
+     * starts
+     */
+    @Test
+    public final void removeAnyTestMidResize() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map4<String, String> result = createTest(THRESHOLD_KEYS);
+        Map<String, String> expected = createRef(THRESHOLD_KEYS);
+        Map<String, String> removed = createRef(0);
+        boolean startedMidResize = result.resizeInProgress();
+
+        while (result.size() > 0) {
+            Map.Pair<String, String> pair = result.removeAny();
+            removed.add(pair.key(), pair.value());
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(true, startedMidResize);
+        assertEquals(expected, removed);
+        assertEquals(createRef(0), result);
+    }
+
+    /**
+     * Tests iterating over the map right after a resize starts, when every
+     * entry is still in the old table
+     */
+    @Test
+    public final void iteratorTestMidResize() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map4<String, String> result = createTest(THRESHOLD_KEYS);
+        Map<String, String> expected = createRef(THRESHOLD_KEYS);
+        Map<String, String> seen = createRef(0);
+
+        for (Map.Pair<String, String> pair : result) {
+            seen.add(pair.key(), pair.value());
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(true, result.resizeInProgress());
+        assertEquals(expected, seen);
+    }
+
+    /**
+     * Tests iterating over the map after each of the updates that finish a
+     * resize, when entries are split between the old and new tables
+     */
+    @Test
+    public final void iteratorTestEachStep() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map4<String, String> result = createTest(THRESHOLD_KEYS);
+        int added = THRESHOLD_KEYS;
+
+        while (result.resizeInProgress()) {
+            result.add("key" + added, "value" + added);
+            added++;
+            Map<String, String> seen = createRef(0);
+            for (Map.Pair<String, String> pair : result) {
+                seen.add(pair.key(), pair.value());
+            }
+
+            /*
+             * Assert that values of variables match expectations
+             */
+            assertEquals(createRef(added), seen);
+        }
+    }
+
+    /**
+     * Tests adding and then removing many keys, so that the table grows and
+     * shrinks many times with resizes overlapping later updates
+     */
+    @Test
+    public final void addRemoveTestManyResizes() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map4<String, String> result = createTest(MANY);
+        boolean allFound = true;
+        for (int i = 0; i < MANY; i++) {
+            allFound &= ("value" + i).equals(result.value("key" + i));
+        }
+
+        for (int i = 0; i < MANY; i++) {
+            result.remove("key" + i);
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(true, allFound);
+        assertEquals(createRef(0), result);
+        assertEquals(TEST_HASH_TABLE_SIZE, result.hashTableSize());
+    }
+
+}
@@ -0,0 +1,137 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+
+/**
+ * JUnit test fixture for {@code Map4LockFree} with keys whose hash codes
+ * collide, so that one bucket holds a very long chain.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4LockFreeCollisionTest {
+
+    /**
+     * Number of keys sharing one hash code; more than a recursive copy of the
+     * chain could handle on the stack.
+     */
+    private static final int MANY = 20000;
+
+    /**
+     * Number of keys removed from deep in the chain.
+     */
+    private static final int REMOVED = 10;
+
+    /**
+     * Key whose hash code is the same for every key.
+     */
+    private static final class Colliding {
+
+        /**
+         * Identity of the key.
+         */
+        private final int id;
+
+        /**
+         * Constructor from identity.
+         *
+         * @param id
+         *            the identity
+         */
+        Colliding(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Colliding && ((Colliding) obj).id == this.id;
+        }
+
+        @Override
+        public String toString() {
+            return "Colliding" + this.id;
+        }
+
+    }
+
+    /**
+     * Creates and returns a {@code Map4LockFree} with {@code n} pairs
+     * (Colliding(i), i).
+     *
+     * @param n
+     *            the number of pairs
+     * @return the constructed map
+     * @ensures createTest = [the n pairs]
+     */
+    private static Map<Colliding, Integer> createTest(int n) {
+        Map<Colliding, Integer> map = new Map4LockFree<Colliding, Integer>();
+        for (int i = 0; i < n; i++) {
+            map.add(new Colliding(i), i);
+        }
+        return map;
+    }
+
+    /**
+     * Tests remove of keys at both ends of a very long chain
+     */
+    @Test
+    public final void removeTestLongChain() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<Colliding, Integer> result = createTest(MANY);
+
+        for (int i = 0; i < REMOVED; i++) {
+            Map.Pair<Colliding, Integer> first = result
+                    .remove(new Colliding(i));
+            Map.Pair<Colliding, Integer> last = result
+                    .remove(new Colliding(MANY - 1 - i));
+
+            /*
+             * Assert that values of variables match expectations
+             */
+            assertEquals(Integer.valueOf(i), first.value());
+            assertEquals(Integer.valueOf(MANY - 1 - i), last.value());
+        }
+        assertEquals(MANY - 2 * REMOVED, result.size());
+        for (int i = 0; i < MANY; i++) {
+            boolean kept = REMOVED <= i && i < MANY - REMOVED;
+            assertEquals(kept, result.hasKey(new Colliding(i)));
+        }
+    }
+
+    /**
+     * Tests that the keys left after removing from a very long chain keep
+     * their values
+     */
+    @Test
+    public final void valueTestAfterRemoveFromLongChain() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<Colliding, Integer> result = createTest(MANY);
+
+        result.remove(new Colliding(0));
+        result.remove(new Colliding(MANY / 2));
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        for (int i = 1; i < MANY; i++) {
+            if (i != MANY / 2) {
+                assertEquals(Integer.valueOf(i),
+                        result.value(new Colliding(i)));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,31 @@
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4LockFree} using non-default
+ * constructor with a single bucket, so the table grows while the tests run.
+ */
+public class Map4LockFreeTest1 extends MapTest {
+
+    /**
+     * Initial number of buckets to be used in tests.
+     */
+    private static final int TEST_CAPACITY = 1;
+
+    /**
+     * Load factor to be used in tests.
+     */
+    private static final double TEST_LOAD_FACTOR = 0.75;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4LockFree<String, String>(TEST_CAPACITY,
+                TEST_LOAD_FACTOR);
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+}
@@ -0,0 +1,32 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4OffHeap} kept in a new
+ * temporary file.
+ */
+public class Map4OffHeapFileTest extends MapTest {
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        try {
+            Path file = Files.createTempFile("Map4OffHeapFileTest", ".map");
+            Files.delete(file);
+            file.toFile().deleteOnExit();
+            return new Map4OffHeap<String, String>(file, Serializer.STRING,
+                    Serializer.STRING);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+}
@@ -0,0 +1,148 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for creating, closing and reopening file-backed
+ * {@code Map4OffHeap}s.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4OffHeapReopenTest {
+
+    /**
+     * Number of entries used by the tests that make the table grow.
+     */
+    private static final int MANY = 5000;
+
+    /**
+     * Returns the path of a file that does not exist yet and is deleted when
+     * the tests finish.
+     *
+     * @return the path
+     * @throws IOException
+     *             if the temporary file cannot be created
+     */
+    private static Path newFile() throws IOException {
+        Path file = Files.createTempFile("Map4OffHeapReopenTest", ".map");
+        Files.delete(file);
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Opens the map kept in {@code file}.
+     *
+     * @param file
+     *            the file
+     * @return the map
+     * @throws IOException
+     *             if the map cannot be opened
+     */
+    private static Map4OffHeap<Integer, String> open(Path file)
+            throws IOException {
+        return new Map4OffHeap<Integer, String>(file, Serializer.INTEGER,
+                Serializer.STRING);
+    }
+
+    @Test
+    public final void reopenTest1() throws IOException {
+        Path file = newFile();
+        Map4OffHeap<Integer, String> map = open(file);
+        map.close();
+
+        Map4OffHeap<Integer, String> reopened = open(file);
+
+        assertEquals(0, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    public final void reopenTest2() throws IOException {
+        Path file = newFile();
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+        Map4OffHeap<Integer, String> map = open(file);
+        for (int i = 0; i < MANY; i++) {
+            map.add(i, "value" + i);
+            expected.add(i, "value" + i);
+        }
+        for (int i = 0; i < MANY; i += 3) {
+            map.remove(i);
+            expected.remove(i);
+        }
+        map.close();
+
+        Map4OffHeap<Integer, String> reopened = open(file);
+
+        assertEquals(expected, reopened);
+        reopened.close();
+    }
+
+    @Test
+    public final void reopenTest3() throws IOException {
+        Path file = newFile();
+        Map4OffHeap<Integer, String> map = open(file);
+        map.add(1, "one");
+        map.close();
+        Map4OffHeap<Integer, String> reopened = open(file);
+        reopened.add(2, "two");
+        reopened.remove(1);
+        reopened.close();
+
+        Map4OffHeap<Integer, String> result = open(file);
+
+        assertEquals(1, result.size());
+        assertEquals("two", result.value(2));
+        result.close();
+    }
+
+    @Test
+    public final void syncTest1() throws IOException {
+        Path file = newFile();
+        Map4OffHeap<Integer, String> map = open(file);
+        map.add(1, "one");
+
+        map.sync();
+        Map4OffHeap<Integer, String> copy = open(file);
+
+        assertEquals("one", copy.value(1));
+        copy.close();
+        map.close();
+    }
+
+    @Test(expected = IOException.class)
+    public final void dirtyTest1() throws IOException {
+        Path file = newFile();
+        Map4OffHeap<Integer, String> map = open(file);
+        map.add(1, "one");
+
+        // the map is neither synced nor closed, as after a crash
+        open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public final void corruptTest1() throws IOException {
+        Path file = newFile();
+        open(file).close();
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 0}), 0);
+        }
+
+        open(file);
+    }
+
+}
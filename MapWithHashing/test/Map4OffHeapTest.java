@@ -0,0 +1,21 @@
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4OffHeap} storing keys and
+ * values with {@code Serializer.STRING}.
+ */
+public class Map4OffHeapTest extends MapTest {
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4OffHeap<String, String>(Serializer.STRING,
+                Serializer.STRING);
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+}
@@ -0,0 +1,32 @@
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4OffHeap} using non-default
+ * constructor and initial capacity 1, so the slot table grows and the arena
+ * is compacted while the tests run.
+ */
+public class Map4OffHeapTest1 extends MapTest {
+
+    /**
+     * Initial capacity of table to be used in tests.
+     */
+    private static final int TEST_CAPACITY = 1;
+
+    /**
+     * Load factor to be used in tests.
+     */
+    private static final double TEST_LOAD_FACTOR = 0.75;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4OffHeap<String, String>(Serializer.STRING,
+                Serializer.STRING, TEST_CAPACITY, TEST_LOAD_FACTOR);
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+}
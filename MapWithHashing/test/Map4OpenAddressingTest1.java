@@ -0,0 +1,26 @@
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4OpenAddressing} using
+ * non-default constructor and initial capacity 1, so every add grows the
+ * table.
+ */
+public class Map4OpenAddressingTest1 extends MapTest {
+
+    /**
+     * Initial capacity of table to be used in tests.
+     */
+    private static final int TEST_CAPACITY = 1;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4OpenAddressing<String, String>(TEST_CAPACITY);
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+}
@@ -0,0 +1,323 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for how the hash table of {@code Map4} changes size under
+ * each {@code ResizePolicy}.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4ResizeTest {
+
+    /**
+     * Size of hash table to be used in tests.
+     */
+    private static final int TEST_HASH_TABLE_SIZE = 1;
+
+    /**
+     * Load factor to be used in tests.
+     */
+    private static final double TEST_LOAD_FACTOR = 0.75;
+
+    /**
+     * Number of keys added by the tests; with hash table size 1 and load
+     * factor 0.75 they make the table grow through 3, 7, 15, 31, 63, 127 and
+     * 255 buckets.
+     */
+    private static final int MANY = 100;
+
+    /**
+     * Size of the hash table after {@code MANY} keys have been added to a
+     * table that grows.
+     */
+    private static final int GROWN_HASH_TABLE_SIZE = 255;
+
+    /**
+     * Creates and returns a {@code Map4} with the given resize policy and
+     * {@code n} pairs ("key" + i, "value" + i).
+     *
+     * @param resizePolicy
+     *            the resize policy of the map
+     * @param n
+     *            the number of pairs
+     * @return the constructed map
+     * @ensures createTest = [the n pairs]
+     */
+    private static Map4<String, String> createTest(
+            Map4.ResizePolicy resizePolicy, int n) {
+        Map4<String, String> map = new Map4<String, String>(
+                TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR, resizePolicy);
+        for (int i = 0; i < n; i++) {
+            map.add("key" + i, "value" + i);
+        }
+        return map;
+    }
+
+    /**
+     * Creates and returns a {@code Map1L} with {@code n} pairs ("key" + i,
+     * "value" + i).
+     *
+     * @param n
+     *            the number of pairs
+     * @return the constructed map
+     * @ensures createRef = [the n pairs]
+     */
+    private static Map<String, String> createRef(int n) {
+        Map<String, String> map = new Map1L<String, String>();
+        for (int i = 0; i < n; i++) {
+            map.add("key" + i, "value" + i);
+        }
+        return map;
+    }
+
+    /*
+     * Test cases for FIXED
+     */
+
+    /**
+     * Tests that adding many pairs to a FIXED map keeps its bucket count
+     */
+    @Test
+    public final void fixedTestAdd() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<String, String> expected = createRef(MANY);
+        Map4<String, String> result = createTest(Map4.ResizePolicy.FIXED,
+                MANY);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, result);
+        assertEquals(TEST_HASH_TABLE_SIZE, result.hashTableSize());
+    }
+
+    /**
+     * Tests that removing every pair from a FIXED map keeps its bucket count
+     */
+    @Test
+    public final void fixedTestRemove() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<String, String> expected = createRef(0);
+        Map4<String, String> result = createTest(Map4.ResizePolicy.FIXED,
+                MANY);
+
+        for (int i = 0; i < MANY; i++) {
+            result.remove("key" + i);
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, result);
+        assertEquals(TEST_HASH_TABLE_SIZE, result.hashTableSize());
+    }
+
+    /*
+     * Test cases for GROW
+     */
+
+    /**
+     * Tests that adding many pairs to a GROW map grows its table through
+     * several doublings
+     */
+    @Test
+    public final void growTestAdd() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<String, String> expected = createRef(MANY);
+        Map4<String, String> result = createTest(Map4.ResizePolicy.GROW,
+                MANY);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, result);
+        assertEquals(GROWN_HASH_TABLE_SIZE, result.hashTableSize());
+    }
+
+    /**
+     * Tests that the table grows step by step as pairs are added to a GROW
+     * map, never holding more than the load factor allows
+     */
+    @Test
+    public final void growTestEachAdd() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map4<String, String> result = createTest(Map4.ResizePolicy.GROW, 0);
+        int expectedSize = TEST_HASH_TABLE_SIZE;
+
+        for (int i = 0; i < MANY; i++) {
+            result.add("key" + i, "value" + i);
+            if (i + 1 > expectedSize * TEST_LOAD_FACTOR) {
+                expectedSize = 2 * expectedSize + 1;
+            }
+
+            /*
+             * Assert that values of variables match expectations
+             */
+            assertEquals(expectedSize, result.hashTableSize());
+        }
+    }
+
+    /**
+     * Tests that removing every pair from a GROW map does not shrink it
+     */
+    @Test
+    public final void growTestRemove() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<String, String> expected = createRef(0);
+        Map4<String, String> result = createTest(Map4.ResizePolicy.GROW,
+                MANY);
+
+        for (int i = 0; i < MANY; i++) {
+            result.remove("key" + i);
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, result);
+        assertEquals(GROWN_HASH_TABLE_SIZE, result.hashTableSize());
+    }
+
+    /*
+     * Test cases for GROW_AND_SHRINK
+     */
+
+    /**
+     * Tests that adding many pairs to a GROW_AND_SHRINK map grows its table
+     * through several doublings
+     */
+    @Test
+    public final void growAndShrinkTestAdd() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<String, String> expected = createRef(MANY);
+        Map4<String, String> result = createTest(
+                Map4.ResizePolicy.GROW_AND_SHRINK, MANY);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, result);
+        assertEquals(GROWN_HASH_TABLE_SIZE, result.hashTableSize());
+    }
+
+    /**
+     * Tests that removing every pair from a GROW_AND_SHRINK map shrinks its
+     * table back to its initial size
+     */
+    @Test
+    public final void growAndShrinkTestRemove() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<String, String> expected = createRef(0);
+        Map4<String, String> result = createTest(
+                Map4.ResizePolicy.GROW_AND_SHRINK, MANY);
+
+        for (int i = 0; i < MANY; i++) {
+            result.remove("key" + i);
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, result);
+        assertEquals(TEST_HASH_TABLE_SIZE, result.hashTableSize());
+    }
+
+    /**
+     * Tests that draining a GROW_AND_SHRINK map with removeAny shrinks its
+     * table back to its initial size
+     */
+    @Test
+    public final void growAndShrinkTestRemoveAny() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<String, String> expected = createRef(MANY);
+        Map<String, String> removed = createRef(0);
+        Map4<String, String> result = createTest(
+                Map4.ResizePolicy.GROW_AND_SHRINK, MANY);
+
+        while (result.size() > 0) {
+            Map.Pair<String, String> pair = result.removeAny();
+            removed.add(pair.key(), pair.value());
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, removed);
+        assertEquals(TEST_HASH_TABLE_SIZE, result.hashTableSize());
+    }
+
+    /**
+     * Tests that removing most pairs from a GROW_AND_SHRINK map shrinks its
+     * table only part of the way, keeping the remaining pairs
+     */
+    @Test
+    public final void growAndShrinkTestRemoveMost() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<String, String> expected = createRef(MANY / 10);
+        Map4<String, String> result = createTest(
+                Map4.ResizePolicy.GROW_AND_SHRINK, MANY);
+
+        for (int i = MANY / 10; i < MANY; i++) {
+            result.remove("key" + i);
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, result);
+        assertEquals(true, result.hashTableSize() > TEST_HASH_TABLE_SIZE);
+        assertEquals(true, result.hashTableSize() < GROWN_HASH_TABLE_SIZE);
+    }
+
+    /**
+     * Tests that a GROW_AND_SHRINK map grows again after it has shrunk
+     */
+    @Test
+    public final void growAndShrinkTestRegrow() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<String, String> expected = createRef(MANY);
+        Map4<String, String> result = createTest(
+                Map4.ResizePolicy.GROW_AND_SHRINK, MANY);
+
+        for (int i = 0; i < MANY; i++) {
+            result.remove("key" + i);
+        }
+        for (int i = 0; i < MANY; i++) {
+            result.add("key" + i, "value" + i);
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, result);
+        assertEquals(GROWN_HASH_TABLE_SIZE, result.hashTableSize());
+    }
+
+}
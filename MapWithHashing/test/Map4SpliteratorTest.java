@@ -0,0 +1,202 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code Map4}'s {@code spliterator}, {@code stream}
+ * and {@code parallelStream}.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4SpliteratorTest {
+
+    /**
+     * Number of entries used by the tests that need many pages of buckets.
+     */
+    private static final int MANY = 100000;
+
+    /**
+     * Adds the pairs (i, "value" + i) for {@code 0 <= i < n} to {@code map}
+     * and to {@code expected}.
+     *
+     * @param map
+     *            the map under test
+     * @param expected
+     *            the map of expected pairs
+     * @param n
+     *            the number of pairs
+     */
+    private static void fill(Map<Integer, String> map,
+            Map<Integer, String> expected, int n) {
+        for (int i = 0; i < n; i++) {
+            map.add(i, "value" + i);
+            expected.add(i, "value" + i);
+        }
+    }
+
+    /**
+     * Splits {@code spliterator} until no part splits any further, checking
+     * that the sizes of the parts add up, and returns the parts.
+     *
+     * @param spliterator
+     *            the spliterator
+     * @return the parts
+     */
+    private static List<Spliterator<Map.Pair<Integer, String>>> splitAll(
+            Spliterator<Map.Pair<Integer, String>> spliterator) {
+        List<Spliterator<Map.Pair<Integer, String>>> parts =
+                new ArrayList<Spliterator<Map.Pair<Integer, String>>>();
+        long size = spliterator.estimateSize();
+        Spliterator<Map.Pair<Integer, String>> split = spliterator.trySplit();
+        if (split == null) {
+            parts.add(spliterator);
+        } else {
+            assertEquals(size,
+                    spliterator.estimateSize() + split.estimateSize());
+            parts.addAll(splitAll(split));
+            parts.addAll(splitAll(spliterator));
+        }
+        return parts;
+    }
+
+    /**
+     * Checks that the parts of {@code map}'s spliterator, split as far as
+     * they go, have exactly the pairs of {@code expected} between them.
+     *
+     * @param map
+     *            the map under test
+     * @param expected
+     *            the map of expected pairs
+     */
+    private static void checkSplits(Map4<Integer, String> map,
+            Map<Integer, String> expected) {
+        final Map<Integer, String> seen = new Map1L<Integer, String>();
+        for (Spliterator<Map.Pair<Integer, String>> part : splitAll(
+                map.spliterator())) {
+            final long size = part.estimateSize();
+            final List<Map.Pair<Integer, String>> pairs =
+                    new ArrayList<Map.Pair<Integer, String>>();
+            // half by tryAdvance and the rest by forEachRemaining
+            while (pairs.size() < size / 2 && part.tryAdvance(pairs::add)) {
+                assertEquals(size - pairs.size(), part.estimateSize());
+            }
+            part.forEachRemaining(pairs::add);
+            assertEquals(size, pairs.size());
+            assertEquals(0, part.estimateSize());
+            for (Map.Pair<Integer, String> pair : pairs) {
+                seen.add(pair.key(), pair.value());
+            }
+        }
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    public final void spliteratorTestEmpty() {
+        Map4<Integer, String> map = new Map4<Integer, String>();
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+
+        checkSplits(map, expected);
+    }
+
+    @Test
+    public final void spliteratorTestCharacteristics() {
+        Map4<Integer, String> map = new Map4<Integer, String>();
+
+        Spliterator<Map.Pair<Integer, String>> spliterator = map
+                .spliterator();
+
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+        assertTrue(spliterator.hasCharacteristics(Spliterator.DISTINCT));
+        assertTrue(spliterator.hasCharacteristics(Spliterator.NONNULL));
+    }
+
+    @Test
+    public final void spliteratorTestOneBucket() {
+        Map4<Integer, String> map = new Map4<Integer, String>(1, 0.75,
+                Map4.ResizePolicy.FIXED);
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+        fill(map, expected, 10);
+
+        checkSplits(map, expected);
+    }
+
+    @Test
+    public final void spliteratorTestMany() {
+        Map4<Integer, String> map = new Map4<Integer, String>();
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+        fill(map, expected, MANY);
+
+        checkSplits(map, expected);
+    }
+
+    @Test
+    public final void spliteratorTestAfterRemoves() {
+        Map4<Integer, String> map = new Map4<Integer, String>();
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+        fill(map, expected, MANY);
+        for (int i = 0; i < MANY; i += 3) {
+            map.remove(i);
+            expected.remove(i);
+        }
+
+        checkSplits(map, expected);
+    }
+
+    @Test
+    public final void spliteratorTestDuringIncrementalResize() {
+        Map4<Integer, String> map = new Map4<Integer, String>(1, 0.75,
+                Map4.ResizePolicy.GROW, true);
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+        fill(map, expected, MANY);
+
+        checkSplits(map, expected);
+    }
+
+    @Test
+    public final void streamTest() {
+        Map4<Integer, String> map = new Map4<Integer, String>();
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+        fill(map, expected, MANY);
+
+        long count = map.stream().count();
+        List<Integer> keys = map.stream().map(Map.Pair::key)
+                .collect(Collectors.toList());
+
+        assertEquals(MANY, count);
+        assertEquals(MANY, keys.size());
+    }
+
+    @Test
+    public final void parallelStreamTest() {
+        Map4<Integer, String> map = new Map4<Integer, String>(1, 0.75,
+                Map4.ResizePolicy.GROW, true);
+        Map<Integer, String> expected = new Map1L<Integer, String>();
+        fill(map, expected, MANY);
+        long expectedLength = 0;
+        for (Map.Pair<Integer, String> pair : expected) {
+            expectedLength += pair.value().length();
+        }
+
+        long length = map.parallelStream()
+                .mapToLong(pair -> pair.value().length()).sum();
+        long distinct = map.parallelStream().map(Map.Pair::key).distinct()
+                .count();
+
+        assertEquals(expectedLength, length);
+        assertEquals(MANY, distinct);
+    }
+
+}
@@ -0,0 +1,295 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code Map4} with keys whose hash codes collide, so
+ * that buckets turn into trees and back into chains.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Map4TreeBucketTest {
+
+    /**
+     * Number of keys sharing one hash code.
+     */
+    private static final int MANY = 2000;
+
+    /**
+     * Key whose hash code is the same for every key.
+     */
+    private static final class Colliding implements Comparable<Colliding> {
+
+        /**
+         * Identity of the key.
+         */
+        private final int id;
+
+        /**
+         * Constructor from identity.
+         *
+         * @param id
+         *            the identity
+         */
+        Colliding(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Colliding && ((Colliding) obj).id == this.id;
+        }
+
+        @Override
+        public int compareTo(Colliding other) {
+            return Integer.compare(this.id, other.id);
+        }
+
+        @Override
+        public String toString() {
+            return "Colliding" + this.id;
+        }
+
+    }
+
+    /**
+     * Key whose hash code is the same as {@code Colliding}'s but that is not
+     * {@code Comparable}.
+     */
+    private static final class Unordered {
+
+        /**
+         * Identity of the key.
+         */
+        private final int id;
+
+        /**
+         * Constructor from identity.
+         *
+         * @param id
+         *            the identity
+         */
+        Unordered(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Unordered && ((Unordered) obj).id == this.id;
+        }
+
+        @Override
+        public String toString() {
+            return "Unordered" + this.id;
+        }
+
+    }
+
+    /**
+     * Key whose hash code is the same as {@code Colliding}'s and whose
+     * {@code compareTo} is not consistent with {@code equals}: keys 2i and
+     * 2i + 1 compare equal without being equal.
+     */
+    private static final class Tied implements Comparable<Tied> {
+
+        /**
+         * Identity of the key.
+         */
+        private final int id;
+
+        /**
+         * Constructor from identity.
+         *
+         * @param id
+         *            the identity
+         */
+        Tied(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Tied && ((Tied) obj).id == this.id;
+        }
+
+        @Override
+        public int compareTo(Tied other) {
+            return Integer.compare(this.id / 2, other.id / 2);
+        }
+
+        @Override
+        public String toString() {
+            return "Tied" + this.id;
+        }
+
+    }
+
+    @Test
+    public final void treeTestAddAndLookUp() {
+        Map4<Object, Integer> map = new Map4<Object, Integer>();
+        Map<Object, Integer> expected = new Map1L<Object, Integer>();
+
+        for (int i = 0; i < MANY; i++) {
+            map.add(new Colliding(i), i);
+            expected.add(new Colliding(i), i);
+        }
+
+        assertEquals(expected, map);
+        for (int i = 0; i < MANY; i++) {
+            assertEquals(true, map.hasKey(new Colliding(i)));
+            assertEquals(Integer.valueOf(i), map.value(new Colliding(i)));
+        }
+        assertEquals(false, map.hasKey(new Colliding(MANY)));
+    }
+
+    @Test
+    public final void treeTestRemoveBackToChain() {
+        Map4<Object, Integer> map = new Map4<Object, Integer>();
+        Map<Object, Integer> expected = new Map1L<Object, Integer>();
+        for (int i = 0; i < MANY; i++) {
+            map.add(new Colliding(i), i);
+        }
+
+        for (int i = 0; i < MANY - 3; i++) {
+            assertEquals(Integer.valueOf(i), map.remove(new Colliding(i))
+                    .value());
+        }
+        for (int i = MANY - 3; i < MANY; i++) {
+            expected.add(new Colliding(i), i);
+        }
+
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void treeTestRemoveAny() {
+        Map4<Object, Integer> map = new Map4<Object, Integer>();
+        Map<Object, Integer> expected = new Map1L<Object, Integer>();
+        for (int i = 0; i < MANY; i++) {
+            map.add(new Colliding(i), i);
+            expected.add(new Colliding(i), i);
+        }
+
+        while (map.size() > 0) {
+            Map.Pair<Object, Integer> pair = map.removeAny();
+            assertEquals(expected.remove(pair.key()).value(), pair.value());
+        }
+
+        assertEquals(0, expected.size());
+    }
+
+    @Test
+    public final void treeTestMerge() {
+        Map4<Object, Integer> map = new Map4<Object, Integer>();
+        Map<Object, Integer> expected = new Map1L<Object, Integer>();
+        for (int i = 0; i < MANY; i++) {
+            expected.add(new Colliding(i), 2);
+        }
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < MANY; i++) {
+                map.merge(new Colliding(i), 1, Integer::sum);
+            }
+        }
+
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void treeTestUnorderedKeyJoins() {
+        Map4<Object, Integer> map = new Map4<Object, Integer>();
+        Map<Object, Integer> expected = new Map1L<Object, Integer>();
+        for (int i = 0; i < MANY; i++) {
+            map.add(new Colliding(i), i);
+            expected.add(new Colliding(i), i);
+        }
+
+        map.add(new Unordered(0), -1);
+        expected.add(new Unordered(0), -1);
+        map.remove(new Colliding(0));
+        expected.remove(new Colliding(0));
+
+        assertEquals(expected, map);
+        assertEquals(Integer.valueOf(-1), map.value(new Unordered(0)));
+    }
+
+    @Test
+    public final void treeTestCompareToTies() {
+        Map4<Object, Integer> map = new Map4<Object, Integer>();
+        Map<Object, Integer> expected = new Map1L<Object, Integer>();
+
+        for (int i = 0; i < MANY; i++) {
+            map.add(new Tied(i), i);
+            expected.add(new Tied(i), i);
+        }
+
+        assertEquals(expected, map);
+        for (int i = 0; i < MANY; i++) {
+            assertEquals(Integer.valueOf(i), map.value(new Tied(i)));
+        }
+        assertEquals(false, map.hasKey(new Tied(MANY)));
+    }
+
+    @Test
+    public final void treeTestCompareToTiesRemove() {
+        Map4<Object, Integer> map = new Map4<Object, Integer>();
+        Map<Object, Integer> expected = new Map1L<Object, Integer>();
+        for (int i = 0; i < MANY; i++) {
+            map.add(new Tied(i), i);
+        }
+
+        for (int i = 0; i < MANY; i += 2) {
+            assertEquals(Integer.valueOf(i), map.remove(new Tied(i)).value());
+        }
+        for (int i = 1; i < MANY; i += 2) {
+            expected.add(new Tied(i), i);
+        }
+
+        assertEquals(expected, map);
+        for (int i = MANY; i < 2 * MANY; i++) {
+            map.add(new Tied(i), i);
+            expected.add(new Tied(i), i);
+        }
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public final void treeTestDuringIncrementalResize() {
+        Map4<Object, Integer> map = new Map4<Object, Integer>(1, 0.75,
+                Map4.ResizePolicy.GROW_AND_SHRINK, true);
+        Map<Object, Integer> expected = new Map1L<Object, Integer>();
+        for (int i = 0; i < MANY; i++) {
+            map.add(new Colliding(i), i);
+            map.add(i, i);
+            expected.add(new Colliding(i), i);
+        }
+
+        for (int i = 0; i < MANY; i++) {
+            map.remove(i);
+        }
+
+        assertEquals(expected, map);
+    }
+
+}
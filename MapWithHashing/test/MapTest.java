@@ -695,4 +695,58 @@ public abstract class MapTest {
         assertEquals(expectedSize, actualSize);
     }
 
+    /*
+     * Iterator test cases
+     */
+
+    /**
+     * Test iterating over a map with three pairs visits each pair once
+     */
+    @Test
+    public final void iteratorTest1() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<String, String> testMap = this.createFromArgsTest("Malik", "Clarke",
+                "a", "b", "c", "d");
+        Map<String, String> expected = this.createFromArgsRef("Malik",
+                "Clarke", "a", "b", "c", "d");
+        Map<String, String> seen = this.createFromArgsRef();
+
+        for (Map.Pair<String, String> pair : testMap) {
+            seen.add(pair.key(), pair.value());
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, seen);
+        assertEquals(expected, testMap);
+    }
+
+    /**
+     * Test iterating over a map after a remove visits only remaining pairs
+     */
+    @Test
+    public final void iteratorTest2() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map<String, String> testMap = this.createFromArgsTest("Malik", "Clarke",
+                "a", "b", "c", "d");
+        Map<String, String> expected = this.createFromArgsRef("Malik",
+                "Clarke", "c", "d");
+        Map<String, String> seen = this.createFromArgsRef();
+
+        testMap.remove("a");
+        for (Map.Pair<String, String> pair : testMap) {
+            seen.add(pair.key(), pair.value());
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, seen);
+    }
+
 }
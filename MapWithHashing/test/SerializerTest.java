@@ -0,0 +1,139 @@
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code Serializer.STRING}, including strings with
+ * unpaired surrogates, and for {@code Map4OffHeap} keys written by it.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class SerializerTest {
+
+    /**
+     * Returns the bytes {@code Serializer.STRING} writes for {@code x}.
+     *
+     * @param x
+     *            the string to be written
+     * @return the bytes of {@code x}
+     * @ensures [bytes is the bytes written for x]
+     */
+    private static byte[] bytes(String x) {
+        ByteBuffer buffer = ByteBuffer.allocate(Serializer.STRING.length(x));
+        Serializer.STRING.write(x, buffer);
+        assertEquals(buffer.capacity(), buffer.position());
+        return buffer.array();
+    }
+
+    /**
+     * Returns the string {@code Serializer.STRING} reads from {@code bytes}.
+     *
+     * @param bytes
+     *            the bytes to be read
+     * @return the string read
+     * @ensures [read is the string read from bytes]
+     */
+    private static String read(byte[] bytes) {
+        return Serializer.STRING.read(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Tests that well-formed strings are written as their UTF-8 bytes
+     */
+    @Test
+    public final void writeTestWellFormed() {
+        /*
+         * Set up variables and call method under test
+         */
+        String x = "a\u00e9\u4e2d\ud83d\ude00";
+        byte[] expected = x.getBytes(StandardCharsets.UTF_8);
+
+        byte[] result = bytes(x);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(ByteBuffer.wrap(expected), ByteBuffer.wrap(result));
+        assertEquals(x, read(result));
+    }
+
+    /**
+     * Tests that each unpaired surrogate is read back exactly
+     */
+    @Test
+    public final void readTestUnpairedSurrogates() {
+        /*
+         * Set up variables and call method under test
+         */
+        String high = "\ud800";
+        String low = "x\udc00y";
+        String reversed = "\udc00\ud800";
+        String trailingHigh = "\ud83d\ude00\ud83d";
+
+        String highRead = read(bytes(high));
+        String lowRead = read(bytes(low));
+        String reversedRead = read(bytes(reversed));
+        String trailingHighRead = read(bytes(trailingHigh));
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(high, highRead);
+        assertEquals(low, lowRead);
+        assertEquals(reversed, reversedRead);
+        assertEquals(trailingHigh, trailingHighRead);
+    }
+
+    /**
+     * Tests that unpaired surrogates and '?' are written as different bytes
+     */
+    @Test
+    public final void writeTestUnpairedSurrogatesDistinct() {
+        /*
+         * Set up variables and call method under test
+         */
+        byte[] high = bytes("\ud800");
+        byte[] low = bytes("\udc00");
+        byte[] question = bytes("?");
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(false, ByteBuffer.wrap(high).equals(ByteBuffer.wrap(low)));
+        assertEquals(false,
+                ByteBuffer.wrap(high).equals(ByteBuffer.wrap(question)));
+        assertEquals(false,
+                ByteBuffer.wrap(low).equals(ByteBuffer.wrap(question)));
+    }
+
+    /**
+     * Tests that a {@code Map4OffHeap} keeps keys with unpaired surrogates
+     * apart from each other and from '?'
+     */
+    @Test
+    public final void offHeapTestUnpairedSurrogateKeys() {
+        /*
+         * Set up variables and call method under test
+         */
+        Map4OffHeap<String, String> map = new Map4OffHeap<String, String>(
+                Serializer.STRING, Serializer.STRING);
+
+        map.add("\ud800", "high");
+        map.add("?", "question");
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(2, map.size());
+        assertEquals("high", map.value("\ud800"));
+        assertEquals("question", map.value("?"));
+        assertEquals(false, map.hasKey("\udc00"));
+    }
+
+}
@@ -1,26 +1,80 @@
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
-import components.binarytree.BinaryTree;
-import components.binarytree.BinaryTree1;
 import components.set.Set;
 import components.set.SetSecondary;
 
 /**
- * {@code Set} represented as a {@code BinaryTree} (maintained as a binary
- * search tree) of elements with implementations of primary methods.
+ * {@code Set} represented as linked nodes of a binary search tree kept
+ * balanced by the AVL rules, with implementations of primary methods.
+ *
+ * <p>
+ * Each node links to its parent as well as its children, and records the
+ * height and size of the subtree it is the root of; {@code select} and
+ * {@code rank} use the sizes to skip whole subtrees. Searches walk down the
+ * tree in a loop without changing it or allocating anything; {@code add}
+ * allocates one node, and {@code add}, {@code remove} and {@code removeAny}
+ * walk back up through the parent links, rotating subtrees whose heights
+ * differ by more than one. The height of the tree, and so the cost of every
+ * kernel method, stays O(log |this|) whatever order elements are added in,
+ * and no method recurses.
+ * </p>
+ *
+ * <p>
+ * {@code contains}, {@code size}, iteration, the navigation methods
+ * ({@code first}, {@code last}, {@code floor}, {@code ceiling},
+ * {@code lower} and {@code higher}) and {@code select} and {@code rank} only
+ * read the nodes; they never write to {@code this}, not even temporarily. So
+ * any number of threads may call them at once on a {@code Set3a} that no
+ * thread is changing, provided the set was safely published to them (for
+ * example, by building it before starting the threads). {@code add},
+ * {@code remove}, {@code removeAny} and the standard methods still need the
+ * caller to keep other threads out.
+ * </p>
  *
  * @param <T>
  *            type of {@code Set} elements
  * @mathdefinitions <pre>
  * IS_BST(
- *   tree: binary tree of T
+ *   n: Node
+ *  ): boolean satisfies
+ *  [the tree of nodes reachable from n through left and right satisfies the
+ *   binary search tree properties as described in the slides with the
+ *   ordering reported by compareTo for T on the elements of its nodes,
+ *   including that it has no duplicate elements]
+ *
+ * IS_AVL(
+ *   n: Node
+ *  ): boolean satisfies
+ *  [the height of each node reachable from n is the height of the subtree
+ *   rooted at that node, and the heights of the two subtrees of each node
+ *   differ by at most 1]
+ *
+ * HAS_PARENT_LINKS(
+ *   n: Node
+ *  ): boolean satisfies
+ *  [the parent of every left or right child of a node reachable from n is
+ *   that node]
+ *
+ * HAS_SIZES(
+ *   n: Node
  *  ): boolean satisfies
- *  [tree satisfies the binary search tree properties as described in the
- *   slides with the ordering reported by compareTo for T, including that
- *   it has no duplicate labels]
+ *  [the size of each node reachable from n is the number of nodes in the
+ *   subtree rooted at that node]
+ *
+ * ELEMENTS(
+ *   n: Node
+ *  ): finite set of T satisfies
+ *  ELEMENTS = {x: T where ([x is the element of a node reachable from n
+ *                           through left and right])}
+ * </pre>
+ * @convention <pre>
+ * IS_BST($this.root)  and  IS_AVL($this.root)  and
+ * HAS_PARENT_LINKS($this.root)  and  HAS_SIZES($this.root)  and
+ * [if $this.root /= null then $this.root.parent = null]  and
+ * $this.size = |ELEMENTS($this.root)|
  * </pre>
- * @convention IS_BST($this.tree)
- * @correspondence this = labels($this.tree)
+ * @correspondence this = ELEMENTS($this.root)
  *
  * @author Malik Clarke
  * @author Drew Jackson
@@ -34,219 +88,422 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
      */
 
     /**
-     * Elements included in {@code this}.
-     */
-    private BinaryTree<T> tree;
-
-    /**
-     * Returns whether {@code x} is in {@code t}.
+     * Node of the tree.
      *
      * @param <T>
-     *            type of {@code BinaryTree} labels
-     * @param t
-     *            the {@code BinaryTree} to be searched
-     * @param x
-     *            the label to be searched for
-     * @return true if t contains x, false otherwise
-     * @requires IS_BST(t)
-     * @ensures isInTree = (x is in labels(t))
-     */
-    private static <T extends Comparable<T>> boolean isInTree(BinaryTree<T> t,
-            T x) {
-        assert t != null : "Violation of: t is not null";
-        assert x != null : "Violation of: x is not null";
+     *            type of element
+     */
+    private static final class Node<T> {
 
-        boolean found = false;
+        /**
+         * Element at the node.
+         */
+        private T element;
 
-        // left and right trees to hold disassembled trees
-        BinaryTree<T> left = new BinaryTree1<T>();
-        BinaryTree<T> right = new BinaryTree1<T>();
+        /**
+         * Root of the left subtree, or {@code null}.
+         */
+        private Node<T> left;
 
-        /*
-         * Tries to find x in the tree. If x is less than the root, then the
-         * left of the tree is searched. If x is greater than the root, then the
-         * right tree is searched.
+        /**
+         * Root of the right subtree, or {@code null}.
          */
-        if (t.size() > 0 && !found) {
-            T root = t.disassemble(left, right);
+        private Node<T> right;
 
-            if (root.compareTo(x) == 0) {
-                found = true;
-            } else if (root.compareTo(x) > 0) {
+        /**
+         * Node of which this is a child, or {@code null} for the root.
+         */
+        private Node<T> parent;
 
-                found = isInTree(left, x);
+        /**
+         * Height of the subtree rooted at the node.
+         */
+        private int height;
 
-            } else if (root.compareTo(x) < 0) {
+        /**
+         * Number of nodes in the subtree rooted at the node.
+         */
+        private int size;
+
+        /**
+         * Constructor for a leaf.
+         *
+         * @param element
+         *            the element
+         * @param parent
+         *            the parent, or {@code null}
+         */
+        Node(T element, Node<T> parent) {
+            this.element = element;
+            this.parent = parent;
+            this.height = 1;
+            this.size = 1;
+        }
 
-                found = isInTree(right, x);
+    }
 
-            }
+    /**
+     * Root of the tree, or {@code null} if {@code this} is empty.
+     */
+    private Node<T> root;
 
-            t.assemble(root, left, right);
-        }
+    /**
+     * Number of elements in {@code this}.
+     */
+    private int size;
 
-        return found;
+    /**
+     * Returns the height of the subtree rooted at {@code n}.
+     *
+     * @param <T>
+     *            type of element
+     * @param n
+     *            the root of the subtree, or {@code null}
+     * @return the height of the subtree
+     * @requires IS_AVL(n)
+     * @ensures height = [the height of the tree rooted at n]
+     */
+    private static <T> int height(Node<T> n) {
+        int height = 0;
+        if (n != null) {
+            height = n.height;
+        }
+        return height;
     }
 
     /**
-     * Inserts {@code x} in {@code t}.
+     * Returns the number of nodes in the subtree rooted at {@code n}.
      *
      * @param <T>
-     *            type of {@code BinaryTree} labels
-     * @param t
-     *            the {@code BinaryTree} to be searched
-     * @param x
-     *            the label to be inserted
-     * @aliases reference {@code x}
-     * @updates t
-     * @requires IS_BST(t) and x is not in labels(t)
-     * @ensures IS_BST(t) and labels(t) = labels(#t) union {x}
-     */
-    private static <T extends Comparable<T>> void insertInTree(BinaryTree<T> t,
-            T x) {
-        assert t != null : "Violation of: t is not null";
-        assert x != null : "Violation of: x is not null";
-
-        /*
-         * left and right trees for the tree to be disassembled and re-assembled
-         */
-        BinaryTree<T> left = new BinaryTree1<T>();
-        BinaryTree<T> right = new BinaryTree1<T>();
-
-        // checks to see if a root is an empty tree where x can be added
-        if (t.size() > 0) {
-            T root = t.disassemble(left, right);
-            if (root != null) {
-
-                /*
-                 * if x is greater than the root, it is added into the right
-                 * tree, and if not, then it is added into the left tree.
-                 */
-                if (x.compareTo(root) < 0) {
-
-                    insertInTree(left, x);
-
-                } else if (x.compareTo(root) > 0) {
-
-                    insertInTree(right, x);
-
-                }
-
-            } else {
-                t.assemble(x, new BinaryTree1<T>(), new BinaryTree1<T>());
-            }
-            t.assemble(root, left, right);
-        } else {
-            t.assemble(x, new BinaryTree1<T>(), new BinaryTree1<T>());
+     *            type of element
+     * @param n
+     *            the root of the subtree, or {@code null}
+     * @return the size of the subtree
+     * @requires HAS_SIZES(n)
+     * @ensures subtreeSize = |ELEMENTS(n)|
+     */
+    private static <T> int subtreeSize(Node<T> n) {
+        int size = 0;
+        if (n != null) {
+            size = n.size;
         }
-
+        return size;
     }
 
     /**
-     * Removes and returns the smallest (left-most) label in {@code t}.
+     * Sets the height and size of {@code n} from those of its children.
      *
      * @param <T>
-     *            type of {@code BinaryTree} labels
-     * @param t
-     *            the {@code BinaryTree} from which to remove the label
-     * @return the smallest label in the given {@code BinaryTree}
-     * @updates t
-     * @requires IS_BST(t) and |t| > 0
+     *            type of element
+     * @param n
+     *            the node
+     * @updates n.height, n.size
+     * @requires <pre>
+     * IS_AVL(n.left)  and  IS_AVL(n.right)  and
+     * HAS_SIZES(n.left)  and  HAS_SIZES(n.right)
+     * </pre>
      * @ensures <pre>
-     * IS_BST(t)  and  removeSmallest = [the smallest label in #t]  and
-     *  labels(t) = labels(#t) \ {removeSmallest}
+     * n.height = 1 + max(height(n.left), height(n.right))  and
+     * n.size = 1 + subtreeSize(n.left) + subtreeSize(n.right)
      * </pre>
      */
-    private static <T> T removeSmallest(BinaryTree<T> t) {
-        assert t != null : "Violation of: t is not null";
-
-        // smallest label to be returned
-        T smallest = t.root();
-
-        // left and right trees to hold disassembled trees
-        BinaryTree<T> left = new BinaryTree1<T>();
-        BinaryTree<T> right = new BinaryTree1<T>();
-
-        T root = t.disassemble(left, right);
+    private static <T> void update(Node<T> n) {
+        n.height = 1 + Math.max(height(n.left), height(n.right));
+        n.size = 1 + subtreeSize(n.left) + subtreeSize(n.right);
+    }
 
-        if (left.size() > 0) {
-            smallest = removeSmallest(left);
-            t.transferFrom(right);
-            t.assemble(root, left, right);
+    /**
+     * Returns the node with the smallest element in the subtree rooted at
+     * {@code n}.
+     *
+     * @param <T>
+     *            type of element
+     * @param n
+     *            the root of the subtree
+     * @return the left-most node of the subtree
+     * @requires n /= null
+     */
+    private static <T> Node<T> leftmost(Node<T> n) {
+        Node<T> node = n;
+        while (node.left != null) {
+            node = node.left;
         }
+        return node;
+    }
 
-        return smallest;
+    /**
+     * Returns the node with the largest element in the subtree rooted at
+     * {@code n}.
+     *
+     * @param <T>
+     *            type of element
+     * @param n
+     *            the root of the subtree
+     * @return the right-most node of the subtree
+     * @requires n /= null
+     */
+    private static <T> Node<T> rightmost(Node<T> n) {
+        Node<T> node = n;
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node;
     }
 
     /**
-     * Finds label {@code x} in {@code t}, removes it from {@code t}, and
-     * returns it.
+     * Returns the node after {@code n} in order, or {@code null} if
+     * {@code n} has the largest element.
      *
      * @param <T>
-     *            type of {@code BinaryTree} labels
-     * @param t
-     *            the {@code BinaryTree} from which to remove label {@code x}
+     *            type of element
+     * @param n
+     *            the node
+     * @return the in-order successor of {@code n}
+     * @requires n /= null  and  HAS_PARENT_LINKS([root of the tree of n])
+     */
+    private static <T> Node<T> successor(Node<T> n) {
+        Node<T> next;
+        if (n.right != null) {
+            next = leftmost(n.right);
+        } else {
+            // climb until coming up from a left child
+            Node<T> child = n;
+            next = n.parent;
+            while (next != null && child == next.right) {
+                child = next;
+                next = next.parent;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Returns the node whose element is {@code x}, or {@code null} if there
+     * is none, without changing the tree.
+     *
      * @param x
-     *            the label to be removed
-     * @return the removed label
-     * @updates t
-     * @requires IS_BST(t) and x is in labels(t)
+     *            the element to be searched for
+     * @return the node of {@code x}, or {@code null}
      * @ensures <pre>
-     * IS_BST(t)  and  removeFromTree = x  and
-     *  labels(t) = labels(#t) \ {x}
+     * if x is in ELEMENTS($this.root)
+     *  then find.element = x
+     *  else find = null
      * </pre>
      */
-    private static <T extends Comparable<T>> T removeFromTree(BinaryTree<T> t,
-            T x) {
-        assert t != null : "Violation of: t is not null";
-        assert x != null : "Violation of: x is not null";
-
-        // will hold the removed label
-        T removed = null;
-
-        // left and right trees to hold disassembled subtrees
-        BinaryTree<T> left = new BinaryTree1<T>();
-        BinaryTree<T> right = new BinaryTree1<T>();
-
-        // reports whether the label has been found and removed
-        boolean found = false;
-
-        if (t.size() > 0 && !found) {
-
-            T root = t.disassemble(left, right);
+    private Node<T> find(T x) {
+        Node<T> node = this.root;
+        int comparison = 1;
+        while (node != null && comparison != 0) {
+            comparison = x.compareTo(node.element);
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                node = node.right;
+            }
+        }
+        return node;
+    }
 
+    /**
+     * Returns the element of {@code this} nearest to {@code x} on one side:
+     * the largest element below {@code x} if {@code below}, and otherwise the
+     * smallest element above {@code x}, counting {@code x} itself if
+     * {@code inclusive}. Returns {@code null} if there is no such element.
+     *
+     * @param x
+     *            the element to search from
+     * @param below
+     *            whether to look below {@code x} rather than above it
+     * @param inclusive
+     *            whether {@code x} itself counts
+     * @return the nearest element on that side, or {@code null}
+     * @ensures <pre>
+     * [nearest is the element of this closest to x among those on the side
+     *  of x chosen by below, including x if inclusive, or null if there is
+     *  none]
+     * </pre>
+     */
+    private T nearest(T x, boolean below, boolean inclusive) {
+        T best = null;
+        Node<T> node = this.root;
+        while (node != null) {
+            int comparison = x.compareTo(node.element);
+            if (comparison == 0 && inclusive) {
+                return node.element;
+            }
             /*
-             * if x is greater than the root, it is removed from the right tree,
-             * and if not, then it is removed from the left tree.
+             * Every node passed on the wanted side of x is closer to x than
+             * the ones passed before it
              */
-            if (x.compareTo(root) == 0) {
-
-                removed = root;
-                found = true;
-
-            } else if (x.compareTo(root) < 0) {
+            if (below && comparison > 0) {
+                best = node.element;
+                node = node.right;
+            } else if (!below && comparison < 0) {
+                best = node.element;
+                node = node.left;
+            } else if (below) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return best;
+    }
 
-                removeFromTree(left, x);
+    /**
+     * Makes {@code newChild} take the place of {@code oldChild} as a child of
+     * {@code parent}, or as the root if {@code parent} is {@code null}.
+     *
+     * @param parent
+     *            the parent of {@code oldChild}, or {@code null}
+     * @param oldChild
+     *            the child to be replaced
+     * @param newChild
+     *            the replacement, or {@code null}
+     * @updates $this.root, parent.left, parent.right, newChild.parent
+     */
+    private void replaceChild(Node<T> parent, Node<T> oldChild,
+            Node<T> newChild) {
+        if (parent == null) {
+            this.root = newChild;
+        } else if (parent.left == oldChild) {
+            parent.left = newChild;
+        } else {
+            parent.right = newChild;
+        }
+        if (newChild != null) {
+            newChild.parent = parent;
+        }
+    }
 
-            } else if (x.compareTo(root) > 0) {
+    /**
+     * Rotates the subtree rooted at {@code n} to the left, so that its right
+     * child takes its place, and returns the new root of the subtree.
+     *
+     * @param n
+     *            the root of the subtree
+     * @return the new root of the subtree
+     * @updates $this.root
+     * @requires n.right /= null
+     * @ensures [the subtree has the same elements in the same order]
+     */
+    private Node<T> rotateLeft(Node<T> n) {
+        Node<T> pivot = n.right;
+        n.right = pivot.left;
+        if (pivot.left != null) {
+            pivot.left.parent = n;
+        }
+        this.replaceChild(n.parent, n, pivot);
+        pivot.left = n;
+        n.parent = pivot;
+        update(n);
+        update(pivot);
+        return pivot;
+    }
 
-                removeFromTree(right, x);
+    /**
+     * Rotates the subtree rooted at {@code n} to the right, so that its left
+     * child takes its place, and returns the new root of the subtree.
+     *
+     * @param n
+     *            the root of the subtree
+     * @return the new root of the subtree
+     * @updates $this.root
+     * @requires n.left /= null
+     * @ensures [the subtree has the same elements in the same order]
+     */
+    private Node<T> rotateRight(Node<T> n) {
+        Node<T> pivot = n.left;
+        n.left = pivot.right;
+        if (pivot.right != null) {
+            pivot.right.parent = n;
+        }
+        this.replaceChild(n.parent, n, pivot);
+        pivot.right = n;
+        n.parent = pivot;
+        update(n);
+        update(pivot);
+        return pivot;
+    }
 
+    /**
+     * Walks up from {@code n} to the root, updating heights and rotating
+     * where the heights of two subtrees differ by 2, and stops early once a
+     * subtree is balanced and as high as it was. Sizes on the path must
+     * already be right, since those above where it stops are not updated.
+     *
+     * @param n
+     *            the lowest node whose subtree changed, or {@code null}
+     * @updates $this.root
+     * @requires <pre>
+     * [the subtrees of every node from n up to the root satisfy IS_AVL,
+     *  except that heights recorded on that path may be stale and the
+     *  heights of two siblings on it may differ by 2]  and
+     * HAS_SIZES($this.root)
+     * </pre>
+     * @ensures IS_AVL($this.root)  and  HAS_SIZES($this.root)
+     */
+    private void rebalance(Node<T> n) {
+        Node<T> node = n;
+        while (node != null) {
+            int oldHeight = node.height;
+            int balance = height(node.left) - height(node.right);
+            if (balance > 1) {
+                if (height(node.left.right) > height(node.left.left)) {
+                    this.rotateLeft(node.left);
+                }
+                node = this.rotateRight(node);
+            } else if (balance < -1) {
+                if (height(node.right.left) > height(node.right.right)) {
+                    this.rotateRight(node.right);
+                }
+                node = this.rotateLeft(node);
+            } else {
+                update(node);
+                if (node.height == oldHeight) {
+                    // nothing above this subtree has changed
+                    return;
+                }
             }
+            node = node.parent;
+        }
+    }
 
+    /**
+     * Removes {@code n} from the tree and returns its element.
+     *
+     * @param n
+     *            the node to be removed
+     * @return the element of {@code n}
+     * @updates $this.root, $this.size
+     * @requires [n is a node of the tree]
+     * @ensures <pre>
+     * removeNode = n.element  and
+     * ELEMENTS($this.root) = ELEMENTS(#$this.root) \ {n.element}
+     * </pre>
+     */
+    private T removeNode(Node<T> n) {
+        T removed = n.element;
+        Node<T> spliced = n;
+        if (n.left != null && n.right != null) {
             /*
-             * To avoid restructuring the entire tree, the following conditional
-             * statement makes the smallest label found in the right subtree the
-             * new root of the original tree t.
+             * To avoid restructuring the entire tree, the smallest element of
+             * the right subtree moves into n, and its node, which has no left
+             * child, is removed instead
              */
-            if (found) {
-                T newRoot = removeSmallest(right);
-                root = newRoot;
-            }
-            t.assemble(root, left, right);
-
+            spliced = leftmost(n.right);
+            n.element = spliced.element;
         }
-
+        Node<T> child = spliced.left;
+        if (child == null) {
+            child = spliced.right;
+        }
+        this.replaceChild(spliced.parent, spliced, child);
+        for (Node<T> node = spliced.parent; node != null; node = node.parent) {
+            node.size--;
+        }
+        this.rebalance(spliced.parent);
+        this.size--;
         return removed;
     }
 
@@ -255,7 +512,8 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
      */
     private void createNewRep() {
 
-        this.tree = new BinaryTree1<T>();
+        this.root = null;
+        this.size = 0;
 
     }
 
@@ -304,7 +562,8 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
          * the ? must be T or the call would not have compiled.
          */
         Set3a<T> localSource = (Set3a<T>) source;
-        this.tree = localSource.tree;
+        this.root = localSource.root;
+        this.size = localSource.size;
         localSource.createNewRep();
     }
 
@@ -317,8 +576,34 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
         assert x != null : "Violation of: x is not null";
         assert !this.contains(x) : "Violation of: x is not in this";
 
-        // adds x to this.tree
-        insertInTree(this.tree, x);
+        /*
+         * Walks down to the empty spot where x belongs, counting x in the size
+         * of every subtree on the way since it will be added to all of them
+         */
+        Node<T> parent = null;
+        Node<T> node = this.root;
+        boolean goLeft = false;
+        while (node != null) {
+            node.size++;
+            parent = node;
+            goLeft = x.compareTo(node.element) < 0;
+            if (goLeft) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        Node<T> added = new Node<T>(x, parent);
+        if (parent == null) {
+            this.root = added;
+        } else if (goLeft) {
+            parent.left = added;
+        } else {
+            parent.right = added;
+        }
+        this.size++;
+        this.rebalance(parent);
 
     }
 
@@ -327,8 +612,8 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
         assert x != null : "Violation of: x is not null";
         assert this.contains(x) : "Violation of: x is in this";
 
-        // removes x from this.tree
-        T removed = removeFromTree(this.tree, x);
+        // removes x from the tree
+        T removed = this.removeNode(this.find(x));
 
         return removed;
     }
@@ -337,7 +622,7 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
     public final T removeAny() {
         assert this.size() > 0 : "Violation of: this /= empty_set";
 
-        T removed = removeSmallest(this.tree);
+        T removed = this.removeNode(leftmost(this.root));
 
         return removed;
     }
@@ -346,23 +631,260 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
     public final boolean contains(T x) {
         assert x != null : "Violation of: x is not null";
 
-        boolean found = false;
-
-        // reports whether or not x was found in this.tree
-        found = isInTree(this.tree, x);
-
-        return found;
+        return this.find(x) != null;
     }
 
     @Override
     public final int size() {
 
-        return this.tree.size();
+        return this.size;
     }
 
     @Override
     public final Iterator<T> iterator() {
-        return this.tree.iterator();
+        return new Set3aIterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Reports the smallest element of {@code this}, without removing it.
+     *
+     * @return the smallest element of {@code this}
+     * @requires |this| > 0
+     * @ensures first is in this  and  [no element of this is less than first]
+     */
+    public final T first() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        return leftmost(this.root).element;
+    }
+
+    /**
+     * Reports the largest element of {@code this}, without removing it.
+     *
+     * @return the largest element of {@code this}
+     * @requires |this| > 0
+     * @ensures last is in this  and  [no element of this is greater than last]
+     */
+    public final T last() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        return rightmost(this.root).element;
+    }
+
+    /**
+     * Reports the largest element of {@code this} that is at most {@code x},
+     * or {@code null} if there is none.
+     *
+     * @param x
+     *            the element to search from
+     * @return the largest element {@code <= x}, or {@code null}
+     * @ensures <pre>
+     * [floor is the largest element of this that is not greater than x, or
+     *  null if every element of this is greater than x]
+     * </pre>
+     */
+    public final T floor(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.nearest(x, true, true);
+    }
+
+    /**
+     * Reports the smallest element of {@code this} that is at least
+     * {@code x}, or {@code null} if there is none.
+     *
+     * @param x
+     *            the element to search from
+     * @return the smallest element {@code >= x}, or {@code null}
+     * @ensures <pre>
+     * [ceiling is the smallest element of this that is not less than x, or
+     *  null if every element of this is less than x]
+     * </pre>
+     */
+    public final T ceiling(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.nearest(x, false, true);
+    }
+
+    /**
+     * Reports the largest element of {@code this} that is less than
+     * {@code x}, or {@code null} if there is none.
+     *
+     * @param x
+     *            the element to search from
+     * @return the largest element {@code < x}, or {@code null}
+     * @ensures <pre>
+     * [lower is the largest element of this that is less than x, or null if
+     *  no element of this is less than x]
+     * </pre>
+     */
+    public final T lower(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.nearest(x, true, false);
+    }
+
+    /**
+     * Reports the smallest element of {@code this} that is greater than
+     * {@code x}, or {@code null} if there is none.
+     *
+     * @param x
+     *            the element to search from
+     * @return the smallest element {@code > x}, or {@code null}
+     * @ensures <pre>
+     * [higher is the smallest element of this that is greater than x, or
+     *  null if no element of this is greater than x]
+     * </pre>
+     */
+    public final T higher(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.nearest(x, false, false);
+    }
+
+    /**
+     * Reports the element of {@code this} with exactly {@code k} elements of
+     * {@code this} less than it, that is, the {@code k}-th smallest element
+     * counting from 0.
+     *
+     * @param k
+     *            the number of smaller elements
+     * @return the element with {@code k} smaller elements
+     * @requires 0 <= k < |this|
+     * @ensures <pre>
+     * select is in this  and
+     * |{y: T where (y is in this  and  y < select)}| = k
+     * </pre>
+     */
+    public final T select(int k) {
+        assert 0 <= k : "Violation of: 0 <= k";
+        assert k < this.size() : "Violation of: k < |this|";
+
+        int smaller = k;
+        Node<T> node = this.root;
+        int leftSize = subtreeSize(node.left);
+        while (smaller != leftSize) {
+            if (smaller < leftSize) {
+                node = node.left;
+            } else {
+                // skips the left subtree and node itself
+                smaller -= leftSize + 1;
+                node = node.right;
+            }
+            leftSize = subtreeSize(node.left);
+        }
+        return node.element;
+    }
+
+    /**
+     * Reports the number of elements of {@code this} less than {@code x};
+     * {@code x} need not be in {@code this}.
+     *
+     * @param x
+     *            the element to compare with
+     * @return the number of elements less than {@code x}
+     * @ensures rank = |{y: T where (y is in this  and  y < x)}|
+     */
+    public final int rank(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        int rank = 0;
+        Node<T> node = this.root;
+        while (node != null) {
+            int comparison = x.compareTo(node.element);
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                // node and everything left of it are less than x
+                rank += subtreeSize(node.left) + 1;
+                node = node.right;
+            } else {
+                rank += subtreeSize(node.left);
+                node = null;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the height of the tree representing {@code this}, measured by
+     * walking up from each leaf rather than read from the nodes, so that
+     * tests can check that the tree stays balanced.
+     *
+     * @return the height of the tree of $this.root
+     */
+    final int height() {
+        int height = 0;
+        if (this.root != null) {
+            Node<T> node = leftmost(this.root);
+            while (node != null) {
+                if (node.left == null && node.right == null) {
+                    // the deepest node is a leaf, so only leaves are measured
+                    int depth = 1;
+                    for (Node<T> up = node.parent; up != null; up = up.parent) {
+                        depth++;
+                    }
+                    height = Math.max(height, depth);
+                }
+                node = successor(node);
+            }
+        }
+        return height;
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Set3a}, which
+     * visits the elements in order by following successor links.
+     */
+    private final class Set3aIterator implements Iterator<T> {
+
+        /**
+         * Node to be visited next, or {@code null} once all have been.
+         */
+        private Node<T> next;
+
+        /**
+         * No-argument constructor.
+         */
+        Set3aIterator() {
+            this.next = null;
+            if (Set3a.this.root != null) {
+                this.next = leftmost(Set3a.this.root);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T element = this.next.element;
+            this.next = successor(this.next);
+            return element;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
     }
 
 }
@@ -0,0 +1,264 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * JUnit test fixture for {@code Set3a} with elements added in sorted order,
+ * which would make an unbalanced tree as deep as it is large.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Set3aBalanceTest {
+
+    /**
+     * Number of elements, far more than the depth an unbalanced tree could be
+     * searched to recursively.
+     */
+    private static final int MANY = 100000;
+
+    /**
+     * Returns a {@code Set3a} of the integers from 0 to {@code n - 1}, added
+     * in ascending order.
+     *
+     * @param n
+     *            the number of elements
+     * @return the set
+     */
+    private static Set3a<Integer> ascending(int n) {
+        Set3a<Integer> set = new Set3a<Integer>();
+        for (int i = 0; i < n; i++) {
+            set.add(i);
+        }
+        return set;
+    }
+
+    /**
+     * Returns whether {@code set} is no higher than any AVL tree of its size
+     * can be, 1.44 log2(|set| + 2).
+     *
+     * @param set
+     *            the set
+     * @return true iff the height of the tree of {@code set} is within the
+     *         AVL bound
+     */
+    private static boolean isBalanced(Set3a<Integer> set) {
+        double bound = 1.44 * Math.log(set.size() + 2) / Math.log(2);
+        return set.height() <= bound;
+    }
+
+    /*
+     * Kernel Method Tests
+     */
+
+    /**
+     * Tests add with many elements added in ascending order
+     */
+    @Test
+    public final void addTestAscending() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> result = ascending(MANY);
+        boolean allFound = true;
+        for (int i = 0; i < MANY; i++) {
+            allFound &= result.contains(i);
+        }
+        boolean extraFound = result.contains(MANY);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(MANY, result.size());
+        assertEquals(true, allFound);
+        assertEquals(false, extraFound);
+    }
+
+    /**
+     * Tests that the tree of many elements added in ascending order is no
+     * higher than the AVL bound
+     */
+    @Test
+    public final void addTestAscendingHeight() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> result = ascending(MANY);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(MANY, result.size());
+        assertEquals(true, isBalanced(result));
+    }
+
+    /**
+     * Tests add with many elements added in descending order
+     */
+    @Test
+    public final void addTestDescending() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> result = new Set3a<Integer>();
+        Set<Integer> expected = new Set1L<Integer>();
+        for (int i = MANY - 1; i >= 0; i--) {
+            expected.add(i);
+        }
+
+        for (int i = MANY - 1; i >= 0; i--) {
+            result.add(i);
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, result);
+    }
+
+    /**
+     * Tests iterating over many elements added in ascending order visits them
+     * in order
+     */
+    @Test
+    public final void iteratorTestAscending() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> set = ascending(MANY);
+        int count = 0;
+        boolean inOrder = true;
+
+        for (int x : set) {
+            inOrder &= x == count;
+            count++;
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(true, inOrder);
+        assertEquals(MANY, count);
+    }
+
+    /**
+     * Tests remove of every other element from many elements added in
+     * ascending order
+     */
+    @Test
+    public final void removeTestAscending() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> result = ascending(MANY);
+        Set<Integer> expected = new Set1L<Integer>();
+        for (int i = 1; i < MANY; i += 2) {
+            expected.add(i);
+        }
+        boolean allReturned = true;
+
+        for (int i = 0; i < MANY; i += 2) {
+            allReturned &= result.remove(i) == i;
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(true, allReturned);
+        assertEquals(expected, result);
+    }
+
+    /**
+     * Tests that the tree stays no higher than the AVL bound after removing
+     * the smallest three quarters of many elements added in ascending order
+     */
+    @Test
+    public final void removeTestAscendingHeight() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> result = ascending(MANY);
+
+        for (int i = 0; i < 3 * MANY / 4; i++) {
+            result.remove(i);
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(MANY - 3 * MANY / 4, result.size());
+        assertEquals(true, isBalanced(result));
+    }
+
+    /**
+     * Tests that the tree stays no higher than the AVL bound after removing
+     * every other element of many elements added in ascending order
+     */
+    @Test
+    public final void removeTestEveryOtherHeight() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> result = ascending(MANY);
+
+        for (int i = 0; i < MANY; i += 2) {
+            result.remove(i);
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(MANY / 2, result.size());
+        assertEquals(true, isBalanced(result));
+    }
+
+    /**
+     * Tests that the tree stays no higher than the AVL bound after removeAny
+     * takes half of many elements added in ascending order
+     */
+    @Test
+    public final void removeAnyTestHalfHeight() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> result = ascending(MANY);
+
+        for (int i = 0; i < MANY / 2; i++) {
+            result.removeAny();
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(MANY - MANY / 2, result.size());
+        assertEquals(true, isBalanced(result));
+    }
+
+    /**
+     * Tests removeAny until the set is empty, starting from many elements
+     * added in ascending order
+     */
+    @Test
+    public final void removeAnyTestDrain() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> result = ascending(MANY);
+        Set<Integer> expected = ascending(MANY);
+
+        while (result.size() > 0) {
+            expected.remove(result.removeAny());
+        }
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(0, expected.size());
+    }
+
+}
@@ -0,0 +1,177 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code Set3a} read by several threads at once, with
+ * no thread changing it.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Set3aConcurrentReadTest {
+
+    /**
+     * Number of threads reading the set.
+     */
+    private static final int READERS = 8;
+
+    /**
+     * Number of elements in the set; the elements are the even integers from
+     * 0 to {@code 2 * SIZE - 2}.
+     */
+    private static final int SIZE = 20000;
+
+    /**
+     * Number of lookups per reader.
+     */
+    private static final int LOOKUPS = 100000;
+
+    /**
+     * Runs {@code tasks} at once, waits for all of them, and returns their
+     * results, rethrowing the first failure.
+     *
+     * @param <T>
+     *            type of the results
+     * @param tasks
+     *            the tasks
+     * @return the results of the tasks, in order
+     * @throws Exception
+     *             if a task failed
+     */
+    private static <T> List<T> runAll(List<Callable<T>> tasks)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+        try {
+            List<Future<T>> futures = new ArrayList<Future<T>>();
+            for (Callable<T> task : tasks) {
+                futures.add(pool.submit(task));
+            }
+            List<T> results = new ArrayList<T>();
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw (Exception) e.getCause();
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns a {@code Set3a} of the even integers from 0 to
+     * {@code 2 * SIZE - 2}, added in ascending order.
+     *
+     * @return the set
+     */
+    private static Set3a<Integer> evens() {
+        Set3a<Integer> set = new Set3a<Integer>();
+        for (int i = 0; i < SIZE; i++) {
+            set.add(2 * i);
+        }
+        return set;
+    }
+
+    /*
+     * Kernel Method Tests
+     */
+
+    /**
+     * Tests contains called by several threads at once, with no thread
+     * changing the set
+     */
+    @Test
+    public final void containsTestConcurrentReaders() throws Exception {
+        /*
+         * Set up variables and call method under test
+         */
+        final Set3a<Integer> result = evens();
+        Set3a<Integer> expected = evens();
+        List<Callable<Integer>> readers = new ArrayList<Callable<Integer>>();
+        for (int r = 0; r < READERS; r++) {
+            final long seed = r;
+            readers.add(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    Random random = new Random(seed);
+                    int wrong = 0;
+                    for (int i = 0; i < LOOKUPS; i++) {
+                        int x = random.nextInt(2 * SIZE);
+                        if (result.contains(x) != (x % 2 == 0)) {
+                            wrong++;
+                        }
+                    }
+                    return wrong;
+                }
+            });
+        }
+
+        List<Integer> wrong = runAll(readers);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        for (int w : wrong) {
+            assertEquals(0, w);
+        }
+        assertEquals(SIZE, result.size());
+        assertEquals(expected, result);
+    }
+
+    /**
+     * Tests iterating over the set in several threads at once, with no thread
+     * changing the set
+     */
+    @Test
+    public final void iteratorTestConcurrentReaders() throws Exception {
+        /*
+         * Set up variables and call method under test
+         */
+        final Set3a<Integer> set = evens();
+        final long expectedSum = (long) SIZE * (SIZE - 1);
+        List<Callable<Boolean>> readers = new ArrayList<Callable<Boolean>>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    long sum = 0;
+                    int next = 0;
+                    boolean inOrder = true;
+                    for (int x : set) {
+                        inOrder &= x == next;
+                        next += 2;
+                        sum += x;
+                    }
+                    return inOrder && sum == expectedSum;
+                }
+            });
+        }
+
+        List<Boolean> correct = runAll(readers);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        for (boolean c : correct) {
+            assertEquals(true, c);
+        }
+    }
+
+}
@@ -0,0 +1,250 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for the navigation methods of {@code Set3a}:
+ * {@code first}, {@code last}, {@code floor}, {@code ceiling}, {@code lower}
+ * and {@code higher}.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Set3aNavigationTest {
+
+    /**
+     * Number of elements in the larger sets; the elements are the even
+     * integers from 0 to {@code 2 * SIZE - 2}.
+     */
+    private static final int SIZE = 10000;
+
+    /**
+     * Returns a {@code Set3a} of the even integers from 0 to
+     * {@code 2 * n - 2}, added in ascending order.
+     *
+     * @param n
+     *            the number of elements
+     * @return the set
+     */
+    private static Set3a<Integer> evens(int n) {
+        Set3a<Integer> set = new Set3a<Integer>();
+        for (int i = 0; i < n; i++) {
+            set.add(2 * i);
+        }
+        return set;
+    }
+
+    /*
+     * Other Method Tests
+     */
+
+    /**
+     * Tests first and last with a set of 1 element
+     */
+    @Test
+    public final void firstLastTestOne() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> set = evens(1);
+
+        Integer first = set.first();
+        Integer last = set.last();
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(Integer.valueOf(0), first);
+        assertEquals(Integer.valueOf(0), last);
+        assertEquals(1, set.size());
+    }
+
+    /**
+     * Tests first and last with a large set, which they leave unchanged
+     */
+    @Test
+    public final void firstLastTestMany() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> result = evens(SIZE);
+        Set3a<Integer> expected = evens(SIZE);
+
+        Integer first = result.first();
+        Integer last = result.last();
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(Integer.valueOf(0), first);
+        assertEquals(Integer.valueOf(2 * SIZE - 2), last);
+        assertEquals(expected, result);
+    }
+
+    /**
+     * Tests first and last after the smallest and largest elements are
+     * removed
+     */
+    @Test
+    public final void firstLastTestAfterRemove() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> set = evens(SIZE);
+        set.remove(0);
+        set.remove(2 * SIZE - 2);
+
+        Integer first = set.first();
+        Integer last = set.last();
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(Integer.valueOf(2), first);
+        assertEquals(Integer.valueOf(2 * SIZE - 4), last);
+    }
+
+    /**
+     * Tests floor, ceiling, lower and higher with an empty set
+     */
+    @Test
+    public final void navigationTestEmpty() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> set = new Set3a<Integer>();
+
+        Integer floor = set.floor(1);
+        Integer ceiling = set.ceiling(1);
+        Integer lower = set.lower(1);
+        Integer higher = set.higher(1);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(null, floor);
+        assertEquals(null, ceiling);
+        assertEquals(null, lower);
+        assertEquals(null, higher);
+    }
+
+    /**
+     * Tests floor, ceiling, lower and higher of each element in the set
+     */
+    @Test
+    public final void navigationTestPresent() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> set = evens(SIZE);
+
+        for (int i = 0; i < SIZE; i++) {
+            int x = 2 * i;
+            Integer floor = set.floor(x);
+            Integer ceiling = set.ceiling(x);
+            Integer lower = set.lower(x);
+            Integer higher = set.higher(x);
+
+            /*
+             * Assert that values of variables match expectations
+             */
+            assertEquals(Integer.valueOf(x), floor);
+            assertEquals(Integer.valueOf(x), ceiling);
+            assertEquals(i == 0 ? null : Integer.valueOf(x - 2), lower);
+            assertEquals(i == SIZE - 1 ? null : Integer.valueOf(x + 2),
+                    higher);
+        }
+    }
+
+    /**
+     * Tests floor, ceiling, lower and higher of each value between two
+     * elements of the set
+     */
+    @Test
+    public final void navigationTestAbsent() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> set = evens(SIZE);
+
+        for (int i = 0; i < SIZE; i++) {
+            int x = 2 * i + 1;
+            Integer below = Integer.valueOf(x - 1);
+            Integer above = i == SIZE - 1 ? null : Integer.valueOf(x + 1);
+            Integer floor = set.floor(x);
+            Integer ceiling = set.ceiling(x);
+            Integer lower = set.lower(x);
+            Integer higher = set.higher(x);
+
+            /*
+             * Assert that values of variables match expectations
+             */
+            assertEquals(below, floor);
+            assertEquals(above, ceiling);
+            assertEquals(below, lower);
+            assertEquals(above, higher);
+        }
+    }
+
+    /**
+     * Tests floor, ceiling, lower and higher of values below the smallest and
+     * above the largest element
+     */
+    @Test
+    public final void navigationTestOutOfRange() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> set = evens(SIZE);
+        Integer smallest = Integer.valueOf(0);
+        Integer largest = Integer.valueOf(2 * SIZE - 2);
+
+        Integer floorBelow = set.floor(-1);
+        Integer ceilingBelow = set.ceiling(-1);
+        Integer lowerBelow = set.lower(-1);
+        Integer higherBelow = set.higher(-1);
+        Integer floorAbove = set.floor(2 * SIZE);
+        Integer ceilingAbove = set.ceiling(2 * SIZE);
+        Integer lowerAbove = set.lower(2 * SIZE);
+        Integer higherAbove = set.higher(2 * SIZE);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(null, floorBelow);
+        assertEquals(smallest, ceilingBelow);
+        assertEquals(null, lowerBelow);
+        assertEquals(smallest, higherBelow);
+        assertEquals(largest, floorAbove);
+        assertEquals(null, ceilingAbove);
+        assertEquals(largest, lowerAbove);
+        assertEquals(null, higherAbove);
+    }
+
+    /**
+     * Tests that the navigation methods leave the set unchanged
+     */
+    @Test
+    public final void navigationTestUnchanged() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> result = evens(SIZE);
+        Set3a<Integer> expected = evens(SIZE);
+
+        result.floor(SIZE + 1);
+        result.ceiling(SIZE + 1);
+        result.lower(SIZE);
+        result.higher(SIZE);
+        result.first();
+        result.last();
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(expected, result);
+    }
+
+}
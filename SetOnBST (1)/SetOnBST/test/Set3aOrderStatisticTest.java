@@ -0,0 +1,250 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for the order-statistic methods of {@code Set3a}:
+ * {@code select} and {@code rank}.
+ *
+ * @author Malik Clarke
+ * @author Drew Jackson
+ * @author Ethan Hunter
+ *
+ */
+public class Set3aOrderStatisticTest {
+
+    /**
+     * Number of elements in the larger sets; the elements are the even
+     * integers from 0 to {@code 2 * SIZE - 2}.
+     */
+    private static final int SIZE = 10000;
+
+    /**
+     * Returns a {@code Set3a} of the even integers from 0 to
+     * {@code 2 * n - 2}, added in ascending order.
+     *
+     * @param n
+     *            the number of elements
+     * @return the set
+     */
+    private static Set3a<Integer> evens(int n) {
+        Set3a<Integer> set = new Set3a<Integer>();
+        for (int i = 0; i < n; i++) {
+            set.add(2 * i);
+        }
+        return set;
+    }
+
+    /**
+     * Reports whether {@code select} and {@code rank} agree with the order of
+     * {@code set}'s iterator.
+     *
+     * @param set
+     *            the set to check
+     * @return true iff, for the k-th element x visited by the iterator,
+     *         select(k) = x, rank(x) = k and rank(x + 1) = k + 1
+     */
+    private static boolean orderStatisticsMatch(Set3a<Integer> set) {
+        boolean match = true;
+        int k = 0;
+        for (int x : set) {
+            match &= set.select(k) == x;
+            match &= set.rank(x) == k;
+            match &= set.rank(x + 1) == k + 1;
+            k++;
+        }
+        return match && k == set.size();
+    }
+
+    /*
+     * Other Method Tests
+     */
+
+    /**
+     * Tests select and rank with a set of 1 element
+     */
+    @Test
+    public final void selectRankTestOne() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> set = evens(1);
+
+        Integer selected = set.select(0);
+        int rankBelow = set.rank(-1);
+        int rankOf = set.rank(0);
+        int rankAbove = set.rank(1);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(Integer.valueOf(0), selected);
+        assertEquals(0, rankBelow);
+        assertEquals(0, rankOf);
+        assertEquals(1, rankAbove);
+    }
+
+    /**
+     * Tests rank with an empty set
+     */
+    @Test
+    public final void rankTestEmpty() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> set = new Set3a<Integer>();
+
+        int rank = set.rank(0);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(0, rank);
+    }
+
+    /**
+     * Tests select and rank of every element, and rank of the values between
+     * them, with elements added in ascending order
+     */
+    @Test
+    public final void selectRankTestAscending() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> result = evens(SIZE);
+        Set3a<Integer> expected = evens(SIZE);
+
+        for (int i = 0; i < SIZE; i++) {
+            Integer selected = result.select(i);
+            int rankOf = result.rank(2 * i);
+            int rankBelow = result.rank(2 * i - 1);
+
+            /*
+             * Assert that values of variables match expectations
+             */
+            assertEquals(Integer.valueOf(2 * i), selected);
+            assertEquals(i, rankOf);
+            assertEquals(i, rankBelow);
+        }
+        assertEquals(SIZE, result.rank(2 * SIZE));
+        assertEquals(expected, result);
+    }
+
+    /**
+     * Tests select and rank with elements added in descending order
+     */
+    @Test
+    public final void selectRankTestDescending() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> set = new Set3a<Integer>();
+        for (int i = SIZE - 1; i >= 0; i--) {
+            set.add(2 * i);
+        }
+
+        boolean match = orderStatisticsMatch(set);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(true, match);
+    }
+
+    /**
+     * Tests select and rank after every third element is removed
+     */
+    @Test
+    public final void selectRankTestAfterRemove() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> set = evens(SIZE);
+        for (int i = 0; i < SIZE; i += 3) {
+            set.remove(2 * i);
+        }
+
+        boolean match = orderStatisticsMatch(set);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(true, match);
+    }
+
+    /**
+     * Tests select and rank after half of the elements are removed by
+     * removeAny
+     */
+    @Test
+    public final void selectRankTestAfterRemoveAny() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> set = evens(SIZE);
+        for (int i = 0; i < SIZE / 2; i++) {
+            set.removeAny();
+        }
+
+        boolean match = orderStatisticsMatch(set);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(SIZE - SIZE / 2, set.size());
+        assertEquals(true, match);
+    }
+
+    /**
+     * Tests select and rank after a random mix of adds and removes
+     */
+    @Test
+    public final void selectRankTestRandomChanges() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> set = new Set3a<Integer>();
+        Random random = new Random(1);
+        for (int i = 0; i < 4 * SIZE; i++) {
+            int x = random.nextInt(SIZE);
+            if (set.contains(x)) {
+                set.remove(x);
+            } else {
+                set.add(x);
+            }
+        }
+
+        boolean match = orderStatisticsMatch(set);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(true, match);
+    }
+
+    /**
+     * Tests select and rank after transferFrom, on both the new set and the
+     * emptied source
+     */
+    @Test
+    public final void selectRankTestAfterTransfer() {
+        /*
+         * Set up variables and call method under test
+         */
+        Set3a<Integer> source = evens(SIZE);
+        Set3a<Integer> set = new Set3a<Integer>();
+
+        set.transferFrom(source);
+        boolean match = orderStatisticsMatch(set);
+        int sourceRank = source.rank(0);
+
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(true, match);
+        assertEquals(0, sourceRank);
+    }
+
+}